@@ -0,0 +1,148 @@
+package com.gemini.benchmarks;
+
+import com.gemini.backend.service.CalendarTool;
+import com.gemini.backend.service.SyntheticCalendarGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * CalendarTool hot paths against generated calendars of 100, 10k and 100k events. Each benchmark reports
+ * throughput and sampled latency (percentiles); run with {@code -prof gc} (the default in
+ * {@link BenchmarkMain}) for allocation rates.
+ *
+ * Mutating benchmarks keep the calendar at its generated size: a created event is deleted again after each
+ * invocation, a deleted one is re-created before it, and the moved event alternates between two days.
+ * rebalanceWeek and autoSpaceEvents only move events on their first invocations; after that they measure
+ * the cost of planning over an already balanced week.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalendarToolBenchmark {
+
+    private static final String TARGET = "Bench Target";
+    private static final String SCRATCH = "Bench Scratch";
+    private static final String SCRATCH_DATE = LocalDate.now().plusDays(400).toString();
+
+    @Param({"100", "10000", "100000"})
+    public int events;
+
+    private File dir;
+    private PrintStream stdout;
+    private String[] moveDays;
+    private int moves;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("calendar-bench").toFile();
+        // spread over a year centred on today, so the current week is as busy as any other
+        File calendar = new File(dir, "calendar-" + events + ".ics");
+        new SyntheticCalendarGenerator()
+                .events(events)
+                .eventsPerDay(events / 366.0)
+                .recurringRatio(0.05)
+                .allDayRatio(0.02)
+                .seed(events)
+                .write(calendar);
+        System.setProperty("calendar.file", calendar.getAbsolutePath());
+        // CalendarTool reports every change on stdout
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        LocalDate today = LocalDate.now();
+        moveDays = new String[]{today.plusDays(30).toString(), today.plusDays(31).toString()};
+        CalendarTool.createCalendarEvent(moveDays[0], "10:00", "non-recurring", TARGET, 60);
+        CalendarTool.summarizeCalendar(); // load the calendar outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        // detach the store first, or its exit hook would compact a calendar whose directory is gone
+        CalendarTool.closeCalendar();
+        System.setOut(stdout);
+        System.clearProperty("calendar.file");
+        try (Stream<File> files = Files.walk(dir.toPath()).map(java.nio.file.Path::toFile)) {
+            files.sorted(Comparator.reverseOrder()).forEach(File::delete);
+        }
+    }
+
+    /** Removes the event {@link #createCalendarEvent(Created)} added. */
+    @State(Scope.Thread)
+    public static class Created {
+        @TearDown(Level.Invocation)
+        public void remove() throws Exception {
+            CalendarTool.deleteEventByTitleAndStart(SCRATCH, SCRATCH_DATE, "12:00");
+        }
+    }
+
+    /** Adds the event {@link #deleteEventByTitleAndStart(ToDelete)} removes. */
+    @State(Scope.Thread)
+    public static class ToDelete {
+        @Setup(Level.Invocation)
+        public void add() throws Exception {
+            CalendarTool.createCalendarEvent(SCRATCH_DATE, "12:00", "non-recurring", SCRATCH, 30);
+        }
+    }
+
+    @Benchmark
+    public Created createCalendarEvent(Created created) throws Exception {
+        CalendarTool.createCalendarEvent(SCRATCH_DATE, "12:00", "non-recurring", SCRATCH, 30);
+        return created;
+    }
+
+    @Benchmark
+    public boolean updateEventWithConflictResolution() throws Exception {
+        String start = CalendarTool.findUpcomingEventStart(TARGET);
+        String target = moveDays[++moves & 1];
+        return CalendarTool.updateEventWithConflictResolution(TARGET, start.substring(0, 10), start.substring(11),
+                target, "10:00");
+    }
+
+    @Benchmark
+    public boolean deleteEventByTitleAndStart(ToDelete toDelete) throws Exception {
+        return CalendarTool.deleteEventByTitleAndStart(SCRATCH, SCRATCH_DATE, "12:00");
+    }
+
+    @Benchmark
+    public String summarizeCalendar() {
+        return CalendarTool.summarizeCalendar();
+    }
+
+    @Benchmark
+    public String summarizeWeek() {
+        return CalendarTool.summarizeWeek();
+    }
+
+    @Benchmark
+    public int rebalanceWeek() throws Exception {
+        return CalendarTool.rebalanceWeek();
+    }
+
+    @Benchmark
+    public int autoSpaceEvents() throws Exception {
+        return CalendarTool.autoSpaceEvents(60);
+    }
+}
@@ -1,5 +1,51 @@
 package com.gemini.backend;
 
+import com.gemini.backend.controller.GeminController;
+import com.gemini.backend.service.GeminiService;
+import com.sun.net.httpserver.HttpServer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Java web server for the calendar UI, replacing the Node app. Requests run one per virtual thread when the
+ * JVM has them (Java 21+), so thousands of chat sessions can wait on the model at once without a platform
+ * thread each; older JVMs fall back to a bounded daemon pool (-Dserver.maxThreads, default 256).
+ *
+ * Port from the PORT environment variable (default 8080), API key from GEMINI_API_KEY.
+ */
 public class GeminiBackendApplication {
-    
+
+    public static void main(String[] args) throws Exception {
+        int port = 8080;
+        String p = System.getenv("PORT");
+        if (p != null && !p.isBlank()) port = Integer.parseInt(p.trim());
+        String apiKey = System.getenv("GEMINI_API_KEY");
+        boolean hasKey = apiKey != null && !apiKey.isBlank();
+        if (!hasKey) System.out.println("WARNING: GEMINI_API_KEY env var not set; /generate and /chat will fail.");
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        new GeminController(new GeminiService(apiKey), hasKey).register(server);
+        server.setExecutor(requestExecutor());
+        server.start();
+        System.out.println("Calendar Assistant server listening on http://localhost:" + port);
+    }
+
+    /** Virtual-thread-per-request executor when available, otherwise a fixed pool of daemon threads. */
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Integer.getInteger("server.maxThreads", 256);
+            System.out.println("Virtual threads unavailable; serving with " + threads + " platform threads.");
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
 }
@@ -1,5 +1,371 @@
 package com.gemini.backend.controller;
 
+import com.gemini.backend.service.ActionPlan.Action;
+import com.gemini.backend.service.CalendarTool;
+import com.gemini.backend.service.GeminiService;
+import com.gemini.backend.service.Metrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * HTTP endpoints used by the web UI in {@code static/index.html}, matching the Node server:
+ * <pre>
+ * POST /generate      multipart form (prompt, icsFile) -&gt; plain-text result
+ * POST /chat          {"message": "..."}               -&gt; plain-text reply
+ * GET  /events        {"events": [...]}                timed events for the calendar widget
+ * GET  /calendar.ics  current calendar as a download
+ * GET  /slots         {"slots": [...]}                 best free slots; ?duration=60&amp;from=&amp;to=&amp;limit=5 (all optional)
+ * GET  /metrics       counters and latency summaries in the Prometheus text format
+ * GET  /*             static files from the classpath (static/) or src/main/resources/static
+ * </pre>
+ * Each browser gets a session cookie so chat follow-ups resolve against its own conversation.
+ */
 public class GeminController {
-    
+
+    private static final String SESSION_COOKIE = "gemini_session";
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    private static final Path STATIC_DIR = Paths.get("src", "main", "resources", "static");
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "css", "text/css; charset=utf-8",
+            "js", "application/javascript; charset=utf-8",
+            "json", "application/json; charset=utf-8",
+            "svg", "image/svg+xml",
+            "png", "image/png",
+            "ico", "image/x-icon");
+
+    private final GeminiService service;
+    private final boolean hasApiKey;
+    private final Gson gson = new Gson();
+
+    public GeminController(GeminiService service, boolean hasApiKey) {
+        this.service = service;
+        this.hasApiKey = hasApiKey;
+    }
+
+    /** Registers all endpoints on {@code server}. */
+    public void register(HttpServer server) {
+        server.createContext("/generate", guarded(this::generate));
+        server.createContext("/chat", guarded(this::chat));
+        server.createContext("/events", guarded(this::events));
+        server.createContext("/calendar.ics", guarded(this::calendar));
+        server.createContext("/slots", guarded(this::slots));
+        server.createContext("/metrics", guarded(this::metrics));
+        server.createContext("/", guarded(this::staticFile));
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange ex) throws Exception;
+    }
+
+    private HttpHandler guarded(Endpoint endpoint) {
+        return ex -> {
+            long t0 = System.nanoTime();
+            try {
+                endpoint.handle(ex);
+            } catch (Exception e) {
+                System.err.println(ex.getRequestMethod() + " " + ex.getRequestURI() + " failed: " + e);
+                // once the status line is out a second one cannot follow; closing cuts the response short
+                if (ex.getResponseCode() < 0) text(ex, 500, "Server error: " + e.getMessage());
+            } finally {
+                ex.close();
+                Metrics.timer("http_request_seconds{path=\"" + ex.getHttpContext().getPath() + "\"}").recordSince(t0);
+            }
+        };
+    }
+
+    private void generate(HttpExchange ex) throws Exception {
+        if (!requireMethod(ex, "POST")) return;
+        if (!hasApiKey) {
+            text(ex, 500, "Server is missing GEMINI_API_KEY environment variable.");
+            return;
+        }
+        Map<String, String> form = multipart(ex);
+        String prompt = form.getOrDefault("prompt", "").trim();
+        String ics = form.get("icsFile");
+
+        List<String> out = new ArrayList<>();
+        if (ics != null && !ics.isBlank()) {
+            try {
+                CalendarTool.replaceCalendarContent(ics);
+            } catch (IllegalArgumentException e) {
+                text(ex, 400, e.getMessage());
+                return;
+            }
+            out.add("Uploaded ICS loaded.");
+        }
+        if (prompt.isEmpty()) {
+            out.add(CalendarTool.summarizeCalendar());
+            text(ex, 200, String.join("\n\n", out));
+            return;
+        }
+
+        GeminiService.Outcome result = service.handle(sessionId(ex), prompt);
+        if (result.parseError) {
+            out.add("Model response couldn't be parsed as JSON. Raw output follows:\n\n"
+                    + (result.responseText != null ? result.responseText : "(empty)"));
+            text(ex, 200, String.join("\n", out));
+            return;
+        }
+        out.add("Applied actions: " + result.applied);
+        if (result.summaryAfter != null) out.add("\n" + result.summaryAfter);
+        if (result.suggestions != null) out.add("\nSuggestions:\n" + result.suggestions);
+        text(ex, 200, String.join("\n", out));
+    }
+
+    private void chat(HttpExchange ex) throws Exception {
+        if (!requireMethod(ex, "POST")) return;
+        if (!hasApiKey) {
+            text(ex, 500, "AI is unavailable: missing GEMINI_API_KEY on server.");
+            return;
+        }
+        String message = "";
+        try {
+            JsonObject body = gson.fromJson(new String(readBody(ex), StandardCharsets.UTF_8), JsonObject.class);
+            if (body != null && body.has("message") && body.get("message").isJsonPrimitive()) {
+                message = body.get("message").getAsString().trim();
+            }
+        } catch (JsonParseException | IllegalStateException ignore) {
+            // treated as an empty message
+        }
+        if (message.isEmpty()) {
+            text(ex, 400, "Please provide a message.");
+            return;
+        }
+
+        GeminiService.Outcome result = service.handle(sessionId(ex), message);
+        if (result.parseError) {
+            text(ex, 200, "I couldn't parse the model output. Try rephrasing your request.\n\n"
+                    + (result.responseText != null ? result.responseText : ""));
+            return;
+        }
+        List<String> responds = new ArrayList<>();
+        List<String> questions = new ArrayList<>();
+        boolean includeSummary = false;
+        if (result.plan != null && result.plan.actions != null) {
+            for (Action a : result.plan.actions) {
+                if (a == null || a.type == null) continue;
+                if ("respond".equals(a.type) && a.message != null) {
+                    responds.add(a.message);
+                    if (Boolean.TRUE.equals(a.includeSummary)) includeSummary = true;
+                } else if ("ask_clarification".equals(a.type) && a.question != null) {
+                    questions.add(a.question);
+                }
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        if (!responds.isEmpty()) {
+            out.append(String.join("\n\n", responds));
+            if (includeSummary && result.summaryAfter != null) out.append("\n\n").append(result.summaryAfter);
+        } else if (result.applied > 0) {
+            out.append("Applied actions: ").append(result.applied);
+        } else if (!questions.isEmpty()) {
+            out.append(questions.get(0));
+        } else {
+            out.append("What would you like me to do next? I can schedule, move, resize, or clear events. "
+                    + "Say \"summarize\" if you want an overview.");
+        }
+        if (result.suggestions != null) out.append("\n\nSuggestions:\n").append(result.suggestions);
+        text(ex, 200, out.toString());
+    }
+
+    private void events(HttpExchange ex) throws IOException {
+        if (!requireMethod(ex, "GET")) return;
+        try {
+            send(ex, 200, "application/json; charset=utf-8",
+                    gson.toJson(Collections.singletonMap("events", CalendarTool.listEvents())));
+        } catch (Exception e) {
+            send(ex, 500, "application/json; charset=utf-8",
+                    gson.toJson(Collections.singletonMap("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    private void calendar(HttpExchange ex) throws IOException {
+        if (!requireMethod(ex, "GET")) return;
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"calendar.ics\"");
+        send(ex, 200, "text/calendar; charset=utf-8", CalendarTool.readCalendarContent());
+    }
+
+    private void slots(HttpExchange ex) throws Exception {
+        if (!requireMethod(ex, "GET")) return;
+        Map<String, String> q = query(ex);
+        List<CalendarTool.FreeSlot> slots;
+        try {
+            slots = CalendarTool.findFreeSlots(Integer.parseInt(q.getOrDefault("duration", "60")),
+                    q.get("from"), q.get("to"), Math.min(100, Integer.parseInt(q.getOrDefault("limit", "5"))));
+        } catch (NumberFormatException | java.time.format.DateTimeParseException e) {
+            send(ex, 400, "application/json; charset=utf-8",
+                    gson.toJson(Collections.singletonMap("error", "Bad parameter: " + e.getMessage())));
+            return;
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, "application/json; charset=utf-8",
+                    gson.toJson(Collections.singletonMap("error", e.getMessage())));
+            return;
+        }
+        send(ex, 200, "application/json; charset=utf-8", gson.toJson(Collections.singletonMap("slots", slots)));
+    }
+
+    private void metrics(HttpExchange ex) throws IOException {
+        if (!requireMethod(ex, "GET")) return;
+        send(ex, 200, "text/plain; version=0.0.4; charset=utf-8", Metrics.prometheus());
+    }
+
+    private void staticFile(HttpExchange ex) throws IOException {
+        if (!requireMethod(ex, "GET")) return;
+        String path = ex.getRequestURI().getPath();
+        if (path.endsWith("/")) path += "index.html";
+        if (path.contains("..")) {
+            text(ex, 404, "Not found");
+            return;
+        }
+        byte[] body = null;
+        try (InputStream in = GeminController.class.getClassLoader().getResourceAsStream("static" + path)) {
+            if (in != null) body = in.readAllBytes();
+        }
+        if (body == null) {
+            Path file = STATIC_DIR.resolve(path.substring(1)).normalize();
+            if (file.startsWith(STATIC_DIR) && Files.isRegularFile(file)) body = Files.readAllBytes(file);
+        }
+        if (body == null) {
+            text(ex, 404, "Not found");
+            return;
+        }
+        String ext = path.substring(path.lastIndexOf('.') + 1);
+        send(ex, 200, CONTENT_TYPES.getOrDefault(ext, "application/octet-stream"), body);
+    }
+
+    /** Session id from the cookie; a new one is issued (and set on the response) when missing. */
+    private static String sessionId(HttpExchange ex) {
+        List<String> cookies = ex.getRequestHeaders().get("Cookie");
+        if (cookies != null) {
+            for (String header : cookies) {
+                for (String part : header.split(";")) {
+                    String c = part.trim();
+                    if (c.startsWith(SESSION_COOKIE + "=")) return c.substring(SESSION_COOKIE.length() + 1);
+                }
+            }
+        }
+        String id = UUID.randomUUID().toString();
+        ex.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + id + "; Path=/; HttpOnly; SameSite=Lax");
+        return id;
+    }
+
+    /**
+     * Minimal multipart/form-data reader: returns each part's field name and its content as UTF-8 text
+     * (enough for the prompt field and an uploaded ICS file). URL-encoded forms are accepted as well.
+     */
+    private static Map<String, String> multipart(HttpExchange ex) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        String type = ex.getRequestHeaders().getFirst("Content-Type");
+        byte[] body = readBody(ex);
+        if (type == null) return fields;
+        if (type.startsWith("application/x-www-form-urlencoded")) {
+            for (String pair : new String(body, StandardCharsets.UTF_8).split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) continue;
+                fields.put(java.net.URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+            return fields;
+        }
+        int b = type.indexOf("boundary=");
+        if (!type.startsWith("multipart/form-data") || b < 0) return fields;
+        String boundary = type.substring(b + 9).replace("\"", "");
+        int semi = boundary.indexOf(';');
+        if (semi >= 0) boundary = boundary.substring(0, semi);
+
+        // ISO-8859-1 maps bytes 1:1 to chars, so offsets found in the string are byte offsets
+        String raw = new String(body, StandardCharsets.ISO_8859_1);
+        String delimiter = "--" + boundary;
+        int pos = raw.indexOf(delimiter);
+        while (pos >= 0) {
+            int headersStart = pos + delimiter.length();
+            if (raw.startsWith("--", headersStart)) break;
+            int headersEnd = raw.indexOf("\r\n\r\n", headersStart);
+            int next = raw.indexOf("\r\n" + delimiter, headersEnd < 0 ? headersStart : headersEnd);
+            if (headersEnd < 0 || next < 0) break;
+            String headers = raw.substring(headersStart, headersEnd);
+            String name = dispositionName(headers);
+            if (name != null) {
+                fields.put(name, new String(body, headersEnd + 4, next - headersEnd - 4, StandardCharsets.UTF_8));
+            }
+            pos = next + 2;
+        }
+        return fields;
+    }
+
+    /** URL query parameters (the last value wins). */
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(java.net.URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String dispositionName(String headers) {
+        int i = headers.indexOf("name=\"");
+        while (i > 0 && Character.isLetter(headers.charAt(i - 1))) i = headers.indexOf("name=\"", i + 1); // skip filename=
+        if (i < 0) return null;
+        int end = headers.indexOf('"', i + 6);
+        return end < 0 ? null : headers.substring(i + 6, end);
+    }
+
+    private static byte[] readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) throw new IOException("Request body too large");
+            return body;
+        }
+    }
+
+    private static boolean requireMethod(HttpExchange ex, String method) throws IOException {
+        if (method.equalsIgnoreCase(ex.getRequestMethod())) return true;
+        if ("GET".equals(method) && "HEAD".equalsIgnoreCase(ex.getRequestMethod())) return true;
+        ex.getResponseHeaders().set("Allow", method);
+        text(ex, 405, "Method not allowed");
+        return false;
+    }
+
+    private static void text(HttpExchange ex, int status, String body) throws IOException {
+        send(ex, status, "text/plain; charset=utf-8", body);
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, String body) throws IOException {
+        send(ex, status, contentType, (body == null ? "" : body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        boolean head = "HEAD".equalsIgnoreCase(ex.getRequestMethod());
+        ex.sendResponseHeaders(status, head || body.length == 0 ? -1 : body.length);
+        if (!head && body.length > 0) {
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package com.gemini.backend.service;
+
+import java.util.List;
+
+/** JSON action plan produced by the model (or the local intent parser) and applied by {@link PlanExecutor}. */
+public class ActionPlan {
+    public List<Action> actions;
+    public List<Suggestion> suggestions; // model may propose optional improvements
+    public List<Clarification> clarifications; // model may ask for user input before applying changes
+
+    public static class Action {
+        public String type;      // e.g., "create_event"
+        public String date;      // yyyy-MM-dd
+        public String time;      // HH:mm
+        public String recurring; // non-recurring|daily|weekly|monthly|yearly
+        public String title;     // optional title for create/update/delete
+        public Integer durationMinutes; // optional for create_event
+        // for update
+        public String newDate;
+        public String newTime;
+        public Integer newDurationMinutes; // for resize_event
+        public Integer minGapMinutes; // for auto spacing
+        public List<Move> moves; // for bulk updates
+        public String fromDate;  // optional yyyy-MM-dd range for rebalance_week (defaults to the current week) and auto_space
+        public String toDate;
+        public String question; // for ask_clarification
+        public String message; // for respond
+        public Boolean includeSummary; // for respond
+    }
+
+    public static class Move {
+        public String title;
+        public String date;
+        public String time;
+        public String newDate;
+        public String newTime;
+    }
+
+    public static class Suggestion {
+        public String note;
+    }
+
+    public static class Clarification {
+        public String question;
+    }
+}
@@ -0,0 +1,59 @@
+package com.gemini.backend.service;
+
+import java.util.stream.IntStream;
+
+/**
+ * Sweep line behind {@link CalendarTool#autoSpaceEvents(int, String, String)}, over primitive columns of
+ * events already ordered by start and cut into local-day buckets. Days are independent, so they are swept
+ * in parallel on the common fork-join pool once there are enough of them; each sweep only writes its own
+ * rows of the result and allocates nothing.
+ */
+final class AutoSpacer {
+
+    /** Below this many days the fork-join overhead outweighs the work. */
+    private static final int PARALLEL_DAYS = 32;
+
+    private AutoSpacer() {
+    }
+
+    /**
+     * Computes the spaced start of every row. Rows flagged {@link EventColumns#ALL_DAY} are ignored,
+     * {@link EventColumns#RECURRING} rows are fixed obstacles that later events are spaced after; other rows
+     * are pushed forward to {@code gapMs} after the previous event unless that would start them on the
+     * next day.
+     *
+     * @param dayFirst  row where each day begins; {@code dayFirst[days]} is the row count
+     * @param dayEnd    start of the following day, per day
+     * @param newStart  receives the planned start of every row (unchanged rows keep theirs)
+     * @return number of rows that move
+     */
+    static int plan(long[] start, long[] end, int[] flags, int[] dayFirst, long[] dayEnd, int days, long gapMs,
+                    long[] newStart) {
+        IntStream range = IntStream.range(0, days);
+        if (days >= PARALLEL_DAYS) range = range.parallel();
+        return range.map(d -> sweepDay(start, end, flags, dayFirst[d], dayFirst[d + 1], dayEnd[d], gapMs, newStart)).sum();
+    }
+
+    private static int sweepDay(long[] start, long[] end, int[] flags, int from, int to, long nextDayStart, long gapMs,
+                                long[] newStart) {
+        int moved = 0;
+        long prevEndWithGap = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            newStart[i] = start[i];
+            if ((flags[i] & EventColumns.ALL_DAY) != 0) continue;
+            long e = end[i];
+            if ((flags[i] & EventColumns.RECURRING) != 0) {
+                prevEndWithGap = Math.max(prevEndWithGap, e + gapMs);
+                continue;
+            }
+            // the first event of the day only sets the pace
+            if (prevEndWithGap != Long.MIN_VALUE && start[i] < prevEndWithGap && prevEndWithGap < nextDayStart) {
+                newStart[i] = prevEndWithGap;
+                e = prevEndWithGap + (end[i] - start[i]);
+                moved++;
+            }
+            prevEndWithGap = e + gapMs;
+        }
+        return moved;
+    }
+}
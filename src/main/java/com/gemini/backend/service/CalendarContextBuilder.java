@@ -0,0 +1,241 @@
+package com.gemini.backend.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the part of the calendar that is relevant to one user request and renders it as compact lines for
+ * the model prompt, instead of sending the whole ICS file. Relevant means: the current week, any days the
+ * request mentions (ISO dates, today/tomorrow, weekday names, "next week", "Nov 10"), and events whose
+ * title contains one of the request's words. Window events come first, title matches after them ordered by
+ * distance from today; rendering stops once the token budget (estimated at ~4 characters per token) is used.
+ */
+final class CalendarContextBuilder {
+
+    /** Default prompt budget for calendar lines; override with -Dcalendar.context.tokens or CALENDAR_CONTEXT_TOKENS. */
+    static final int DEFAULT_TOKEN_BUDGET = 1500;
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private static final Pattern ISO_DATE = Pattern.compile("\\b(\\d{4}-\\d{2}-\\d{2})\\b");
+    private static final Pattern MONTH_DAY = Pattern.compile(
+            "\\b(january|february|march|april|may|june|july|august|september|october|november|december"
+            + "|jan|feb|mar|apr|jun|jul|aug|sept|sep|oct|nov|dec)\\.?\\s+(\\d{1,2})(?:st|nd|rd|th)?\\b");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}']+");
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "for", "with", "add", "move", "delete", "remove", "schedule", "create", "put", "set",
+            "make", "please", "can", "you", "my", "this", "next", "last", "week", "today", "tomorrow", "from",
+            "into", "onto", "every", "daily", "weekly", "monthly", "yearly", "event", "events", "calendar",
+            "time", "what", "does", "look", "like", "some", "sometime", "day", "days", "hour", "hours",
+            "minutes", "min", "mins", "before", "after", "until", "instead", "change", "update", "reschedule",
+            "cancel", "want", "need", "have", "are", "there", "any", "all", "out", "off", "free", "clear"));
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd EEE", Locale.ENGLISH);
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final int tokenBudget;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    CalendarContextBuilder(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    static int configuredBudget() {
+        String v = System.getProperty("calendar.context.tokens", System.getenv("CALENDAR_CONTEXT_TOKENS"));
+        if (v != null) {
+            try {
+                return Math.max(100, Integer.parseInt(v.trim()));
+            } catch (NumberFormatException ignore) {
+                // fall through to the default
+            }
+        }
+        return DEFAULT_TOKEN_BUDGET;
+    }
+
+    String build(CalendarView view, String request, LocalDate today) throws Exception {
+        String text = request == null ? "" : request.toLowerCase(Locale.ROOT);
+        List<LocalDate[]> windows = windows(text, today);
+        Set<String> terms = terms(text);
+
+        Set<String> seen = new HashSet<>();
+        List<EventRecord> inWindow = new ArrayList<>();
+        for (LocalDate[] w : windows) {
+            long from = startOf(w[0]);
+            long to = startOf(w[1]);
+            for (EventRecord rec : view.eventsStartingBetween(from, to)) {
+                if (seen.add(key(rec))) inWindow.add(rec);
+            }
+            for (EventRecord rec : view.repeatOccurrencesBetween(from, to)) {
+                if (seen.add(key(rec))) inWindow.add(rec);
+            }
+        }
+        inWindow.sort(Comparator.comparingLong(r -> r.start));
+
+        List<EventRecord> byTitle = new ArrayList<>();
+        if (!terms.isEmpty()) {
+            // titles repeat a lot; test each distinct title (by interned id) once
+            EventColumns columns = view.columns();
+            BitSet tested = new BitSet();
+            BitSet matching = new BitSet();
+            for (int i = 0; i < columns.size(); i++) {
+                int id = columns.titleIdAt(i);
+                if (id == 0) continue;
+                if (!tested.get(id)) {
+                    tested.set(id);
+                    if (mentions(columns.record(i).title.toLowerCase(Locale.ROOT), terms)) matching.set(id);
+                }
+                if (matching.get(id) && seen.add(key(columns.record(i)))) byTitle.add(columns.record(i));
+            }
+            long now = startOf(today);
+            byTitle.sort(Comparator.comparingLong(r -> Math.abs(r.start - now)));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Windows: ");
+        for (int i = 0; i < windows.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(windows.get(i)[0]).append("..").append(windows.get(i)[1].minusDays(1));
+        }
+        sb.append('\n');
+        int budgetChars = tokenBudget * CHARS_PER_TOKEN;
+        int total = inWindow.size() + byTitle.size();
+        int written = 0;
+        if (total == 0) sb.append("(no events in these windows)\n");
+        for (EventRecord rec : inWindow) {
+            if (!append(sb, rec, budgetChars)) break;
+            written++;
+        }
+        if (written == inWindow.size() && !byTitle.isEmpty()) {
+            sb.append("Other events matching the request:\n");
+            for (EventRecord rec : byTitle) {
+                if (!append(sb, rec, budgetChars)) break;
+                written++;
+            }
+        }
+        if (written < total) sb.append("(").append(total - written).append(" more events omitted)\n");
+        return sb.toString();
+    }
+
+    /** Appends one event line unless it would exceed the budget. */
+    private boolean append(StringBuilder sb, EventRecord rec, int budgetChars) {
+        java.time.ZonedDateTime s = java.time.Instant.ofEpochMilli(rec.start).atZone(zone);
+        java.time.ZonedDateTime e = java.time.Instant.ofEpochMilli(rec.end).atZone(zone);
+        StringBuilder line = new StringBuilder(64);
+        line.append(DAY.format(s)).append(' ');
+        if (rec.allDay) {
+            line.append("all-day");
+        } else {
+            line.append(TIME.format(s)).append('-').append(TIME.format(e));
+        }
+        line.append(" | ").append(rec.title != null ? rec.title : "(untitled)");
+        if (rec.isRecurring()) line.append(" | repeats ").append(frequency(rec.rrule));
+        line.append('\n');
+        if (sb.length() + line.length() > budgetChars) return false;
+        sb.append(line);
+        return true;
+    }
+
+    private static String frequency(String rrule) {
+        int i = rrule.indexOf("FREQ=");
+        if (i < 0) return rrule;
+        int end = rrule.indexOf(';', i);
+        return rrule.substring(i + 5, end < 0 ? rrule.length() : end).toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(EventRecord rec) {
+        return rec.uid + '@' + rec.start;
+    }
+
+    private long startOf(LocalDate d) {
+        return d.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /** Day ranges [from, to) the request refers to; always includes the current ISO week. */
+    static List<LocalDate[]> windows(String text, LocalDate today) {
+        Set<LocalDate> days = new LinkedHashSet<>();
+        List<LocalDate[]> out = new ArrayList<>();
+        LocalDate monday = today.with(DayOfWeek.MONDAY);
+        out.add(new LocalDate[]{monday, monday.plusDays(7)});
+        if (text.contains("next week")) out.add(new LocalDate[]{monday.plusDays(7), monday.plusDays(14)});
+        if (text.contains("last week")) out.add(new LocalDate[]{monday.minusDays(7), monday});
+
+        Matcher iso = ISO_DATE.matcher(text);
+        while (iso.find()) {
+            try {
+                days.add(LocalDate.parse(iso.group(1)));
+            } catch (DateTimeParseException ignore) {
+                // not a real date
+            }
+        }
+        Matcher md = MONTH_DAY.matcher(text);
+        while (md.find()) {
+            Month month = month(md.group(1));
+            int dom = Integer.parseInt(md.group(2));
+            if (month == null || dom < 1 || dom > month.length(true)) continue;
+            LocalDate d = LocalDate.of(today.getYear(), month, Math.min(dom, month.length(today.isLeapYear())));
+            days.add(d.isBefore(today.minusMonths(1)) ? d.plusYears(1) : d);
+        }
+        if (text.contains("tomorrow")) days.add(today.plusDays(1));
+        if (text.contains("yesterday")) days.add(today.minusDays(1));
+        for (DayOfWeek dow : DayOfWeek.values()) {
+            if (text.contains(dow.getDisplayName(TextStyle.FULL, Locale.ENGLISH).toLowerCase(Locale.ROOT))) {
+                LocalDate d = today.with(java.time.temporal.TemporalAdjusters.nextOrSame(dow));
+                days.add(text.contains("next week") ? d.plusDays(7) : d);
+            }
+        }
+        for (LocalDate d : days) {
+            boolean covered = false;
+            for (LocalDate[] w : out) {
+                if (!d.isBefore(w[0]) && d.isBefore(w[1])) covered = true;
+            }
+            if (!covered) out.add(new LocalDate[]{d, d.plusDays(1)});
+        }
+        return out;
+    }
+
+    private static Month month(String prefix) {
+        for (Month m : Month.values()) {
+            if (m.getDisplayName(TextStyle.FULL, Locale.ENGLISH).toLowerCase(Locale.ROOT).startsWith(prefix)) return m;
+        }
+        return null;
+    }
+
+    /** Lower-case request words that may name an event (three letters or more, not a stop word or number). */
+    static Set<String> terms(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        Matcher m = WORD.matcher(text);
+        while (m.find()) {
+            String w = m.group();
+            if (w.length() < 3 || STOP_WORDS.contains(w) || Character.isDigit(w.charAt(0))) continue;
+            if (month(w) != null) continue;
+            boolean weekday = false;
+            for (DayOfWeek dow : DayOfWeek.values()) {
+                if (dow.getDisplayName(TextStyle.FULL, Locale.ENGLISH).equalsIgnoreCase(w)) weekday = true;
+            }
+            if (!weekday) out.add(w);
+        }
+        return out;
+    }
+
+    private static boolean mentions(String title, Set<String> terms) {
+        for (String t : terms) {
+            if (title.contains(t)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.gemini.backend.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Advisory lock shared by every process working on the same ICS file, held on a sidecar
+ * {@code <name>.ics.lock} (the ICS file itself is replaced by atomic moves, so a lock on it would not
+ * survive a compaction). Writers hold it exclusively around journal appends, compactions and uploads;
+ * reloads hold it shared so they never read a half-written journal or a file mid-replacement.
+ *
+ * A read-only lock (for calendars this process must never write) never creates the sidecar: it takes the
+ * shared lock through a read-only channel when the sidecar exists and is readable, and otherwise reads
+ * unlocked, relying on the journal's framing to ignore a half-written append.
+ *
+ * Holds are reentrant. Not thread-safe on its own: {@link CalendarStore} only uses it under its monitor.
+ */
+final class CalendarFileLock {
+
+    /** An acquired hold; closing it releases one level. */
+    interface Hold extends AutoCloseable {
+        @Override
+        void close() throws IOException;
+    }
+
+    private final File file;
+    private final boolean readOnly;
+    private FileChannel channel;
+    private FileLock lock;
+    private int holds;
+
+    CalendarFileLock(File icsFile, boolean readOnly) {
+        this.file = new File(icsFile.getPath() + ".lock");
+        this.readOnly = readOnly;
+    }
+
+    Hold shared() throws IOException {
+        return acquire(true);
+    }
+
+    Hold exclusive() throws IOException {
+        if (readOnly) throw new IllegalStateException("Read-only calendar lock: " + file);
+        return acquire(false);
+    }
+
+    private Hold acquire(boolean shared) throws IOException {
+        if (holds > 0) {
+            if (!shared && lock.isShared()) throw new IllegalStateException("Cannot upgrade a shared calendar lock");
+            holds++;
+            return this::release;
+        }
+        FileChannel ch;
+        if (readOnly) {
+            try {
+                ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException noSidecar) {
+                return () -> { };
+            }
+        } else {
+            if (file.getAbsoluteFile().getParentFile() != null) file.getAbsoluteFile().getParentFile().mkdirs();
+            ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        try {
+            lock = ch.lock(0, Long.MAX_VALUE, shared);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+        channel = ch;
+        holds = 1;
+        return this::release;
+    }
+
+    private void release() throws IOException {
+        if (holds == 0 || --holds > 0) return;
+        try {
+            lock.release();
+        } finally {
+            lock = null;
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.gemini.backend.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of calendar mutations kept next to the ICS file ({@code <name>.ics.journal}).
+ * A single create or move costs one small append instead of a full ICS rewrite; {@link CalendarStore}
+ * replays the log on load and folds it back into the ICS file when compacting.
+ *
+ * Every {@link #append} writes one frame: a header line giving the byte length and CRC32C of the body,
+ * then the body, which holds the entries of one commit:
+ * <pre>
+ * FRAME\t&lt;bodyBytes&gt;\t&lt;crc32c hex&gt;
+ * PUT                       followed by a folded BEGIN:VEVENT ... END:VEVENT block
+ * TIME\t&lt;uid&gt;\t&lt;startMs&gt;\t&lt;endMs&gt;
+ * DEL\t&lt;uid&gt;
+ * </pre>
+ * Replay stops at the first frame that is cut short or fails its checksum, so a commit torn by a crash is
+ * dropped as a whole and never half applied. The next append first cuts the file back to the end of the
+ * last complete frame, so later commits are never written behind the torn bytes. A journal that does not
+ * start with a frame header is corrupt from its first byte on.
+ */
+final class CalendarJournal {
+
+    static final String PUT = "PUT";
+    static final String TIME = "TIME";
+    static final String DEL = "DEL";
+    private static final String FRAME = "FRAME";
+
+    /** A decoded journal entry; {@code payload} holds the VEVENT text for PUT entries. */
+    static final class Entry {
+        final String op;
+        final String uid;
+        final long start;
+        final long end;
+        final String payload;
+
+        Entry(String op, String uid, long start, long end, String payload) {
+            this.op = op;
+            this.uid = uid;
+            this.start = start;
+            this.end = end;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    // end of the last complete frame as of the last read or append, or -1 when unknown
+    private long validLength = -1;
+
+    CalendarJournal(File icsFile) {
+        this.file = new File(icsFile.getPath() + ".journal");
+    }
+
+    File file() {
+        return file;
+    }
+
+    static String put(String veventText) {
+        String text = veventText.endsWith("\n") ? veventText : veventText + "\r\n";
+        return PUT + "\n" + text;
+    }
+
+    static String time(String uid, long start, long end) {
+        return TIME + "\t" + uid + "\t" + start + "\t" + end + "\n";
+    }
+
+    static String del(String uid) {
+        return DEL + "\t" + uid + "\n";
+    }
+
+    /**
+     * Appends already-encoded entries as one frame with a single write, after cutting off anything behind
+     * the last complete frame. The caller holds the exclusive file lock.
+     */
+    void append(List<String> entries) throws IOException {
+        if (entries.isEmpty()) return;
+        if (validLength < 0 || validLength != file.length()) {
+            validLength = decode(readBytes(), new ArrayList<>());
+        }
+        ByteBuffer buf = ByteBuffer.wrap(frame(entries));
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (ch.size() > validLength) ch.truncate(validLength);
+            ch.position(validLength);
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+        validLength += buf.capacity();
+        Metrics.histogram("calendar_write_bytes{target=\"journal\"}", Metrics.Unit.BYTES).record(buf.capacity());
+    }
+
+    private static byte[] frame(List<String> entries) {
+        StringBuilder sb = new StringBuilder();
+        for (String e : entries) sb.append(e);
+        byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        byte[] header = (FRAME + "\t" + body.length + "\t" + Long.toHexString(crc.getValue()) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[header.length + body.length];
+        System.arraycopy(header, 0, out, 0, header.length);
+        System.arraycopy(body, 0, out, header.length, body.length);
+        return out;
+    }
+
+    /** Reads the entries of all complete frames; a torn or corrupt tail ends the replay. */
+    List<Entry> read() throws IOException {
+        List<Entry> out = new ArrayList<>();
+        validLength = decode(readBytes(), out);
+        return out;
+    }
+
+    private byte[] readBytes() throws IOException {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return new byte[0];
+        }
+    }
+
+    /** Decodes the complete frames of {@code bytes} into {@code out} and returns the length they span. */
+    private static long decode(byte[] bytes, List<Entry> out) throws IOException {
+        int pos = 0;
+        while (pos < bytes.length) {
+            int nl = pos;
+            while (nl < bytes.length && bytes[nl] != '\n') nl++;
+            if (nl == bytes.length) break;
+            String[] header = new String(bytes, pos, nl - pos, StandardCharsets.UTF_8).split("\t");
+            if (header.length != 3 || !header[0].equals(FRAME)) break;
+            int length;
+            long checksum;
+            try {
+                length = Integer.parseInt(header[1]);
+                checksum = Long.parseUnsignedLong(header[2], 16);
+            } catch (NumberFormatException e) {
+                break;
+            }
+            int body = nl + 1;
+            if (length < 0 || length > bytes.length - body) break;
+            CRC32C crc = new CRC32C();
+            crc.update(bytes, body, length);
+            if (crc.getValue() != checksum) break;
+            decodeEntries(new String(bytes, body, length, StandardCharsets.UTF_8), out);
+            pos = body + length;
+        }
+        return pos;
+    }
+
+    /** Decodes the entries of one frame body; an unreadable entry ends the decoding. */
+    private static void decodeEntries(String text, List<Entry> out) throws IOException {
+        try (BufferedReader in = new BufferedReader(new StringReader(text))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (line.equals(PUT)) {
+                    StringBuilder block = new StringBuilder();
+                    String uid = null;
+                    boolean closed = false;
+                    while ((line = in.readLine()) != null) {
+                        block.append(line).append("\r\n");
+                        if (line.startsWith("UID:")) uid = line.substring(4).trim();
+                        if (line.equals("END:VEVENT")) { closed = true; break; }
+                    }
+                    if (!closed) break;
+                    out.add(new Entry(PUT, uid, 0, 0, block.toString()));
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                try {
+                    if (parts[0].equals(TIME) && parts.length == 4) {
+                        out.add(new Entry(TIME, parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]), null));
+                    } else if (parts[0].equals(DEL) && parts.length == 2) {
+                        out.add(new Entry(DEL, parts[1], 0, 0, null));
+                    } else {
+                        break;
+                    }
+                } catch (NumberFormatException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    long length() {
+        return file.length();
+    }
+
+    void clear() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        validLength = 0;
+    }
+}
@@ -0,0 +1,134 @@
+package com.gemini.backend.service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The other calendars (personal, work, shared team exports) laid over the one CalendarTool edits, configured
+ * with -Dcalendar.overlays or CALENDAR_OVERLAYS as a list of ICS files separated by ',' or the platform path
+ * separator. Overlay calendars are read only: their events are busy time for conflict resolution, slot
+ * search, rebalancing and auto-spacing, but are never moved or written.
+ *
+ * Each source is a read-only {@link CalendarStore}, so it is indexed once and reloaded only when its file
+ * changes, and nothing (lock, snapshot, journal or compaction) is ever written next to it. {@link #views()} refreshes all of them in parallel on the common fork-join pool, and combined
+ * listings are k-way merges of the per-source start-ordered streams; the files are never concatenated.
+ */
+final class CalendarOverlay {
+
+    static final CalendarOverlay NONE = new CalendarOverlay(Collections.emptyList());
+
+    private static final Map<String, CalendarOverlay> CONFIGURED = new ConcurrentHashMap<>();
+
+    private final List<CalendarStore> sources;
+    private final Set<File> unreadable = ConcurrentHashMap.newKeySet();
+
+    private CalendarOverlay(List<CalendarStore> sources) {
+        this.sources = sources;
+    }
+
+    /** The configured overlay of {@code primary}; the primary file itself is skipped if listed. */
+    static CalendarOverlay configured(File primary) {
+        String spec = System.getProperty("calendar.overlays", System.getenv("CALENDAR_OVERLAYS"));
+        if (spec == null || spec.isBlank()) return NONE;
+        return CONFIGURED.computeIfAbsent(primary.getAbsolutePath() + "|" + spec, k -> {
+            List<CalendarStore> stores = new ArrayList<>();
+            for (String path : spec.split("[," + File.pathSeparator + "]")) {
+                if (path.isBlank()) continue;
+                File file = new File(path.trim());
+                if (file.getAbsolutePath().equals(primary.getAbsolutePath())) continue;
+                CalendarStore store = CalendarStore.readOnly(file);
+                if (!stores.contains(store)) stores.add(store);
+            }
+            return stores.isEmpty() ? NONE : new CalendarOverlay(Collections.unmodifiableList(stores));
+        });
+    }
+
+    /**
+     * Current view of every readable source, in configuration order; sources that changed on disk load in
+     * parallel. A source that cannot be read is left out (and reported once) rather than failing the query.
+     */
+    List<CalendarView> views() {
+        if (sources.isEmpty()) return Collections.emptyList();
+        if (sources.size() == 1) {
+            CalendarView view = view(sources.get(0));
+            return view == null ? Collections.emptyList() : Collections.singletonList(view);
+        }
+        List<CompletableFuture<CalendarView>> loads = new ArrayList<>(sources.size());
+        for (CalendarStore store : sources) loads.add(CompletableFuture.supplyAsync(() -> view(store)));
+        List<CalendarView> out = new ArrayList<>(sources.size());
+        for (CompletableFuture<CalendarView> load : loads) {
+            CalendarView view = load.join();
+            if (view != null) out.add(view);
+        }
+        return out;
+    }
+
+    private CalendarView view(CalendarStore store) {
+        try {
+            CalendarView view = store.view();
+            unreadable.remove(store.file());
+            return view;
+        } catch (Exception e) {
+            if (unreadable.add(store.file())) {
+                System.err.println("Skipping overlay calendar " + store.file() + ": " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Timed events of {@code views} and the repeat occurrences of their recurring events that start in
+     * [fromMs, toMs), merged into one list ordered by start.
+     */
+    static List<EventRecord> timedEventsStartingBetween(List<CalendarView> views, long fromMs, long toMs) {
+        List<List<EventRecord>> streams = new ArrayList<>(views.size() * 2);
+        for (CalendarView view : views) {
+            streams.add(view.eventsStartingBetween(fromMs, toMs));
+            List<EventRecord> occurrences = new ArrayList<>();
+            for (EventRecord occ : view.repeatOccurrencesBetween(fromMs, toMs)) {
+                if (occ.start >= fromMs) occurrences.add(occ); // already ordered by start
+            }
+            streams.add(occurrences);
+        }
+        List<EventRecord> out = merge(streams);
+        out.removeIf(rec -> rec.allDay);
+        return out;
+    }
+
+    /** K-way merge of lists that are each ordered by start; ties keep the order of the lists. */
+    static List<EventRecord> merge(List<List<EventRecord>> sorted) {
+        int total = 0;
+        int nonEmpty = 0;
+        for (List<EventRecord> list : sorted) {
+            total += list.size();
+            if (!list.isEmpty()) nonEmpty++;
+        }
+        List<EventRecord> out = new ArrayList<>(total);
+        if (nonEmpty <= 1) {
+            for (List<EventRecord> list : sorted) out.addAll(list);
+            return out;
+        }
+        // heap entries are {list, position}, ordered by the start they point at
+        PriorityQueue<int[]> heads = new PriorityQueue<>(nonEmpty, (a, b) -> {
+            int c = Long.compare(sorted.get(a[0]).get(a[1]).start, sorted.get(b[0]).get(b[1]).start);
+            return c != 0 ? c : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<EventRecord> list = sorted.get(head[0]);
+            out.add(list.get(head[1]));
+            if (++head[1] < list.size()) heads.add(head);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,196 @@
+package com.gemini.backend.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary sidecar ({@code <name>.ics.idx}) holding the parsed {@link EventRecord}s of an ICS file, so a cold
+ * start can memory-map it instead of parsing the ICS text. The snapshot describes the ICS file only (not the
+ * journal) and is trusted only while the file's size, modification time and CRC32C still match its header.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header   magic, version, icsLength, icsModified, icsCrc, generatedUids, stringCount, recordCount
+ * strings  stringCount x (int byteLength, UTF-8 bytes)   -- titles, UIDs and RRULEs, each stored once
+ * records  recordCount x (long start, long end, int uid, int title, int rrule, int tz, int exdates, int series,
+ *                         byte flags)
+ * </pre>
+ * String references are indexes into the table, -1 for null; exdates are stored as comma-separated millis.
+ */
+final class CalendarSnapshot {
+
+    private static final int MAGIC = 0x47435331; // "GCS1"
+    private static final int VERSION = 3;
+    private static final int RECORD_BYTES = 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4 + 1;
+    private static final byte ALL_DAY = 1;
+    private static final long CHECKSUM_CHUNK = 64L << 20;
+
+    /** Records read from a valid snapshot. */
+    static final class Contents {
+        final List<EventRecord> records;
+        final int generatedUids;
+
+        Contents(List<EventRecord> records, int generatedUids) {
+            this.records = records;
+            this.generatedUids = generatedUids;
+        }
+    }
+
+    private final File ics;
+    private final File file;
+
+    CalendarSnapshot(File ics) {
+        this.ics = ics;
+        this.file = new File(ics.getPath() + ".idx");
+    }
+
+    File file() {
+        return file;
+    }
+
+    /** Reads the snapshot, or returns null when it is missing, corrupt or does not match the ICS file. */
+    Contents load() {
+        if (!file.exists() || !ics.exists()) return null;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            long length = buf.getLong();
+            long modified = buf.getLong();
+            long crc = buf.getLong();
+            if (length != ics.length() || modified != ics.lastModified() || crc != checksum(ics)) return null;
+            int generatedUids = buf.getInt();
+            String[] strings = new String[buf.getInt()];
+            int count = buf.getInt();
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (buf.remaining() != (long) count * RECORD_BYTES) return null;
+            List<EventRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long start = buf.getLong();
+                long end = buf.getLong();
+                String uid = string(strings, buf.getInt());
+                String title = string(strings, buf.getInt());
+                String rrule = string(strings, buf.getInt());
+                String tz = string(strings, buf.getInt());
+                long[] exdates = dates(string(strings, buf.getInt()));
+                String series = string(strings, buf.getInt());
+                boolean allDay = (buf.get() & ALL_DAY) != 0;
+                if (uid == null) return null;
+                records.add(new EventRecord(uid, title, start, end, allDay, rrule, tz, exdates, series));
+            }
+            return new Contents(records, generatedUids);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                 | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static long[] dates(String s) {
+        return s == null ? null : Arrays.stream(s.split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    private static String dates(long[] dates) {
+        if (dates.length == 0) return null;
+        StringBuilder sb = new StringBuilder(dates.length * 14);
+        for (long t : dates) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(t);
+        }
+        return sb.toString();
+    }
+
+    /** Writes a snapshot of {@code records} for the ICS file as it is on disk now. */
+    void save(Collection<EventRecord> records, int generatedUids) throws IOException {
+        if (!ics.exists()) return;
+        long length = ics.length();
+        long modified = ics.lastModified();
+        long crc = checksum(ics);
+
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] refs = new int[records.size() * 6];
+        int r = 0;
+        for (EventRecord rec : records) {
+            refs[r++] = intern(rec.uid, ids, strings);
+            refs[r++] = intern(rec.title, ids, strings);
+            refs[r++] = intern(rec.rrule, ids, strings);
+            refs[r++] = intern(rec.tz, ids, strings);
+            refs[r++] = intern(dates(rec.exdates), ids, strings);
+            refs[r++] = intern(rec.series, ids, strings);
+        }
+
+        // several processes may save at once; each writes its own temporary file
+        File tmp = new File(file.getPath() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath()), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(length);
+            out.writeLong(modified);
+            out.writeLong(crc);
+            out.writeInt(generatedUids);
+            out.writeInt(strings.size());
+            out.writeInt(records.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            r = 0;
+            for (EventRecord rec : records) {
+                out.writeLong(rec.start);
+                out.writeLong(rec.end);
+                for (int k = 0; k < 6; k++) out.writeInt(refs[r++]);
+                out.writeByte(rec.allDay ? ALL_DAY : 0);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int intern(String s, Map<String, Integer> ids, List<String> strings) {
+        if (s == null) return -1;
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = strings.size();
+            ids.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    /** CRC32C over the whole file, read through memory-mapped chunks. */
+    static long checksum(File f) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += CHECKSUM_CHUNK) {
+                ByteBuffer chunk = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(CHECKSUM_CHUNK, size - pos));
+                crc.update(chunk);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,863 @@
+package com.gemini.backend.service;
+
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Uid;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide resident index of one ICS file. The file is streamed once through {@link IcsStreamParser}
+ * and only the resulting {@link EventRecord}s are kept in memory, indexed by start time; it is only read
+ * again when its size or modification time changes on disk. Changes since the file was written are held
+ * as a small delta (added VEVENT text, new times, deleted UIDs) that {@link IcsRewriter} applies while
+ * streaming the file back out, so the full component model is never materialized.
+ * The parsed records are also written to a {@link CalendarSnapshot} so the next cold start can skip parsing.
+ *
+ * Mutations are persisted by {@link #commit()} as small appends to a {@link CalendarJournal}; the journal
+ * is folded back into the ICS file once it grows past a threshold (in the background), on JVM shutdown,
+ * or whenever a full rewrite is unavoidable.
+ *
+ * A transaction ({@link #begin()} ... {@link #commitTransaction()} / {@link #rollback()}) applies any number
+ * of mutations against the resident calendar without reloading it and persists them with a single commit;
+ * on rollback every mutation is undone in memory and nothing reaches disk. The caller must hold the store's
+ * monitor for the whole transaction.
+ *
+ * Several processes may share the ICS file (the CLI and the server). Every journal append, compaction and
+ * upload happens under an exclusive {@link CalendarFileLock}, and reloads take it shared. Before touching
+ * the index the store compares the ICS file's size, modification time and file key, and the journal length,
+ * with what it last saw. When another process changed them, the new disk state is built and diffed against
+ * the resident index, so only events that actually differ are re-indexed. The ICS file is not re-read if
+ * only the journal grew.
+ *
+ * A read-only store ({@link #readOnly(File)}, used for overlay calendars) loads and follows its file the
+ * same way but never writes next to it: no lock sidecar, snapshot or journal is created, mutations are
+ * rejected and nothing is compacted, not even at JVM exit.
+ *
+ * Free/busy queries ({@link #isBusy}, {@link #firstFreeSlot}, {@link #freeSlots}) also treat the events of
+ * the store's {@link CalendarOverlay} as busy. The overlay views are refreshed with the index, and a
+ * transaction keeps the ones it started with.
+ *
+ * Readers that only query committed state use {@link #view()}: after every load, commit and compaction the
+ * store publishes an immutable {@link CalendarView} through an atomic reference, so they neither wait for
+ * the monitor nor see a transaction or a multi-event change half done. Writers keep mutating the indexes
+ * below under the monitor and swap in the next view when their changes are committed.
+ */
+final class CalendarStore {
+
+    private static final Map<String, CalendarStore> STORES = new ConcurrentHashMap<>();
+    private static final Map<String, CalendarStore> READ_ONLY = new ConcurrentHashMap<>();
+
+    /** Journal entries / bytes after which the journal is compacted into the ICS file. */
+    private static final int COMPACT_ENTRIES = Integer.getInteger("calendar.journal.compactEntries", 256);
+    private static final long COMPACT_BYTES = Long.getLong("calendar.journal.compactBytes", 1L << 20);
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "calendar-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File file;
+    private final boolean readOnly;
+    private final CalendarJournal journal;
+    private final CalendarSnapshot snapshot;
+    private final CalendarFileLock lock;
+    private Thread compactOnExit;
+    private boolean closed;
+    private boolean loaded;
+    private long version; // bumped on every index change, including reloads and rollbacks
+    // stamp of the disk state the index reflects
+    private long loadedLength = -1;
+    private long loadedModified = -1;
+    private Object loadedKey;
+    private long journalLength;
+    private final Map<String, EventRecord> base = new LinkedHashMap<>(); // events of the ICS file itself
+
+    private final List<String> pending = new ArrayList<>();
+    private long writes; // journal appends and ICS rewrites, so a failed commit can tell whether it reached disk
+    private int journalEntries;
+    private boolean needsRewrite;
+    private boolean compactionQueued;
+
+    private int txDepth;
+    private int txPendingMark;
+    private final List<Runnable> undo = new ArrayList<>();
+
+    // changes not yet folded into the ICS file
+    private final Map<String, String> added = new LinkedHashMap<>();      // uid -> VEVENT text
+    private final Map<String, EventRecord> retimed = new HashMap<>();     // uid -> new times of a file event
+    private final Set<String> deleted = new HashSet<>();
+
+    private final Map<String, EventRecord> records = new HashMap<>();
+    private final NavigableMap<Long, List<EventRecord>> byStart = new TreeMap<>();
+    // title and RRULE ids of this calendar; replaced whenever the columns are rebuilt from scratch
+    private EventColumns.Dictionary dictionary = new EventColumns.Dictionary();
+    // case-folded title id -> start -> events, for lookups by title and start
+    private final Map<Integer, Map<Long, List<EventRecord>>> byTitle = new HashMap<>();
+    // columns of the last view plus the index changes since, folded in by the next snapshotView()
+    private EventColumns columns = EventColumns.of(Collections.emptyList(), dictionary);
+    private final Set<EventRecord> columnsAdded = new LinkedHashSet<>();
+    private final Set<EventRecord> columnsRemoved = new LinkedHashSet<>();
+    private final IntervalTree timed = new IntervalTree(); // non-all-day events, for overlap queries
+    private final Map<String, EventRecord> recurring = new LinkedHashMap<>();
+    private final RecurrenceExpander expander = new RecurrenceExpander();
+    private final FreeBusyIndex freeBusy = new FreeBusyIndex(timed, recurring.values(), expander);
+    private volatile CalendarOverlay overlay = CalendarOverlay.NONE;
+    private List<CalendarView> blockers = Collections.emptyList(); // overlay views the free/busy index reflects
+
+    private final AtomicReference<CalendarView> published = new AtomicReference<>();
+    private final RecurrenceExpander viewExpander = new RecurrenceExpander(); // shared by all published views
+    private final DaySummaryCache summaries = new DaySummaryCache();          // shared by all views
+
+    private CalendarStore(File file, boolean readOnly) {
+        this.file = file;
+        this.readOnly = readOnly;
+        this.journal = new CalendarJournal(file);
+        this.snapshot = new CalendarSnapshot(file);
+        this.lock = new CalendarFileLock(file, readOnly);
+    }
+
+    /** Returns the shared store for the given file, creating it on first use. */
+    static CalendarStore of(File file) {
+        return STORES.computeIfAbsent(file.getAbsolutePath(), k -> {
+            CalendarStore store = new CalendarStore(file, false);
+            store.compactOnExit = new Thread(store::compactQuietly, "calendar-compact-on-exit");
+            Runtime.getRuntime().addShutdownHook(store.compactOnExit);
+            return store;
+        });
+    }
+
+    /** Returns the shared read-only store for the given file, creating it on first use. */
+    static CalendarStore readOnly(File file) {
+        return READ_ONLY.computeIfAbsent(file.getAbsolutePath(), k -> new CalendarStore(file, true));
+    }
+
+    /**
+     * Compacts the open store of {@code file}, if any, and forgets it: its shutdown hook and any queued
+     * background compaction no longer touch the file, and the next {@link #of} loads it afresh.
+     */
+    static void close(File file) throws Exception {
+        CalendarStore store = STORES.remove(file.getAbsolutePath());
+        if (store == null) return;
+        try {
+            Runtime.getRuntime().removeShutdownHook(store.compactOnExit);
+        } catch (IllegalStateException alreadyExiting) {
+            // the hook is running or about to; compacting twice is harmless
+        }
+        synchronized (store) {
+            store.compact();
+            store.closed = true;
+        }
+    }
+
+    File file() {
+        return file;
+    }
+
+    /** Rendered summary days of this calendar, invalidated per day as events change. */
+    DaySummaryCache summaries() {
+        return summaries;
+    }
+
+    /** Sets the read-only calendars whose events block time in this one. */
+    void overlay(CalendarOverlay overlay) {
+        this.overlay = overlay;
+    }
+
+    /** Picks up the overlay's current views, unless a transaction or uncommitted batch is running. */
+    private void refreshBlockers() {
+        if (txDepth > 0 || !pending.isEmpty()) return;
+        blockers = overlay.views();
+        freeBusy.blockers(blockers);
+    }
+
+    /** Reloads the calendar if the ICS file or the journal changed on disk since they were last read or written. */
+    private void refresh() throws Exception {
+        // a running transaction (or an uncommitted batch) works against the state it started with
+        if (txDepth > 0 || !pending.isEmpty()) return;
+        if (loaded && !changedOnDisk()) return;
+        CalendarFileLock.Hold hold = lock.shared();
+        try {
+            syncFromDisk();
+        } finally {
+            hold.close();
+        }
+        publish();
+    }
+
+    private boolean icsChangedOnDisk() {
+        return file.length() != loadedLength || file.lastModified() != loadedModified
+                || !Objects.equals(fileKey(file), loadedKey);
+    }
+
+    private boolean changedOnDisk() {
+        return icsChangedOnDisk() || journal.length() != journalLength;
+    }
+
+    private static Object fileKey(File f) {
+        try {
+            return Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Brings the index in line with the disk (caller holds the file lock). The ICS file is only read again
+     * when it changed, preferably from its snapshot; the journal is replayed on top and the result diffed
+     * against the resident index.
+     */
+    private void syncFromDisk() throws Exception {
+        long t0 = System.nanoTime();
+        if (!loaded || icsChangedOnDisk()) loadBase();
+        journalLength = journal.length();
+        List<CalendarJournal.Entry> entries = journal.read();
+        Metrics.counter("calendar_journal_entries_replayed_total").add(entries.size());
+
+        Map<String, EventRecord> next = new LinkedHashMap<>(base);
+        Map<String, String> nextAdded = new LinkedHashMap<>();
+        Map<String, EventRecord> nextRetimed = new HashMap<>();
+        Set<String> nextDeleted = new HashSet<>();
+        IcsStreamParser parser = new IcsStreamParser();
+        for (CalendarJournal.Entry e : entries) {
+            EventRecord current = e.uid != null ? next.get(e.uid) : null;
+            switch (e.op) {
+                case CalendarJournal.PUT:
+                    EventRecord rec = parser.parseOne(e.payload);
+                    if (rec == null) break;
+                    next.put(rec.uid, rec);
+                    nextAdded.put(rec.uid, e.payload);
+                    nextRetimed.remove(rec.uid);
+                    break;
+                case CalendarJournal.TIME:
+                    if (current == null) break;
+                    EventRecord updated = current.withTimes(e.start, e.end);
+                    next.put(current.uid, updated);
+                    String text = nextAdded.get(current.uid);
+                    if (text != null) nextAdded.put(current.uid, IcsRewriter.retime(text, updated));
+                    else nextRetimed.put(current.uid, updated);
+                    break;
+                case CalendarJournal.DEL:
+                    if (current == null) break;
+                    next.remove(current.uid);
+                    nextAdded.remove(current.uid);
+                    nextRetimed.remove(current.uid);
+                    nextDeleted.add(current.uid);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        for (EventRecord rec : new ArrayList<>(records.values())) {
+            if (!next.containsKey(rec.uid)) unindex(rec);
+        }
+        for (EventRecord rec : next.values()) {
+            EventRecord current = records.get(rec.uid);
+            if (current != null && current.sameAs(rec)) continue; // keeps cached expansions and bitmaps
+            if (current != null) unindex(current);
+            index(rec);
+        }
+        added.clear();
+        added.putAll(nextAdded);
+        retimed.clear();
+        retimed.putAll(nextRetimed);
+        deleted.clear();
+        deleted.addAll(nextDeleted);
+        journalEntries = entries.size();
+        loaded = true;
+        Metrics.timer("calendar_sync_seconds").recordSince(t0);
+    }
+
+    /** Reads the events of the ICS file into {@link #base}, from the snapshot when it is still valid. */
+    private void loadBase() throws Exception {
+        loadedLength = file.length();
+        loadedModified = file.lastModified();
+        loadedKey = fileKey(file);
+        base.clear();
+        needsRewrite = false;
+        if (!file.exists()) return;
+        long t0 = System.nanoTime();
+        CalendarSnapshot.Contents cached = snapshot.load();
+        int generatedUids;
+        if (cached != null) {
+            for (EventRecord rec : cached.records) base.put(rec.uid, rec);
+            generatedUids = cached.generatedUids;
+            Metrics.timer("calendar_load_seconds{source=\"snapshot\"}").recordSince(t0);
+        } else {
+            IcsStreamParser parser = new IcsStreamParser();
+            try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                // a repeated UID stays in the file but is not indexed
+                parser.parse(in, rec -> base.putIfAbsent(rec.uid, rec));
+            }
+            // occurrences replaced by RECURRENCE-ID overrides are left out of their series like EXDATEs
+            for (Map.Entry<String, List<Long>> e : parser.replacedOccurrences().entrySet()) {
+                EventRecord series = base.get(e.getKey());
+                if (series != null && series.isRecurring()) base.put(series.uid, series.withExdates(e.getValue()));
+            }
+            generatedUids = parser.generatedUids();
+            Metrics.timer("calendar_load_seconds{source=\"ics\"}").recordSince(t0);
+            if (!readOnly) saveSnapshot(base.values(), generatedUids);
+        }
+        Metrics.counter("calendar_events_loaded_total").add(base.size());
+        // events without a UID cannot be addressed from the journal; persist their generated UIDs
+        needsRewrite = !readOnly && generatedUids > 0;
+    }
+
+    /** Builds an immutable view of the current in-memory state. */
+    private CalendarView snapshotView() {
+        return new CalendarView(version, currentColumns(), new ArrayList<>(recurring.values()), viewExpander, file,
+                loadedLength, loadedModified, journal.file(), journalLength, Collections.unmodifiableMap(new LinkedHashMap<>(added)),
+                Map.copyOf(retimed), Set.copyOf(deleted), journalEntries > 0 || !pending.isEmpty());
+    }
+
+    /**
+     * Columns matching the index: the previous columns patched with the records indexed and unindexed since,
+     * or rebuilt from {@link #byStart} when most of the calendar changed (e.g. a reload).
+     */
+    private EventColumns currentColumns() {
+        if (columnsAdded.size() + columnsRemoved.size() > Math.max(64, records.size() / 4)) {
+            rebuildColumns();
+        } else {
+            columns = columns.apply(columnsRemoved, columnsAdded);
+        }
+        columnsAdded.clear();
+        columnsRemoved.clear();
+        return columns;
+    }
+
+    /**
+     * Rebuilds the columns and the title index over a fresh dictionary holding only the current events'
+     * titles and RRULEs, so those of deleted, renamed or replaced events are released.
+     */
+    private void rebuildColumns() {
+        dictionary = new EventColumns.Dictionary();
+        byTitle.clear();
+        for (EventRecord rec : records.values()) indexTitle(rec);
+        columns = EventColumns.of(events(byStart), dictionary);
+        columnsAdded.clear();
+        columnsRemoved.clear();
+    }
+
+    private void publish() {
+        long t0 = System.nanoTime();
+        published.set(snapshotView());
+        Metrics.timer("calendar_publish_seconds").recordSince(t0);
+    }
+
+    /**
+     * The latest committed calendar, read without taking the store's monitor. Inside a transaction (on the
+     * thread holding the monitor) the caller sees its own uncommitted changes instead. The monitor is only
+     * taken to reload when the ICS file changed since the view was published.
+     */
+    CalendarView view() throws Exception {
+        if (Thread.holdsLock(this)) {
+            refresh();
+            return txDepth > 0 || !pending.isEmpty() ? snapshotView() : published.get();
+        }
+        CalendarView v = published.get();
+        if (v != null && v.matchesFile()) return v;
+        synchronized (this) {
+            refresh();
+            return published.get();
+        }
+    }
+
+    /** Best effort: a missing or stale snapshot only costs a full parse on the next cold start. */
+    private void saveSnapshot(Collection<EventRecord> fileEvents, int generatedUids) {
+        try {
+            snapshot.save(fileEvents, generatedUids);
+        } catch (Exception e) {
+            System.err.println("Could not write calendar snapshot " + snapshot.file() + ": " + e.getMessage());
+        }
+    }
+
+    private static List<EventRecord> events(NavigableMap<Long, List<EventRecord>> byStart) {
+        List<EventRecord> out = new ArrayList<>();
+        for (List<EventRecord> bucket : byStart.values()) out.addAll(bucket);
+        return out;
+    }
+
+    private void index(EventRecord rec) {
+        version++;
+        summaries.touched(rec, version);
+        if (!columnsRemoved.remove(rec)) columnsAdded.add(rec);
+        records.put(rec.uid, rec);
+        byStart.computeIfAbsent(rec.start, k -> new ArrayList<>(1)).add(rec);
+        indexTitle(rec);
+        if (rec.isRecurring()) recurring.put(rec.uid, rec);
+        if (!rec.allDay) {
+            timed.insert(rec);
+            freeBusy.added(rec);
+        }
+    }
+
+    private void indexTitle(EventRecord rec) {
+        int titleId = dictionary.titleId(rec.title);
+        if (titleId > 0) {
+            byTitle.computeIfAbsent(titleId, k -> new HashMap<>()).computeIfAbsent(rec.start, k -> new ArrayList<>(1)).add(rec);
+        }
+    }
+
+    private void unindex(EventRecord rec) {
+        version++;
+        summaries.touched(rec, version);
+        if (!columnsAdded.remove(rec)) columnsRemoved.add(rec);
+        records.remove(rec.uid);
+        List<EventRecord> bucket = byStart.get(rec.start);
+        if (bucket != null) {
+            bucket.remove(rec);
+            if (bucket.isEmpty()) byStart.remove(rec.start);
+        }
+        int titleId = dictionary.existingTitleId(rec.title);
+        Map<Long, List<EventRecord>> titled = byTitle.get(titleId);
+        if (titled != null) {
+            List<EventRecord> same = titled.get(rec.start);
+            if (same != null && same.remove(rec) && same.isEmpty()) {
+                titled.remove(rec.start);
+                if (titled.isEmpty()) byTitle.remove(titleId);
+            }
+        }
+        if (rec.isRecurring()) recurring.remove(rec.uid);
+        if (!rec.allDay) {
+            timed.remove(rec);
+            freeBusy.removed(rec);
+        }
+    }
+
+    /** All events ordered by start time. */
+    synchronized List<EventRecord> events() throws Exception {
+        refresh();
+        return events(byStart);
+    }
+
+    /** Events starting in [fromMs, toMs), ordered by start time. */
+    synchronized List<EventRecord> eventsStartingBetween(long fromMs, long toMs) throws Exception {
+        refresh();
+        List<EventRecord> out = new ArrayList<>();
+        for (List<EventRecord> bucket : byStart.subMap(fromMs, true, toMs, false).values()) out.addAll(bucket);
+        return out;
+    }
+
+    /** Finds an event by case-insensitive title and exact start, or null; two hash lookups. */
+    synchronized EventRecord find(String title, long startMs) throws Exception {
+        refresh();
+        int titleId = dictionary.existingTitleId(title);
+        Map<Long, List<EventRecord>> titled = titleId > 0 ? byTitle.get(titleId) : null;
+        List<EventRecord> same = titled != null ? titled.get(startMs) : null;
+        return same != null ? same.get(0) : null;
+    }
+
+    /** The event with the given UID, or null. */
+    synchronized EventRecord get(String uid) throws Exception {
+        refresh();
+        return uid == null ? null : records.get(uid);
+    }
+
+    /** Events with case-insensitive title {@code title}, ordered by start. */
+    synchronized List<EventRecord> eventsTitled(String title) throws Exception {
+        refresh();
+        int titleId = dictionary.existingTitleId(title);
+        Map<Long, List<EventRecord>> titled = titleId > 0 ? byTitle.get(titleId) : null;
+        if (titled == null) return Collections.emptyList();
+        List<EventRecord> out = new ArrayList<>();
+        for (List<EventRecord> same : titled.values()) out.addAll(same);
+        out.sort(Comparator.comparingLong(r -> r.start));
+        return out;
+    }
+
+    /**
+     * Repeat occurrences of recurring events overlapping [fromMs, toMs) as records carrying the occurrence's
+     * times, ordered by start. The DTSTART occurrence is left out since it is already a stored event.
+     */
+    synchronized List<EventRecord> repeatOccurrencesBetween(long fromMs, long toMs) throws Exception {
+        refresh();
+        List<EventRecord> out = new ArrayList<>();
+        for (EventRecord rec : recurring.values()) {
+            if (rec.start >= toMs) continue;
+            for (long start : expander.occurrences(rec, fromMs, toMs)) {
+                if (start != rec.start) out.add(rec.withTimes(start, start + rec.duration()));
+            }
+        }
+        out.sort(Comparator.comparingLong(r -> r.start));
+        return out;
+    }
+
+    /** True if any timed event or recurring occurrence other than {@code excludeUid} overlaps [startMs, endMs). */
+    synchronized boolean isBusy(long startMs, long endMs, String excludeUid) throws Exception {
+        refresh();
+        refreshBlockers();
+        for (CalendarView view : blockers) {
+            if (view.columns().overlaps(startMs, endMs, null)) return true;
+            for (EventRecord occ : view.repeatOccurrencesBetween(startMs, endMs)) {
+                if (!occ.allDay) return true;
+            }
+        }
+        if (timed.overlaps(startMs, endMs, excludeUid)) return true;
+        for (EventRecord rec : recurring.values()) {
+            if (rec.allDay || rec.uid.equals(excludeUid) || rec.start >= endMs) continue;
+            if (expander.occurrences(rec, startMs, endMs).length > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * First free start on the grid {@code fromMs + k*stepMs} before {@code startLimit} whose end stays before
+     * {@code endLimit}, treating {@code exclude} (the event being moved, may be null) as absent; -1 if none.
+     * Served from the per-day free/busy bitmaps.
+     */
+    synchronized long firstFreeSlot(long fromMs, long durationMs, long stepMs, long startLimit, long endLimit,
+                                    EventRecord exclude) throws Exception {
+        refresh();
+        refreshBlockers();
+        return freeBusy.firstFree(fromMs, durationMs, stepMs, startLimit, endLimit, exclude);
+    }
+
+    /**
+     * Up to {@code limit} free slots of {@code durationMinutes} on the epoch days {@code firstDay}..{@code lastDay},
+     * ranked by {@link SlotFinder}. Served from the per-day free/busy bitmaps.
+     */
+    synchronized List<SlotFinder.Slot> freeSlots(long firstDay, long lastDay, int durationMinutes, int windowFrom,
+                                                 int windowTo, int stepMinutes, long notBeforeMs, int limit) throws Exception {
+        refresh();
+        refreshBlockers();
+        return SlotFinder.find(freeBusy, firstDay, lastDay, durationMinutes, windowFrom, windowTo, stepMinutes, notBeforeMs, limit);
+    }
+
+    /**
+     * Timed events and recurring occurrences of the overlay calendars starting in [fromMs, toMs), ordered by
+     * start; they block time here but are not part of this calendar.
+     */
+    synchronized List<EventRecord> blockingEventsStartingBetween(long fromMs, long toMs) throws Exception {
+        refresh();
+        refreshBlockers();
+        return CalendarOverlay.timedEventsStartingBetween(blockers, fromMs, toMs);
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("Calendar is read-only: " + file);
+    }
+
+    synchronized EventRecord add(VEvent ev) throws Exception {
+        checkWritable();
+        refresh();
+        if (ev.getUid() == null) ev.getProperties().add(new Uid(UUID.randomUUID().toString()));
+        String text = ev.toString();
+        EventRecord rec = new IcsStreamParser().parseOne(text);
+        if (rec == null) throw new IllegalArgumentException("Event has no start date");
+        Runnable restore = txDepth > 0 ? snapshot(rec.uid) : null;
+        EventRecord existing = records.get(rec.uid);
+        if (existing != null) unindex(existing);
+        index(rec);
+        added.put(rec.uid, text);
+        retimed.remove(rec.uid);
+        pending.add(CalendarJournal.put(text));
+        if (restore != null) undo.add(restore);
+        return rec;
+    }
+
+    /** Moves or resizes an event; an unchanged DTSTART keeps its original form when written back. */
+    synchronized EventRecord retime(EventRecord rec, long newStart, long newEnd) throws Exception {
+        checkWritable();
+        refresh();
+        EventRecord current = records.get(rec.uid);
+        if (current == null) throw new IllegalStateException("Event no longer in calendar: " + rec.title);
+        if (txDepth > 0) undo.add(snapshot(current.uid));
+        EventRecord updated = applyTimes(current, newStart, newEnd);
+        pending.add(CalendarJournal.time(rec.uid, newStart, newEnd));
+        return updated;
+    }
+
+    private EventRecord applyTimes(EventRecord current, long newStart, long newEnd) {
+        unindex(current);
+        EventRecord updated = current.withTimes(newStart, newEnd);
+        index(updated);
+        String text = added.get(current.uid);
+        if (text != null) {
+            added.put(current.uid, IcsRewriter.retime(text, updated));
+        } else {
+            retimed.put(current.uid, updated);
+        }
+        return updated;
+    }
+
+    synchronized boolean remove(EventRecord rec) throws Exception {
+        checkWritable();
+        refresh();
+        EventRecord current = records.get(rec.uid);
+        if (current == null) return false;
+        List<EventRecord> gone = new ArrayList<>();
+        gone.add(current);
+        if (current.isRecurring()) {
+            // the series' overridden occurrences go with it
+            for (EventRecord r : records.values()) {
+                if (current.uid.equals(r.series)) gone.add(r);
+            }
+        }
+        for (EventRecord r : gone) {
+            if (txDepth > 0) undo.add(snapshot(r.uid));
+            applyRemove(r);
+            pending.add(CalendarJournal.del(r.uid));
+        }
+        return true;
+    }
+
+    private void applyRemove(EventRecord current) {
+        unindex(current);
+        added.remove(current.uid);
+        retimed.remove(current.uid);
+        deleted.add(current.uid);
+    }
+
+    /** Captures everything held for {@code uid} so a transaction can put it back on rollback. */
+    private Runnable snapshot(String uid) {
+        EventRecord rec = records.get(uid);
+        String text = added.get(uid);
+        EventRecord times = retimed.get(uid);
+        boolean wasDeleted = deleted.contains(uid);
+        return () -> {
+            EventRecord now = records.get(uid);
+            if (now != null) unindex(now);
+            if (rec != null) index(rec);
+            if (text != null) added.put(uid, text); else added.remove(uid);
+            if (times != null) retimed.put(uid, times); else retimed.remove(uid);
+            if (wasDeleted) deleted.add(uid); else deleted.remove(uid);
+        };
+    }
+
+    /** Starts (or joins) a transaction. */
+    synchronized void begin() throws Exception {
+        checkWritable();
+        if (txDepth == 0) {
+            refresh();
+            refreshBlockers();
+            txPendingMark = pending.size();
+            undo.clear();
+        }
+        txDepth++;
+    }
+
+    /** Ends the current transaction level; the outermost level persists everything with one commit. */
+    synchronized void commitTransaction() throws Exception {
+        if (txDepth == 0) throw new IllegalStateException("No transaction in progress");
+        if (--txDepth > 0) return;
+        try {
+            commit();
+        } catch (Exception e) {
+            // commit() only fails before anything reached disk; keep memory consistent with disk
+            txDepth = 1;
+            rollback();
+            throw e;
+        }
+        undo.clear();
+    }
+
+    /** Abandons the whole transaction, restoring the calendar and index to their state at {@link #begin()}. */
+    synchronized void rollback() {
+        if (txDepth == 0) return;
+        txDepth = 0;
+        for (int i = undo.size() - 1; i >= 0; i--) undo.get(i).run();
+        undo.clear();
+        pending.subList(txPendingMark, pending.size()).clear();
+    }
+
+    /**
+     * Persists the mutations made since the last commit by appending them to the journal. Falls back to a
+     * full rewrite when there is no ICS file yet, and schedules a background compaction once the journal
+     * is large enough.
+     *
+     * Throws only when nothing reached disk. Once the changes are written, a later failure (adopting another
+     * process's changes, or a rewrite) is logged and the calendar reloaded from disk, which has them.
+     */
+    synchronized void commit() throws Exception {
+        if (txDepth > 0) return; // deferred to commitTransaction()
+        if (readOnly || !loaded || (pending.isEmpty() && !needsRewrite)) return;
+        long writesBefore = writes;
+        try {
+            persist();
+        } catch (Exception e) {
+            if (writes == writesBefore) throw e;
+            System.err.println("Calendar " + file + " was saved but could not be reloaded: " + e.getMessage());
+            pending.clear();
+            loaded = false;
+            try {
+                refresh();
+            } catch (Exception again) {
+                // stays unloaded; the next call reloads
+            }
+        }
+    }
+
+    private void persist() throws Exception {
+        CalendarFileLock.Hold hold = lock.exclusive();
+        try {
+            if (changedOnDisk()) {
+                // another process wrote since we loaded: put our entries after theirs and adopt the merged result
+                appendPending();
+                pending.clear();
+                syncFromDisk();
+            } else if (!needsRewrite && file.exists()) {
+                appendPending();
+                journalEntries += pending.size();
+                journalLength = journal.length();
+                pending.clear();
+            }
+            if (needsRewrite || !file.exists()) {
+                compact();
+                return;
+            }
+        } finally {
+            hold.close();
+        }
+        publish();
+        if (!compactionQueued && (journalEntries >= COMPACT_ENTRIES || journal.length() >= COMPACT_BYTES)) {
+            compactionQueued = true;
+            COMPACTOR.execute(this::compactQuietly);
+        }
+    }
+
+    private void appendPending() throws IOException {
+        if (pending.isEmpty()) return;
+        journal.append(pending);
+        writes++;
+    }
+
+    /**
+     * Folds the journal into the ICS file: streams the file through {@link IcsRewriter} into a temporary file,
+     * moves it over the ICS file and drops the journal.
+     */
+    synchronized void compact() throws Exception {
+        compactionQueued = false;
+        if (readOnly || !loaded || closed) return;
+        CalendarFileLock.Hold hold = lock.exclusive();
+        try {
+            if (changedOnDisk()) {
+                appendPending();
+                pending.clear();
+                syncFromDisk();
+            }
+            if (journalEntries == 0 && pending.isEmpty() && !needsRewrite && file.exists()) {
+                publish();
+                return;
+            }
+            if (file.getAbsoluteFile().getParentFile() != null) file.getAbsoluteFile().getParentFile().mkdirs();
+            long t0 = System.nanoTime();
+            File tmp = new File(file.getPath() + ".tmp");
+            try (Writer out = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                write(out);
+            }
+            Metrics.histogram("calendar_write_bytes{target=\"ics\"}", Metrics.Unit.BYTES).record(tmp.length());
+            Metrics.timer("calendar_compact_seconds").recordSince(t0);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writes++;
+            journal.clear();
+            journalEntries = 0;
+            journalLength = 0;
+            pending.clear();
+            needsRewrite = false;
+            added.clear();
+            retimed.clear();
+            deleted.clear();
+            loadedLength = file.length();
+            loadedModified = file.lastModified();
+            loadedKey = fileKey(file);
+            // the index now matches the rewritten file exactly
+            base.clear();
+            base.putAll(records);
+            saveSnapshot(base.values(), 0);
+            rebuildColumns();
+        } finally {
+            hold.close();
+        }
+        publish();
+    }
+
+    /**
+     * Replaces the whole calendar with {@code icsText} (an uploaded file): the text is validated by parsing,
+     * written next to the ICS file and moved over it, and the journal is dropped before reloading.
+     */
+    synchronized void replaceWith(String icsText) throws Exception {
+        checkWritable();
+        if (txDepth > 0) throw new IllegalStateException("Cannot replace the calendar inside a transaction");
+        IcsStreamParser parser = new IcsStreamParser();
+        int count = parser.parse(new StringReader(icsText), rec -> { });
+        if (count == 0 && !icsText.contains("BEGIN:VCALENDAR")) {
+            throw new IllegalArgumentException("Uploaded ICS is invalid: no VCALENDAR found");
+        }
+        CalendarFileLock.Hold hold = lock.exclusive();
+        try {
+            if (file.getAbsoluteFile().getParentFile() != null) file.getAbsoluteFile().getParentFile().mkdirs();
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.writeString(tmp.toPath(), icsText, StandardCharsets.UTF_8);
+            Metrics.histogram("calendar_write_bytes{target=\"upload\"}", Metrics.Unit.BYTES).record(tmp.length());
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.clear();
+            pending.clear();
+            loaded = false; // forces the file to be read again even if its size and time look unchanged
+            syncFromDisk();
+            rebuildColumns();
+        } finally {
+            hold.close();
+        }
+        publish();
+    }
+
+    private void write(Writer out) throws Exception {
+        IcsRewriter.write(file, out, added, retimed, deleted);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            System.err.println("Calendar compaction failed for " + file + ": " + e.getMessage());
+        }
+    }
+
+    /** Renders the ICS file with all pending changes applied. */
+    synchronized String render() throws Exception {
+        refresh();
+        StringWriter out = new StringWriter();
+        write(out);
+        return out.toString();
+    }
+
+    /** Changes whenever the indexed events change, so callers can tell whether cached answers are stale. */
+    synchronized long version() throws Exception {
+        refresh();
+        return version;
+    }
+
+    synchronized int size() throws Exception {
+        refresh();
+        return records.size();
+    }
+}
@@ -1,14 +1,9 @@
 package com.gemini.backend.service;
 
-import net.fortuna.ical4j.data.CalendarOutputter;
-import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.model.*;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.*;
-import net.fortuna.ical4j.model.parameter.Value;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -16,13 +11,47 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 
 public class CalendarTool {
 
+    /** How many days (from this week's Monday) of recurring occurrences summarizeCalendar() lists. */
+    private static final int RECURRENCE_SUMMARY_DAYS = 21;
+    /** Solve-and-place rounds of rebalance(); later rounds only run when a planned move did not fit. */
+    private static final int REBALANCE_PASSES = 3;
+    /** Grid of the start times findFreeSlots() suggests, in minutes from midnight. */
+    private static final int SLOT_STEP_MINUTES = 30;
+    /** Longest date range findFreeSlots() searches. */
+    private static final int MAX_SLOT_SEARCH_DAYS = 366;
+    /** Free slots attached to the model prompt, for an event of the default length. */
+    private static final int PROMPT_SLOTS = 8;
+
+    // per-operation latency, exported as calendar_op_seconds{op="..."}
+    private static final Metrics.Histogram CREATE_TIME = Metrics.op("create");
+    private static final Metrics.Histogram UPDATE_DURATION_TIME = Metrics.op("update_duration");
+    private static final Metrics.Histogram MOVE_TIME = Metrics.op("move");
+    private static final Metrics.Histogram MOVE_RESOLVING_TIME = Metrics.op("move_resolving_conflicts");
+    private static final Metrics.Histogram DELETE_TIME = Metrics.op("delete");
+    private static final Metrics.Histogram HAS_EVENT_TIME = Metrics.op("has_event");
+    private static final Metrics.Histogram FIND_UPCOMING_TIME = Metrics.op("find_upcoming");
+    private static final Metrics.Histogram SUMMARIZE_TIME = Metrics.op("summarize");
+    private static final Metrics.Histogram SUMMARIZE_RANGE_TIME = Metrics.op("summarize_range");
+    private static final Metrics.Histogram LIST_TIME = Metrics.op("list");
+    private static final Metrics.Histogram REBALANCE_TIME = Metrics.op("rebalance_week");
+    private static final Metrics.Histogram AUTO_SPACE_TIME = Metrics.op("auto_space");
+    private static final Metrics.Histogram READ_ICS_TIME = Metrics.op("read_ics");
+    private static final Metrics.Histogram REPLACE_ICS_TIME = Metrics.op("replace_ics");
+    private static final Metrics.Histogram PROMPT_CONTEXT_TIME = Metrics.op("prompt_context");
+    private static final Metrics.Histogram FIND_SLOTS_TIME = Metrics.op("find_free_slots");
+    private static final Metrics.Histogram IS_BUSY_TIME = Metrics.op("is_busy");
+    private static final Metrics.Histogram OVERLAPPING_TIME = Metrics.op("overlapping_events");
+    private static final Metrics.Histogram TRANSACTION_TIME = Metrics.op("transaction");
+    private static final Metrics.Counter EVENTS_SCANNED = Metrics.counter("calendar_events_scanned_total");
+    private static final Metrics.Counter SUMMARY_DAYS_RENDERED = Metrics.counter("calendar_summary_days_rendered_total");
+    private static final Metrics.Counter SUMMARY_DAYS_CACHED = Metrics.counter("calendar_summary_days_cached_total");
+
     /**
      * Creates a calendar event and updates ../resources/sample-calendar.ics
      *
@@ -44,63 +73,49 @@ public class CalendarTool {
      * @param durationMinutes Optional; if null or <=0 defaults to 60 minutes
      */
     public static void createCalendarEvent(String date, String time, String recurring, String title, Integer durationMinutes) throws Exception {
-        File file = resolveCalendarFile();
-        Calendar calendar;
-
-        if (file.exists()) {
-            try (FileInputStream fin = new FileInputStream(file)) {
-                CalendarBuilder builder = new CalendarBuilder();
-                calendar = builder.build(fin);
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+
+            // Parse date and time
+            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            Date eventDate = formatter.parse(date + " " + time);
+
+        // Start and end time
+        DateTime start = new DateTime(eventDate);
+        int dur = (durationMinutes == null || durationMinutes <= 0) ? 60 : durationMinutes;
+        DateTime end = new DateTime(eventDate.getTime() + (long)dur * 60 * 1000); // default or custom duration
+
+        // Create unique event
+        VEvent event = new VEvent(start, end, title == null || title.isBlank() ? "AI-Created Event" : title);
+            event.getProperties().add(new Uid(UUID.randomUUID().toString()));
+
+            // Add recurrence if applicable
+            switch (recurring.toLowerCase()) {
+                case "daily":
+                    event.getProperties().add(new RRule("FREQ=DAILY"));
+                    break;
+                case "weekly":
+                    event.getProperties().add(new RRule("FREQ=WEEKLY"));
+                    break;
+                case "monthly":
+                    event.getProperties().add(new RRule("FREQ=MONTHLY"));
+                    break;
+                case "yearly":
+                    event.getProperties().add(new RRule("FREQ=YEARLY"));
+                    break;
+                default:
+                    // non-recurring = no RRule
+                    break;
             }
-        } else {
-            file.getParentFile().mkdirs();
-            calendar = new Calendar();
-            calendar.getProperties().add(new ProdId("-//AI Calendar//Gemini Tool//EN"));
-            calendar.getProperties().add(Version.VERSION_2_0);
-            calendar.getProperties().add(CalScale.GREGORIAN);
-        }
 
-        // Parse date and time
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        Date eventDate = formatter.parse(date + " " + time);
-
-    // Start and end time
-    DateTime start = new DateTime(eventDate);
-    int dur = (durationMinutes == null || durationMinutes <= 0) ? 60 : durationMinutes;
-    DateTime end = new DateTime(eventDate.getTime() + (long)dur * 60 * 1000); // default or custom duration
-
-    // Create unique event
-    VEvent event = new VEvent(start, end, title == null || title.isBlank() ? "AI-Created Event" : title);
-        event.getProperties().add(new Uid(UUID.randomUUID().toString()));
-
-        // Add recurrence if applicable
-        switch (recurring.toLowerCase()) {
-            case "daily":
-                event.getProperties().add(new RRule("FREQ=DAILY"));
-                break;
-            case "weekly":
-                event.getProperties().add(new RRule("FREQ=WEEKLY"));
-                break;
-            case "monthly":
-                event.getProperties().add(new RRule("FREQ=MONTHLY"));
-                break;
-            case "yearly":
-                event.getProperties().add(new RRule("FREQ=YEARLY"));
-                break;
-            default:
-                // non-recurring = no RRule
-                break;
+            // Add event to calendar and write back to file
+            store.add(event);
+            store.commit();
+            System.out.println("✅ Event added to " + store.file().getAbsolutePath());
+        } finally {
+            CREATE_TIME.recordSince(t0);
         }
-
-        // Add event to calendar
-        calendar.getComponents().add(event);
-
-        // Write back to file
-        try (FileOutputStream fout = new FileOutputStream(file)) {
-            CalendarOutputter outputter = new CalendarOutputter();
-            outputter.output(calendar, fout);
-        }
-        System.out.println("✅ Event added to " + file.getAbsolutePath());
     }
 
     /**
@@ -109,34 +124,46 @@ public class CalendarTool {
      * @return true if updated, false if not found
      */
     public static boolean updateEventDuration(String title, String date, String time, int durationMinutes) throws Exception {
-        if (durationMinutes <= 0) durationMinutes = 60;
-        Calendar calendar = loadOrCreate();
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        Date startMatch = formatter.parse(date + " " + time);
-
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (!(comp instanceof VEvent)) continue;
-            VEvent ev = (VEvent) comp;
-            Summary sum = ev.getSummary();
-            if (sum == null || sum.getValue() == null || !sum.getValue().equalsIgnoreCase(title)) continue;
-            DtStart ds = ev.getStartDate();
-            DtEnd de = ev.getEndDate(true);
-            if (ds == null || de == null) continue;
-            Date dsJava = new Date(ds.getDate().getTime());
-            if (dsJava.getTime() != startMatch.getTime()) continue;
-
-            // compute new end
-            Date newEnd = new Date(dsJava.getTime() + (long)durationMinutes * 60 * 1000);
-            // update properties
-            ev.getProperties().remove(ev.getProperty(Property.DTEND));
-            ev.getProperties().add(new DtEnd(new DateTime(newEnd)));
-            save(calendar);
-            return true;
+        long t0 = System.nanoTime();
+        try {
+            if (durationMinutes <= 0) durationMinutes = 60;
+            CalendarStore store = store();
+            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            Date startMatch = formatter.parse(date + " " + time);
+
+            EventRecord ev = store.find(title, startMatch.getTime());
+            return ev != null && resize(store, ev, durationMinutes);
+        } finally {
+            UPDATE_DURATION_TIME.recordSince(t0);
+        }
+    }
+
+    /** {@link #updateEventDuration} for the event with UID {@code uid}. */
+    public static boolean updateEventDurationByUid(String uid, int durationMinutes) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            if (durationMinutes <= 0) durationMinutes = 60;
+            CalendarStore store = store();
+            EventRecord ev = store.get(uid);
+            return ev != null && resize(store, ev, durationMinutes);
+        } finally {
+            UPDATE_DURATION_TIME.recordSince(t0);
         }
-        return false;
+    }
+
+    private static boolean resize(CalendarStore store, EventRecord ev, int durationMinutes) throws Exception {
+        // keep DTSTART, compute new end
+        store.retime(ev, ev.start, ev.start + (long)durationMinutes * 60 * 1000);
+        store.commit();
+        return true;
     }
 
     private static File resolveCalendarFile() {
+        // an explicit file (-Dcalendar.file or CALENDAR_FILE) wins, e.g. for benchmarks on generated calendars
+        String configured = System.getProperty("calendar.file", System.getenv("CALENDAR_FILE"));
+        if (configured != null && !configured.isBlank()) {
+            return new File(configured.trim());
+        }
         // Prefer src/main/resources path so it remains part of project source
         Path primary = Paths.get("src", "main", "resources", "sample-calendar.ics");
         if (Files.exists(primary)) {
@@ -156,73 +183,322 @@ public class CalendarTool {
     }
 
     public static String readCalendarContent() {
-        File file = resolveCalendarFile();
+        long t0 = System.nanoTime();
         try {
-            if (file.exists()) {
-                return Files.readString(file.toPath());
+            // mutations may still sit in the journal; render the committed calendar instead of the stale file.
+            // A view goes stale if a compaction replaces the file mid-read; retry with the next one.
+            CalendarStore store = store();
+            for (int attempt = 0; attempt < 3; attempt++) {
+                String text = store.view().render();
+                if (text != null) return text;
             }
-        } catch (Exception ignored) { }
-        return "";
+            return store.render();
+        } catch (Exception ignored) {
+            return "";
+        } finally {
+            READ_ICS_TIME.recordSince(t0);
+        }
     }
 
-    private static Calendar loadOrCreate() throws Exception {
-        File file = resolveCalendarFile();
-        if (file.exists()) {
-            try (FileInputStream fin = new FileInputStream(file)) {
-                CalendarBuilder builder = new CalendarBuilder();
-                return builder.build(fin);
+    /**
+     * Replaces the calendar with uploaded ICS text; pending journal changes are discarded.
+     * @throws IllegalArgumentException if the text is not an iCalendar document
+     */
+    public static void replaceCalendarContent(String icsText) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            store().replaceWith(icsText == null ? "" : icsText);
+        } finally {
+            REPLACE_ICS_TIME.recordSince(t0);
+        }
+    }
+
+    /** One timed event as listed by {@link #listEvents()}; all-day events are not listed. */
+    public static class ListedEvent {
+        public String uid;   // addresses the event in the *ByUid operations
+        public String title;
+        public String date;  // yyyy-MM-dd
+        public String start; // HH:mm
+        public String end;   // HH:mm
+        public long durationMinutes;
+        public String calendar; // source file name; only set by overlappingEvents()
+    }
+
+    /** Timed events of the calendar (recurring ones once, at their first start), sorted by start. */
+    public static List<ListedEvent> listEvents() throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            java.time.format.DateTimeFormatter hm = java.time.format.DateTimeFormatter.ofPattern("HH:mm");
+            List<EventRecord> records = store().view().events(); // already ordered by start
+            EVENTS_SCANNED.add(records.size());
+            List<ListedEvent> out = new ArrayList<>(records.size());
+            for (EventRecord rec : records) {
+                if (!rec.allDay) out.add(listed(rec, zone, hm));
             }
+            return out;
+        } finally {
+            LIST_TIME.recordSince(t0);
         }
-        file.getParentFile().mkdirs();
-        Calendar calendar = new Calendar();
-        calendar.getProperties().add(new ProdId("-//AI Calendar//Gemini Tool//EN"));
-        calendar.getProperties().add(Version.VERSION_2_0);
-        calendar.getProperties().add(CalScale.GREGORIAN);
-        return calendar;
     }
 
-    private static void save(Calendar calendar) throws Exception {
-        File file = resolveCalendarFile();
-        try (FileOutputStream fout = new FileOutputStream(file)) {
-            CalendarOutputter outputter = new CalendarOutputter();
-            outputter.output(calendar, fout);
+    private static ListedEvent listed(EventRecord rec, java.time.ZoneId zone, java.time.format.DateTimeFormatter hm) {
+        java.time.ZonedDateTime s = java.time.Instant.ofEpochMilli(rec.start).atZone(zone);
+        java.time.ZonedDateTime e = java.time.Instant.ofEpochMilli(rec.end).atZone(zone);
+        ListedEvent ev = new ListedEvent();
+        ev.uid = rec.uid;
+        ev.title = rec.title != null ? rec.title : "(untitled)";
+        ev.date = s.toLocalDate().toString();
+        ev.start = hm.format(s);
+        ev.end = hm.format(e);
+        ev.durationMinutes = Math.max(0, (rec.end - rec.start) / 60_000);
+        return ev;
+    }
+
+    /**
+     * True if [date time, +durationMinutes) overlaps a timed event or recurring occurrence of this calendar or
+     * of any overlay calendar (-Dcalendar.overlays, see {@link #overlappingEvents(String, String, int)}).
+     */
+    public static boolean isBusy(String date, String time, int durationMinutes) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            long start = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(date + " " + time).getTime();
+            return store().isBusy(start, start + Math.max(1, durationMinutes) * 60_000L, null);
+        } finally {
+            IS_BUSY_TIME.recordSince(t0);
         }
     }
 
-    public static boolean updateEventByTitleAndStart(String title, String date, String time, String newDate, String newTime) throws Exception {
-        Calendar calendar = loadOrCreate();
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        Date oldStartDate = formatter.parse(date + " " + time);
-        Date newStartDate = formatter.parse(newDate + " " + newTime);
-
-        boolean updated = false;
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (comp instanceof VEvent) {
-                VEvent ev = (VEvent) comp;
-                Summary sum = ev.getSummary();
-                if (sum != null && sum.getValue() != null && sum.getValue().equalsIgnoreCase(title)) {
-                    DtStart dtStart = ev.getStartDate();
-                    if (dtStart != null) {
-                        DateTime start = (DateTime) dtStart.getDate();
-                        if (start != null && start.getTime() == oldStartDate.getTime()) {
-                            // Keep same duration
-                            DateTime oldEnd = (DateTime) ev.getEndDate(true).getDate();
-                            long duration = oldEnd.getTime() - start.getTime();
-                            DateTime newStart = new DateTime(newStartDate);
-                            DateTime newEnd = new DateTime(newStartDate.getTime() + duration);
-                            ev.getProperties().remove(ev.getProperty(Property.DTSTART));
-                            ev.getProperties().remove(ev.getProperty(Property.DTEND));
-                            ev.getProperties().add(new DtStart(newStart));
-                            ev.getProperties().add(new DtEnd(newEnd));
-                            updated = true;
-                            break;
-                        }
-                    }
+    /**
+     * Timed events and recurring occurrences overlapping [date time, +durationMinutes) across this calendar and
+     * the overlay calendars, ordered by start, each tagged with the name of its calendar file.
+     *
+     * Overlay calendars are the read-only ICS files listed in -Dcalendar.overlays (or CALENDAR_OVERLAYS),
+     * separated by ',' or the path separator, e.g. work and shared team exports. Their events block time for
+     * conflict resolution, free-slot search, rebalancing and auto-spacing but are never changed. They are
+     * loaded in parallel and each stays indexed until its file changes.
+     */
+    public static List<ListedEvent> overlappingEvents(String date, String time, int durationMinutes) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            long start = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(date + " " + time).getTime();
+            long end = start + Math.max(1, durationMinutes) * 60_000L;
+            File file = resolveCalendarFile();
+            List<CalendarView> views = new ArrayList<>();
+            views.add(store().view());
+            views.addAll(CalendarOverlay.configured(file).views());
+
+            // one start-ordered stream per calendar, merged
+            List<List<EventRecord>> streams = new ArrayList<>(views.size());
+            java.util.Map<EventRecord, String> source = new java.util.IdentityHashMap<>();
+            for (CalendarView view : views) {
+                List<EventRecord> hits = new ArrayList<>();
+                view.columns().forEachTimedOverlap(start, end, hits::add);
+                for (EventRecord occ : view.repeatOccurrencesBetween(start, end)) {
+                    if (!occ.allDay) hits.add(occ);
                 }
+                hits.sort(Comparator.comparingLong(r -> r.start));
+                for (EventRecord rec : hits) source.put(rec, view.file().getName());
+                streams.add(hits);
+            }
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            java.time.format.DateTimeFormatter hm = java.time.format.DateTimeFormatter.ofPattern("HH:mm");
+            List<ListedEvent> out = new ArrayList<>();
+            for (EventRecord rec : CalendarOverlay.merge(streams)) {
+                ListedEvent ev = listed(rec, zone, hm);
+                ev.calendar = source.get(rec);
+                out.add(ev);
             }
+            return out;
+        } finally {
+            OVERLAPPING_TIME.recordSince(t0);
+        }
+    }
+
+    /**
+     * Compact listing of the events relevant to {@code userRequest} (current week, mentioned dates, title
+     * matches) for the model prompt, capped at the configured token budget.
+     */
+    public static String promptContext(String userRequest) {
+        long t0 = System.nanoTime();
+        try {
+            return new CalendarContextBuilder(CalendarContextBuilder.configuredBudget())
+                    .build(store().view(), userRequest, java.time.LocalDate.now());
+        } catch (Exception e) {
+            return "(calendar unavailable: " + e.getMessage() + ")\n";
+        } finally {
+            PROMPT_CONTEXT_TIME.recordSince(t0);
+        }
+    }
+
+    /** A free slot suggested by {@link #findFreeSlots(int, String, String, int)}. */
+    public static class FreeSlot {
+        public String date;  // yyyy-MM-dd
+        public String start; // HH:mm
+        public String end;   // HH:mm
+        public int dayBusyMinutes; // minutes already booked that day
+    }
+
+    /**
+     * The best {@code limit} free slots of {@code durationMinutes} on the days {@code fromDate}..{@code toDate}
+     * (inclusive, "yyyy-MM-dd"; null means today and a week from the first day), ranked the way the model is
+     * asked to schedule: days with less booked first, later times of the day first. Slots start on a
+     * {@value #SLOT_STEP_MINUTES}-minute grid inside the scheduling window (-Dcalendar.slots.window or
+     * CALENDAR_SLOTS_WINDOW, default 08:00-20:00) and never in the past. Slots suggested for the same day do
+     * not overlap, and each one counts towards its day's load when ranking the rest.
+     *
+     * Answered from the store's per-day free/busy bitmaps, which are kept up to date as events change.
+     */
+    public static List<FreeSlot> findFreeSlots(int durationMinutes, String fromDate, String toDate, int limit) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            java.time.LocalDate first = fromDate != null ? java.time.LocalDate.parse(fromDate) : java.time.LocalDate.now(zone);
+            java.time.LocalDate last = toDate != null ? java.time.LocalDate.parse(toDate) : first.plusDays(6);
+            if (last.isBefore(first)) throw new IllegalArgumentException("Range ends before it starts: " + first + ".." + last);
+            if (last.toEpochDay() - first.toEpochDay() >= MAX_SLOT_SEARCH_DAYS) {
+                throw new IllegalArgumentException("Range longer than " + MAX_SLOT_SEARCH_DAYS + " days: " + first + ".." + last);
+            }
+            int[] window = slotWindow();
+            if (durationMinutes <= 0 || durationMinutes > window[1] - window[0] || limit <= 0) return new ArrayList<>();
+
+            List<SlotFinder.Slot> slots = store().freeSlots(first.toEpochDay(), last.toEpochDay(), durationMinutes,
+                    window[0], window[1], SLOT_STEP_MINUTES, System.currentTimeMillis(), limit);
+            java.time.format.DateTimeFormatter hm = java.time.format.DateTimeFormatter.ofPattern("HH:mm");
+            List<FreeSlot> out = new ArrayList<>(slots.size());
+            for (SlotFinder.Slot slot : slots) {
+                java.time.ZonedDateTime s = java.time.Instant.ofEpochMilli(slot.startMs).atZone(zone);
+                FreeSlot fs = new FreeSlot();
+                fs.date = s.toLocalDate().toString();
+                fs.start = hm.format(s);
+                fs.end = hm.format(java.time.Instant.ofEpochMilli(slot.endMs).atZone(zone));
+                fs.dayBusyMinutes = slot.dayBusyMinutes;
+                out.add(fs);
+            }
+            return out;
+        } finally {
+            FIND_SLOTS_TIME.recordSince(t0);
+        }
+    }
+
+    /**
+     * The best free one-hour slots of the coming week as prompt lines, so the model can pick a time without
+     * working out availability itself; empty if there are none or the calendar cannot be read.
+     */
+    public static String freeSlotsContext() {
+        try {
+            List<FreeSlot> slots = findFreeSlots(60, null, null, PROMPT_SLOTS);
+            if (slots.isEmpty()) return "";
+            StringBuilder sb = new StringBuilder("Suggested free slots for a 60-minute event (best first):\n");
+            for (FreeSlot s : slots) {
+                sb.append("- ").append(s.date).append(' ').append(s.start).append('-').append(s.end)
+                        .append(" (").append(s.dayBusyMinutes).append(" min booked that day)\n");
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /** Scheduling window of findFreeSlots() as {from, to} minutes after midnight. */
+    private static int[] slotWindow() {
+        String v = System.getProperty("calendar.slots.window", System.getenv("CALENDAR_SLOTS_WINDOW"));
+        if (v != null) {
+            try {
+                String[] parts = v.trim().split("-");
+                int from = java.time.LocalTime.parse(parts[0].trim()).toSecondOfDay() / 60;
+                int to = "24:00".equals(parts[1].trim()) ? 1440 : java.time.LocalTime.parse(parts[1].trim()).toSecondOfDay() / 60;
+                if (from < to) return new int[]{from, to};
+            } catch (RuntimeException ignore) {
+                // fall through to the default
+            }
+        }
+        return new int[]{8 * 60, 20 * 60};
+    }
+
+    /** Opaque calendar version; differs after any change to the stored events (ours or on disk). */
+    public static long calendarVersion() throws Exception {
+        return store().view().version();
+    }
+
+    /**
+     * Folds pending changes into the calendar file and releases it, so nothing writes to the file afterwards
+     * (not even at JVM exit); the next call loads it afresh. For callers that delete the file, e.g. benchmarks.
+     */
+    public static void closeCalendar() throws Exception {
+        CalendarStore.close(resolveCalendarFile());
+    }
+
+    private static CalendarStore store() {
+        File file = resolveCalendarFile();
+        CalendarStore store = CalendarStore.of(file);
+        store.overlay(CalendarOverlay.configured(file));
+        return store;
+    }
+
+    /** Work run by {@link #inTransaction(CalendarTransaction)}. */
+    @FunctionalInterface
+    public interface CalendarTransaction<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Runs a batch of CalendarTool calls as one all-or-nothing transaction: every call inside {@code work}
+     * operates on the same in-memory calendar (no reloads, no per-call writes) and the result is persisted
+     * once at the end. If {@code work} throws, all of its changes are rolled back and the exception rethrown.
+     */
+    public static <T> T inTransaction(CalendarTransaction<T> work) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            synchronized (store) {
+                store.begin();
+                try {
+                    T result = work.run();
+                    store.commitTransaction();
+                    return result;
+                } catch (Exception | Error e) {
+                    store.rollback();
+                    throw e;
+                }
+            }
+        } finally {
+            TRANSACTION_TIME.recordSince(t0);
+        }
+    }
+
+    public static boolean updateEventByTitleAndStart(String title, String date, String time, String newDate, String newTime) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            Date oldStartDate = formatter.parse(date + " " + time);
+
+            EventRecord ev = store.find(title, oldStartDate.getTime());
+            return ev != null && move(store, ev, newDate, newTime);
+        } finally {
+            MOVE_TIME.recordSince(t0);
+        }
+    }
+
+    /** {@link #updateEventByTitleAndStart} for the event with UID {@code uid}. */
+    public static boolean updateEventByUid(String uid, String newDate, String newTime) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            EventRecord ev = store.get(uid);
+            return ev != null && move(store, ev, newDate, newTime);
+        } finally {
+            MOVE_TIME.recordSince(t0);
         }
-        if (updated) save(calendar);
-        return updated;
+    }
+
+    private static boolean move(CalendarStore store, EventRecord ev, String newDate, String newTime) throws Exception {
+        Date newStartDate = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(newDate + " " + newTime);
+        // Keep same duration
+        store.retime(ev, newStartDate.getTime(), newStartDate.getTime() + ev.duration());
+        store.commit();
+        return true;
     }
 
     /**
@@ -231,378 +507,446 @@ public class CalendarTool {
      * @return true if updated (possibly after shifting), false otherwise.
      */
     public static boolean updateEventWithConflictResolution(String title, String date, String time, String newDate, String newTime) throws Exception {
-        Calendar calendar = loadOrCreate();
-        SimpleDateFormat dtFmt = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        Date oldStart = dtFmt.parse(date + " " + time);
-        Date targetStart = dtFmt.parse(newDate + " " + newTime);
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            Date oldStart = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(date + " " + time);
 
-        VEvent targetEvent = null;
-        long durationMs = 60 * 60 * 1000; // fallback
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (comp instanceof VEvent) {
-                VEvent ev = (VEvent) comp;
-                Summary sum = ev.getSummary();
-                if (sum != null && sum.getValue() != null && sum.getValue().equalsIgnoreCase(title)) {
-                    DtStart ds = ev.getStartDate();
-                    if (ds != null && ds.getDate().getTime() == oldStart.getTime()) {
-                        targetEvent = ev;
-                        Date start = new Date(ds.getDate().getTime());
-                        Date end = new Date(ev.getEndDate(true).getDate().getTime());
-                        durationMs = Math.max(0, end.getTime() - start.getTime());
-                        break;
-                    }
-                }
-            }
+            EventRecord targetEvent = store.find(title, oldStart.getTime());
+            return targetEvent != null && moveResolvingConflicts(store, targetEvent, newDate, newTime);
+        } finally {
+            MOVE_RESOLVING_TIME.recordSince(t0);
         }
-        if (targetEvent == null) return false;
-
-        // Build list of other event intervals on the new date
-        String newDay = newDate;
-        List<VEvent> sameDay = new ArrayList<>();
-        SimpleDateFormat dayFmt = new SimpleDateFormat("yyyy-MM-dd");
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (comp instanceof VEvent) {
-                VEvent ev = (VEvent) comp;
-                if (ev == targetEvent) continue;
-                DtStart ds = ev.getStartDate();
-                DtEnd de = ev.getEndDate(true);
-                if (ds == null || de == null) continue;
-                boolean allDay = (Value.DATE.equals(ds.getParameter(Value.VALUE))) || (Value.DATE.equals(de.getParameter(Value.VALUE)));
-                if (allDay) continue;
-                String day = dayFmt.format(new Date(ds.getDate().getTime()));
-                if (day.equals(newDay)) sameDay.add(ev);
-            }
+    }
+
+    /** {@link #updateEventWithConflictResolution} for the event with UID {@code uid}. */
+    public static boolean updateEventWithConflictResolutionByUid(String uid, String newDate, String newTime) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            EventRecord targetEvent = store.get(uid);
+            return targetEvent != null && moveResolvingConflicts(store, targetEvent, newDate, newTime);
+        } finally {
+            MOVE_RESOLVING_TIME.recordSince(t0);
         }
+    }
+
+    private static boolean moveResolvingConflicts(CalendarStore store, EventRecord targetEvent, String newDate, String newTime) throws Exception {
+        SimpleDateFormat dtFmt = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        Date targetStart = dtFmt.parse(newDate + " " + newTime);
+        long durationMs = targetEvent.duration();
 
-        // Try shifting forward in 30m increments until no overlap
+        // Shift forward in 30m increments until no overlap, staying on the new date; the store's free/busy
+        // bitmaps jump straight past each busy run instead of probing every increment
+        long nextDayStart = dtFmt.parse(java.time.LocalDate.parse(newDate).plusDays(1) + " 00:00").getTime();
         long increment = 30 * 60 * 1000L;
-        int attempts = 0;
-        while (attempts < 48) { // up to 24 hours of shifts
-            Date candidateEnd = new Date(targetStart.getTime() + durationMs);
-            if (!overlaps(candidateEnd, targetStart, sameDay)) {
-                // apply update
-                targetEvent.getProperties().remove(targetEvent.getProperty(Property.DTSTART));
-                targetEvent.getProperties().remove(targetEvent.getProperty(Property.DTEND));
-                targetEvent.getProperties().add(new DtStart(new DateTime(targetStart)));
-                targetEvent.getProperties().add(new DtEnd(new DateTime(candidateEnd)));
-                save(calendar);
-                return true;
-            }
-            targetStart = new Date(targetStart.getTime() + increment);
-            // ensure still same day
-            if (!dayFmt.format(targetStart).equals(newDay)) break;
-            attempts++;
+        long slot = store.firstFreeSlot(targetStart.getTime(), durationMs, increment, nextDayStart, Long.MAX_VALUE, targetEvent);
+        if (slot < 0) return false;
+        store.retime(targetEvent, slot, slot + durationMs);
+        store.commit();
+        return true;
+    }
+
+    /** True if an event titled {@code title} (case-insensitive) starts at the given date and time. */
+    public static boolean hasEvent(String title, String date, String time) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            return store().view().find(title, formatter.parse(date + " " + time).getTime()) != null;
+        } finally {
+            HAS_EVENT_TIME.recordSince(t0);
         }
-        return false;
-    }
-
-    private static boolean overlaps(Date candidateEnd, Date candidateStart, List<VEvent> events) {
-        for (VEvent ev : events) {
-            DtStart ds = ev.getStartDate();
-            DtEnd de = ev.getEndDate(true);
-            if (ds == null || de == null) continue;
-            Date s = new Date(ds.getDate().getTime());
-            Date e = new Date(de.getDate().getTime());
-            boolean conflict = candidateStart.before(e) && s.before(candidateEnd);
-            if (conflict) return true;
+    }
+
+    /**
+     * Start ("yyyy-MM-dd HH:mm") of the only event titled {@code title} that starts from now on, or null when
+     * there is no such event or more than one.
+     */
+    public static String findUpcomingEventStart(String title) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            // only the events with this title, straight from the store's title index
+            List<EventRecord> titled = store().eventsTitled(title);
+            EVENTS_SCANNED.add(titled.size());
+            long now = System.currentTimeMillis();
+            EventRecord match = null;
+            for (EventRecord rec : titled) {
+                if (rec.start < now) continue;
+                if (match != null) return null;
+                match = rec;
+            }
+            return match == null ? null : new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(match.start));
+        } finally {
+            FIND_UPCOMING_TIME.recordSince(t0);
         }
-        return false;
     }
 
     public static boolean deleteEventByTitleAndStart(String title, String date, String time) throws Exception {
-        Calendar calendar = loadOrCreate();
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        Date oldStartDate = formatter.parse(date + " " + time);
-        Component toRemove = null;
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (comp instanceof VEvent) {
-                VEvent ev = (VEvent) comp;
-                Summary sum = ev.getSummary();
-                if (sum != null && sum.getValue() != null && sum.getValue().equalsIgnoreCase(title)) {
-                    DtStart dtStart = ev.getStartDate();
-                    if (dtStart != null) {
-                        DateTime start = (DateTime) dtStart.getDate();
-                        if (start != null && start.getTime() == oldStartDate.getTime()) {
-                            toRemove = ev;
-                            break;
-                        }
-                    }
-                }
-            }
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            Date oldStartDate = formatter.parse(date + " " + time);
+            EventRecord toRemove = store.find(title, oldStartDate.getTime());
+            return toRemove != null && remove(store, toRemove);
+        } finally {
+            DELETE_TIME.recordSince(t0);
         }
-        if (toRemove != null) {
-            calendar.getComponents().remove(toRemove);
-            save(calendar);
-            return true;
+    }
+
+    /** {@link #deleteEventByTitleAndStart} for the event with UID {@code uid}. */
+    public static boolean deleteEventByUid(String uid) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            EventRecord toRemove = store.get(uid);
+            return toRemove != null && remove(store, toRemove);
+        } finally {
+            DELETE_TIME.recordSince(t0);
         }
-        return false;
     }
 
+    private static boolean remove(CalendarStore store, EventRecord toRemove) throws Exception {
+        if (!store.remove(toRemove)) return false;
+        store.commit();
+        return true;
+    }
+
+    /**
+     * Summarize every stored event by day. Recurring events are additionally expanded into their occurrences
+     * from the start of the current week through the following {@value #RECURRENCE_SUMMARY_DAYS} days.
+     * Days are rendered once and cached until an event on them changes; see {@link #summarizeRange}.
+     */
     public static String summarizeCalendar() {
+        long t0 = System.nanoTime();
         try {
-            Calendar calendar = loadOrCreate();
-            List<VEvent> events = new ArrayList<>();
-            for (Component comp : calendar.getComponents(Component.VEVENT)) {
-                if (comp instanceof VEvent) events.add((VEvent) comp);
+            CalendarStore store = store();
+            // one consistent view for the whole summary, never a half-applied rebalance
+            CalendarView view = store.view();
+            EventColumns columns = view.columns();
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            long windowFirst = java.time.LocalDate.now().with(java.time.DayOfWeek.MONDAY).toEpochDay();
+            long windowEnd = windowFirst + RECURRENCE_SUMMARY_DAYS;
+
+            // the days holding stored events (one binary search per day) plus the recurrence window
+            java.util.TreeSet<Long> days = new java.util.TreeSet<>();
+            for (long d = windowFirst; d < windowEnd; d++) days.add(d);
+            for (int i = 0; i < columns.size(); ) {
+                java.time.LocalDate day = java.time.Instant.ofEpochMilli(columns.start(i)).atZone(zone).toLocalDate();
+                days.add(day.toEpochDay());
+                i = columns.lowerBound(day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
             }
-            // Sort using java.util.Date to handle both Date and DateTime values
-            Collections.sort(events, Comparator.comparing(ev -> {
-                Property p = ev.getProperty(Property.DTSTART);
-                if (p instanceof DtStart) {
-                    net.fortuna.ical4j.model.Date d = ((DtStart) p).getDate();
-                    return new Date(d.getTime());
-                }
-                return new Date(0);
-            }));
 
-            SimpleDateFormat dayFmt = new SimpleDateFormat("yyyy-MM-dd");
-            SimpleDateFormat timeFmt = new SimpleDateFormat("HH:mm");
             StringBuilder sb = new StringBuilder();
             sb.append("Calendar summary:\n");
-            String currentDay = null;
-            int count = 0;
-            for (VEvent ev : events) {
-                DtStart dtStart = ev.getStartDate();
-                DtEnd dtEnd = ev.getEndDate(true);
-                net.fortuna.ical4j.model.Date sDate = dtStart != null ? dtStart.getDate() : null;
-                net.fortuna.ical4j.model.Date eDate = dtEnd != null ? dtEnd.getDate() : null;
-
-                Date sJava = sDate != null ? new Date(sDate.getTime()) : null;
-                Date eJava = eDate != null ? new Date(eDate.getTime()) : null;
-
-                String day = sJava != null ? dayFmt.format(sJava) : "(unknown day)";
-                if (!day.equals(currentDay)) {
-                    currentDay = day;
-                    sb.append("\n").append(day).append("\n");
-                }
-                String title = ev.getSummary() != null ? ev.getSummary().getValue() : "(untitled)";
-
-                boolean allDay = (dtStart != null && Value.DATE.equals(dtStart.getParameter(Value.VALUE)))
-                               || (dtEnd != null && Value.DATE.equals(dtEnd.getParameter(Value.VALUE)));
-                if (allDay) {
-                    sb.append("  (all-day) ").append(title).append("\n");
-                } else {
-                    String sTime = sJava != null ? timeFmt.format(sJava) : "??";
-                    String eTime = eJava != null ? timeFmt.format(eJava) : "??";
-                    sb.append("  ").append(sTime).append("-").append(eTime).append(" ").append(title).append("\n");
-                }
-                count++;
+            for (long day : days) {
+                sb.append(summaryDay(view, store.summaries(), day, day >= windowFirst && day < windowEnd, zone).text);
             }
-            sb.append("\nTotal events: ").append(count).append("\n");
+            sb.append("\nTotal events: ").append(columns.size()).append("\n");
             return sb.toString();
         } catch (Exception e) {
             return "Failed to summarize calendar: " + e.getMessage();
+        } finally {
+            SUMMARIZE_TIME.recordSince(t0);
         }
     }
 
+    /** Summary of today; see {@link #summarizeRange(String, String)}. */
+    public static String summarizeToday() {
+        String today = java.time.LocalDate.now().toString();
+        return summarizeRange(today, today);
+    }
+
+    /** Summary of the current week (Monday-Sunday); see {@link #summarizeRange(String, String)}. */
+    public static String summarizeWeek() {
+        java.time.LocalDate today = java.time.LocalDate.now();
+        return summarizeRange(today.with(java.time.DayOfWeek.MONDAY).toString(), today.with(java.time.DayOfWeek.SUNDAY).toString());
+    }
+
     /**
-     * Rebalance events within the current week to distribute them more evenly across days.
-     * Skips all-day and recurring events. Keeps duration. Moves events to target days if they are overloaded.
-     * Strategy: compute per-day counts, then move from heaviest days to lightest days, placing events at the
-     * first available 10:00+ slot with at least 60m gaps. This is a heuristic, not optimal.
+     * Summarize the events of the days {@code fromDate}..{@code toDate} (inclusive, "yyyy-MM-dd") by day,
+     * including the occurrences of recurring events. Each day is read from the sorted index and its rendered
+     * lines are cached until an event starting that day changes, so after a one-event change only that
+     * day is rendered again.
+     */
+    public static String summarizeRange(String fromDate, String toDate) {
+        long t0 = System.nanoTime();
+        try {
+            java.time.LocalDate first = java.time.LocalDate.parse(fromDate);
+            java.time.LocalDate last = java.time.LocalDate.parse(toDate);
+            if (last.isBefore(first)) throw new IllegalArgumentException("Range ends before it starts: " + fromDate + ".." + toDate);
+            CalendarStore store = store();
+            CalendarView view = store.view();
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("Calendar summary ").append(first).append(first.equals(last) ? "" : ".." + last).append(":\n");
+            int events = 0;
+            for (long day = first.toEpochDay(); day <= last.toEpochDay(); day++) {
+                DaySummaryCache.Fragment fragment = summaryDay(view, store.summaries(), day, true, zone);
+                sb.append(fragment.text);
+                events += fragment.events;
+            }
+            sb.append(events == 0 ? "\nNo events.\n" : "\nEvents in range: " + events + "\n");
+            return sb.toString();
+        } catch (Exception e) {
+            return "Failed to summarize calendar: " + e.getMessage();
+        } finally {
+            SUMMARIZE_RANGE_TIME.recordSince(t0);
+        }
+    }
+
+    /** Summary lines of one day: its stored events and, if asked, the repeat occurrences starting on it. */
+    private static DaySummaryCache.Fragment summaryDay(CalendarView view, DaySummaryCache cache, long epochDay,
+                                                       boolean withOccurrences, java.time.ZoneId zone) {
+        DaySummaryCache.Fragment cached = cache.get(epochDay, withOccurrences, view.version());
+        if (cached != null) {
+            SUMMARY_DAYS_CACHED.increment();
+            return cached;
+        }
+        java.time.LocalDate day = java.time.LocalDate.ofEpochDay(epochDay);
+        long from = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        List<EventRecord> events = view.eventsStartingBetween(from, to);
+        if (withOccurrences) {
+            List<EventRecord> occurrences = new ArrayList<>();
+            for (EventRecord occ : view.repeatOccurrencesBetween(from, to)) {
+                if (occ.start >= from) occurrences.add(occ);
+            }
+            if (!occurrences.isEmpty()) events = CalendarOverlay.merge(java.util.Arrays.asList(events, occurrences));
+        }
+        EVENTS_SCANNED.add(events.size());
+
+        StringBuilder sb = new StringBuilder();
+        if (!events.isEmpty()) sb.append("\n").append(day).append("\n");
+        java.time.format.DateTimeFormatter hm = java.time.format.DateTimeFormatter.ofPattern("HH:mm");
+        for (EventRecord ev : events) {
+            String title = ev.title != null ? ev.title : "(untitled)";
+            String repeats = ev.isRecurring() ? " (repeats)" : "";
+            if (ev.allDay) {
+                sb.append("  (all-day) ").append(title).append(repeats).append("\n");
+            } else {
+                String sTime = hm.format(java.time.Instant.ofEpochMilli(ev.start).atZone(zone));
+                String eTime = hm.format(java.time.Instant.ofEpochMilli(ev.end).atZone(zone));
+                sb.append("  ").append(sTime).append("-").append(eTime).append(" ").append(title).append(repeats).append("\n");
+            }
+        }
+        DaySummaryCache.Fragment fragment = new DaySummaryCache.Fragment(sb.toString(), events.size());
+        cache.put(epochDay, withOccurrences, view.version(), fragment);
+        SUMMARY_DAYS_RENDERED.increment();
+        return fragment;
+    }
+
+    /**
+     * Rebalance events within the current week (Monday-Sunday) to distribute them more evenly across days;
+     * see {@link #rebalance(String, String)}.
      *
      * @return number of events moved
      */
     public static int rebalanceWeek() throws Exception {
-        Calendar calendar = loadOrCreate();
-        SimpleDateFormat dayFmt = new SimpleDateFormat("yyyy-MM-dd");
-        // Determine the week range (Monday-Sunday) using today's date
         java.time.LocalDate today = java.time.LocalDate.now();
-        java.time.LocalDate weekStart = today.with(java.time.DayOfWeek.MONDAY);
-        java.time.LocalDate weekEnd = today.with(java.time.DayOfWeek.SUNDAY);
-        List<String> weekDays = new ArrayList<>();
-        for (java.time.LocalDate d = weekStart; !d.isAfter(weekEnd); d = d.plusDays(1)) {
-            weekDays.add(d.toString());
-        }
+        return rebalance(today.with(java.time.DayOfWeek.MONDAY).toString(), today.with(java.time.DayOfWeek.SUNDAY).toString());
+    }
 
-        // Build per-day event lists including empty days
-        java.util.Map<String, List<VEvent>> byDay = new java.util.HashMap<>();
-        for (String wd : weekDays) byDay.put(wd, new ArrayList<>());
-
-        List<VEvent> candidates = new ArrayList<>();
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (!(comp instanceof VEvent)) continue;
-            VEvent ev = (VEvent) comp;
-            DtStart ds = ev.getStartDate();
-            DtEnd de = ev.getEndDate(true);
-            if (ds == null || de == null) continue;
-            boolean allDay = (Value.DATE.equals(ds.getParameter(Value.VALUE))) || (Value.DATE.equals(de.getParameter(Value.VALUE)));
-            if (allDay) continue;
-            if (ev.getProperty(Property.RRULE) != null) continue; // skip recurring
-            String day = dayFmt.format(new Date(ds.getDate().getTime()));
-            // only consider events inside this week range
-            if (day.compareTo(weekStart.toString()) >= 0 && day.compareTo(weekEnd.toString()) <= 0) {
-                byDay.get(day).add(ev);
-                candidates.add(ev);
+    /**
+     * Rebalance the events of the days {@code fromDate}..{@code toDate} (inclusive, "yyyy-MM-dd") so the
+     * per-day load is as even as possible, with as few moves as possible. All-day events are ignored;
+     * recurring occurrences, events that already started and overlay calendar events count towards a day's
+     * load but never move. Events are only moved to today or later, keep their duration and go to the first
+     * free 30-minute grid slot from 10:00 that ends the same day without overlapping anything.
+     *
+     * The whole move set is computed in one solve by {@link RebalancePlanner}. Should a day turn out too full
+     * for the combination of events it was given, the events that did not fit stay put and the remaining
+     * imbalance is solved again (at most {@value #REBALANCE_PASSES} passes).
+     *
+     * @return number of events moved
+     */
+    public static int rebalance(String fromDate, String toDate) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            CalendarStore store = store();
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            java.time.LocalDate first = java.time.LocalDate.parse(fromDate);
+            java.time.LocalDate last = java.time.LocalDate.parse(toDate);
+            if (last.isBefore(first)) throw new IllegalArgumentException("Range ends before it starts: " + fromDate + ".." + toDate);
+            int days = (int) (last.toEpochDay() - first.toEpochDay()) + 1;
+            long[] dayStart = new long[days + 1];
+            long[] placeFrom = new long[days];
+            for (int d = 0; d <= days; d++) dayStart[d] = first.plusDays(d).atStartOfDay(zone).toInstant().toEpochMilli();
+            long now = System.currentTimeMillis();
+            long step = 30 * 60 * 1000L;
+            for (int d = 0; d < days; d++) {
+                placeFrom[d] = first.plusDays(d).atTime(10, 0).atZone(zone).toInstant().toEpochMilli();
+                // today: the first grid slot that has not started yet
+                if (placeFrom[d] < now) placeFrom[d] += (now - placeFrom[d] + step - 1) / step * step;
             }
-        }
-
-        // Helper to find a free slot on target day (start search at 10:00)
-        java.util.function.BiFunction<String, Long, Date[]> placeOnDay = (day, durationMs) -> {
-            try {
-                // don't place on days in the past
-                if (day.compareTo(today.toString()) < 0) return null;
-                List<Date[]> intervals = new ArrayList<>();
-                for (VEvent ev : byDay.getOrDefault(day, new ArrayList<>())) {
-                    intervals.add(new Date[]{ new Date(ev.getStartDate().getDate().getTime()), new Date(ev.getEndDate(true).getDate().getTime()) });
-                }
-                intervals.sort(Comparator.comparing(a -> a[0]));
-                SimpleDateFormat dtFmt = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-                Date cursor = dtFmt.parse(day + " 10:00");
-                int attempts = 0;
-                while (attempts < 48) { // up to 24 hours search
-                    Date end = new Date(cursor.getTime() + durationMs);
-                    if (!dayFmt.format(end).equals(day)) return null; // overflow day
-                    boolean conflict = false;
-                    for (Date[] iv : intervals) {
-                        if (cursor.before(iv[1]) && iv[0].before(end)) { conflict = true; break; }
+            int firstTarget = (int) Math.max(0, java.time.LocalDate.now(zone).toEpochDay() - first.toEpochDay());
+
+            // one transaction: the many slot probes skip the on-disk change check, and readers see all moves or none
+            return inTransaction(() -> {
+                java.util.Set<String> movedUids = new java.util.HashSet<>();
+                java.util.Set<String> unplaceable = new java.util.HashSet<>(); // "uid@day" that failed to fit
+                for (int pass = 0; pass < REBALANCE_PASSES; pass++) {
+                    List<EventRecord> inRange = new ArrayList<>(store.eventsStartingBetween(dayStart[0], dayStart[days]));
+                    inRange.addAll(store.repeatOccurrencesBetween(dayStart[0], dayStart[days]));
+                    // events of the overlay calendars fill their days too, but are never ours to move
+                    List<EventRecord> blocking = store.blockingEventsStartingBetween(dayStart[0], dayStart[days]);
+                    EVENTS_SCANNED.add(inRange.size() + blocking.size());
+                    int[] fixedLoad = new int[days];
+                    for (EventRecord ev : blocking) fixedLoad[dayIndex(dayStart, ev.start)]++;
+                    List<EventRecord> movable = new ArrayList<>();
+                    for (EventRecord ev : inRange) {
+                        if (ev.allDay || ev.start < dayStart[0]) continue;
+                        if (ev.isRecurring() || ev.start < now) fixedLoad[dayIndex(dayStart, ev.start)]++;
+                        else movable.add(ev);
                     }
-                    if (!conflict) return new Date[]{cursor, end};
-                    cursor = new Date(cursor.getTime() + 30 * 60 * 1000L);
-                    attempts++;
-                }
-                return null;
-            } catch (Exception e) { return null; }
-        };
-
-        int moved = 0;
-        // Iterate redistribution attempts
-        for (int iter = 0; iter < 30; iter++) {
-            // sort days by load ascending; prefer days today or later
-            weekDays.sort(Comparator.comparingInt(d -> byDay.getOrDefault(d, new ArrayList<>()).size()));
-            String light = null;
-            for (String d : weekDays) {
-                if (d.compareTo(today.toString()) >= 0) { light = d; break; }
-            }
-            if (light == null) break; // no future/ today days available
-            String heavy = weekDays.get(weekDays.size() - 1);
-            int lightCount = byDay.get(light).size();
-            int heavyCount = byDay.get(heavy).size();
-            // Allow moves even when difference is exactly 1 so we can utilize empty future days
-            if (heavyCount - lightCount <= 0) break; // fully balanced (no strictly heavier day)
-            List<VEvent> heavyEvents = byDay.get(heavy);
-            if (heavyEvents.isEmpty()) break;
-            // pick an event to move: choose one with latest start to free evening first
-            heavyEvents.sort(Comparator.comparing(ev -> new Date(ev.getStartDate().getDate().getTime())));
-            VEvent ev = heavyEvents.get(heavyEvents.size() - 1);
-            Date start = new Date(ev.getStartDate().getDate().getTime());
-            Date end = new Date(ev.getEndDate(true).getDate().getTime());
-            long duration = Math.max(0, end.getTime() - start.getTime());
-            Date[] slot = placeOnDay.apply(light, duration);
-            if (slot == null) {
-                // can't place on light day; try next lightest if available
-                for (int i = 1; i < weekDays.size(); i++) {
-                    String nextLight = weekDays.get(i);
-                    if (nextLight.compareTo(today.toString()) < 0) continue;
-                    slot = placeOnDay.apply(nextLight, duration);
-                    if (slot != null) { light = nextLight; break; }
+                    if (movable.isEmpty()) break;
+
+                    // latest event of each day gets rank 0, so evenings are freed first
+                    movable.sort(Comparator.comparingLong(r -> r.start));
+                    int n = movable.size();
+                    int[] currentDay = new int[n];
+                    int[] rank = new int[n];
+                    int[][] allowed = new int[n][];
+                    for (int i = n - 1; i >= 0; i--) {
+                        EventRecord ev = movable.get(i);
+                        currentDay[i] = dayIndex(dayStart, ev.start);
+                        rank[i] = i + 1 < n && currentDay[i + 1] == currentDay[i] ? rank[i + 1] + 1 : 0;
+                        int[] candidates = new int[days];
+                        int count = 0;
+                        for (int d = firstTarget; d < days; d++) {
+                            if (d == currentDay[i] || unplaceable.contains(ev.uid + "@" + d)) continue;
+                            if (store.firstFreeSlot(placeFrom[d], ev.duration(), step, dayStart[d + 1], dayStart[d + 1], ev) >= 0) {
+                                candidates[count++] = d;
+                            }
+                        }
+                        allowed[i] = java.util.Arrays.copyOf(candidates, count);
+                    }
+                    int[] target = RebalancePlanner.assign(fixedLoad, currentDay, allowed, rank);
+
+                    boolean allPlaced = true;
+                    for (int i = 0; i < n; i++) {
+                        int d = target[i];
+                        if (d == currentDay[i]) continue;
+                        EventRecord ev = movable.get(i);
+                        // earlier moves of this pass may have taken the slot that was free when planning
+                        long slot = store.firstFreeSlot(placeFrom[d], ev.duration(), step, dayStart[d + 1], dayStart[d + 1], ev);
+                        if (slot < 0) {
+                            unplaceable.add(ev.uid + "@" + d);
+                            allPlaced = false;
+                            continue;
+                        }
+                        store.retime(ev, slot, slot + ev.duration());
+                        movedUids.add(ev.uid);
+                    }
+                    if (allPlaced) break;
                 }
-                if (slot == null) break;
-            }
-            // Move event
-            ev.getProperties().remove(ev.getProperty(Property.DTSTART));
-            ev.getProperties().remove(ev.getProperty(Property.DTEND));
-            ev.getProperties().add(new DtStart(new DateTime(slot[0])));
-            ev.getProperties().add(new DtEnd(new DateTime(slot[1])));
-            heavyEvents.remove(ev);
-            byDay.get(light).add(ev);
-            moved++;
+                return movedUids.size();
+            });
+        } finally {
+            REBALANCE_TIME.recordSince(t0);
         }
+    }
 
-        if (moved > 0) save(calendar);
-        return moved;
+    /** Index of the day in {@code dayStart} (ascending day boundaries) containing {@code t}. */
+    private static int dayIndex(long[] dayStart, long t) {
+        int i = java.util.Arrays.binarySearch(dayStart, t);
+        return i >= 0 ? i : -i - 2;
     }
     /**
-     * Auto-space events to ensure at least minGapMinutes between consecutive events per day.
-     * Skips all-day and recurring events. Keeps event durations intact. Does not move events across days;
-     * if a move would push an event past the day end, that event is skipped.
+     * Auto-space events to ensure at least minGapMinutes between consecutive events per day, from today on.
      *
      * @param minGapMinutes Minimum gap between events
      * @return number of events moved
+     * @see #autoSpaceEvents(int, String, String)
      */
     public static int autoSpaceEvents(int minGapMinutes) throws Exception {
-        if (minGapMinutes < 0) minGapMinutes = 0;
-        Calendar calendar = loadOrCreate();
-
-        // Group events by yyyy-MM-dd
-        SimpleDateFormat dayFmt = new SimpleDateFormat("yyyy-MM-dd");
-        String todayStr = java.time.LocalDate.now().toString();
-        List<VEvent> events = new ArrayList<>();
-        for (Component comp : calendar.getComponents(Component.VEVENT)) {
-            if (comp instanceof VEvent) events.add((VEvent) comp);
-        }
-
-        // Map day -> list
-        java.util.Map<String, List<VEvent>> byDay = new java.util.HashMap<>();
-        for (VEvent ev : events) {
-            DtStart dtStart = ev.getStartDate();
-            if (dtStart == null) continue;
-            net.fortuna.ical4j.model.Date sDate = dtStart.getDate();
-            String day = dayFmt.format(new Date(sDate.getTime()));
-            byDay.computeIfAbsent(day, k -> new ArrayList<>()).add(ev);
-        }
+        return autoSpaceEvents(minGapMinutes, null, null);
+    }
 
-        int moved = 0;
-        for (java.util.Map.Entry<String, List<VEvent>> entry : byDay.entrySet()) {
-            String day = entry.getKey();
-            // don't alter days in the past
-            if (day.compareTo(todayStr) < 0) continue;
-            List<VEvent> dayEvents = entry.getValue();
-            // Sort by start time
-            Collections.sort(dayEvents, Comparator.comparing(ev -> {
-                DtStart ds = ev.getStartDate();
-                net.fortuna.ical4j.model.Date d = ds != null ? ds.getDate() : null;
-                return d != null ? new Date(d.getTime()) : new Date(0);
-            }));
-
-            Date prevEndWithGap = null;
-            for (VEvent ev : dayEvents) {
-                // Skip all-day
-                DtStart ds = ev.getStartDate();
-                DtEnd de = ev.getEndDate(true);
-                if (ds == null || de == null) continue;
-                boolean allDay = (Value.DATE.equals(ds.getParameter(Value.VALUE)))
-                              || (Value.DATE.equals(de.getParameter(Value.VALUE)));
-                if (allDay) continue;
-
-                // Skip recurring events
-                if (ev.getProperty(Property.RRULE) != null) continue;
-
-                Date start = new Date(ds.getDate().getTime());
-                Date end = new Date(de.getDate().getTime());
-                long durationMs = Math.max(0, end.getTime() - start.getTime());
-
-                if (prevEndWithGap == null) {
-                    // First event of the day: set prevEndWithGap to its end + gap
-                    prevEndWithGap = new Date(end.getTime() + minGapMinutes * 60L * 1000L);
-                    continue;
+    /**
+     * Auto-space the events of the days {@code fromDate}..{@code toDate} (inclusive, "yyyy-MM-dd"; null
+     * means today and the last day with an event) so consecutive events of a day are at least
+     * minGapMinutes apart. Skips all-day events; occurrences of recurring events and overlay calendar events
+     * are never moved but later events are spaced after them. Keeps event durations intact. Does not move events across days; if a
+     * move would push an event past the day end, that event is skipped. Past days are only touched when
+     * {@code fromDate} names them.
+     *
+     * Events are bucketed by local day into primitive start/end columns and each day is swept independently
+     * by {@link AutoSpacer}, in parallel for long ranges; the moves are then applied as one transaction.
+     *
+     * @return number of events moved
+     */
+    public static int autoSpaceEvents(int minGapMinutes, String fromDate, String toDate) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            long gapMs = Math.max(0, minGapMinutes) * 60L * 1000L;
+            CalendarStore store = store();
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            java.time.LocalDate first = fromDate != null ? java.time.LocalDate.parse(fromDate) : java.time.LocalDate.now(zone);
+            java.time.LocalDate last = toDate != null ? java.time.LocalDate.parse(toDate) : null;
+            if (last != null && last.isBefore(first)) throw new IllegalArgumentException("Range ends before it starts: " + fromDate + ".." + toDate);
+            long from = first.atStartOfDay(zone).toInstant().toEpochMilli();
+
+            return inTransaction(() -> {
+                long to = last != null ? last.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+                List<EventRecord> stored = store.eventsStartingBetween(from, to);
+                if (stored.isEmpty()) return 0;
+                if (last == null) {
+                    // open-ended: recurring occurrences only matter up to the last day with a stored event
+                    long lastStart = stored.get(stored.size() - 1).start;
+                    to = java.time.Instant.ofEpochMilli(lastStart).atZone(zone).toLocalDate().plusDays(1)
+                            .atStartOfDay(zone).toInstant().toEpochMilli();
+                }
+                // recurring occurrences and overlay calendar events are fixed obstacles: never moved, but later
+                // events are spaced after them
+                List<EventRecord> occurrences = CalendarOverlay.merge(java.util.Arrays.asList(
+                        store.repeatOccurrencesBetween(from, to), store.blockingEventsStartingBetween(from, to)));
+
+                // merge both start-ordered lists into primitive columns (stored events first on equal starts)
+                int n = stored.size() + occurrences.size();
+                long[] start = new long[n];
+                long[] end = new long[n];
+                int[] flags = new int[n];
+                EventRecord[] movable = new EventRecord[n];
+                int rows = 0;
+                for (int i = 0, j = 0; i < stored.size() || j < occurrences.size(); ) {
+                    boolean takeStored = j == occurrences.size()
+                            || i < stored.size() && stored.get(i).start <= occurrences.get(j).start;
+                    EventRecord ev = takeStored ? stored.get(i++) : occurrences.get(j++);
+                    if (ev.start < from) continue; // an occurrence running into the range
+                    start[rows] = ev.start;
+                    end[rows] = ev.end;
+                    flags[rows] = (ev.allDay ? EventColumns.ALL_DAY : 0) | (takeStored && !ev.isRecurring() ? 0 : EventColumns.RECURRING);
+                    if (takeStored) movable[rows] = ev;
+                    rows++;
+                }
+                EVENTS_SCANNED.add(rows);
+
+                // cut the rows into local days; boundaries are computed once per day, not per event
+                int[] dayFirst = new int[rows + 1];
+                long[] dayEnd = new long[rows];
+                int days = 0;
+                long nextDayStart = Long.MIN_VALUE;
+                for (int i = 0; i < rows; i++) {
+                    if (start[i] < nextDayStart) continue;
+                    java.time.LocalDate day = java.time.Instant.ofEpochMilli(start[i]).atZone(zone).toLocalDate();
+                    nextDayStart = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                    dayFirst[days] = i;
+                    dayEnd[days++] = nextDayStart;
                 }
+                dayFirst[days] = rows;
 
-                // If start is before prevEndWithGap, move it forward
-                if (start.before(prevEndWithGap)) {
-                    Date newStart = new Date(prevEndWithGap.getTime());
-                    // Ensure still same day
-                    String newStartDay = dayFmt.format(newStart);
-                    if (!newStartDay.equals(day)) {
-                        // Would spill to next day, skip moving this event
-                        prevEndWithGap = new Date(end.getTime() + minGapMinutes * 60L * 1000L);
-                        continue;
-                    }
-                    Date newEnd = new Date(newStart.getTime() + durationMs);
-                    // Update DTSTART/DTEND
-                    ev.getProperties().remove(ev.getProperty(Property.DTSTART));
-                    ev.getProperties().remove(ev.getProperty(Property.DTEND));
-                    ev.getProperties().add(new DtStart(new DateTime(newStart)));
-                    ev.getProperties().add(new DtEnd(new DateTime(newEnd)));
-                    moved++;
-                    start = newStart;
-                    end = newEnd;
+                long[] newStart = new long[rows];
+                int moved = AutoSpacer.plan(start, end, flags, dayFirst, dayEnd, days, gapMs, newStart);
+                if (moved == 0) return 0;
+                for (int i = 0; i < rows; i++) {
+                    if (newStart[i] != start[i]) store.retime(movable[i], newStart[i], newStart[i] + (end[i] - start[i]));
                 }
-                prevEndWithGap = new Date(end.getTime() + minGapMinutes * 60L * 1000L);
-            }
+                return moved;
+            });
+        } finally {
+            AUTO_SPACE_TIME.recordSince(t0);
         }
-
-        if (moved > 0) save(calendar);
-        return moved;
     }
 }
@@ -0,0 +1,132 @@
+package com.gemini.backend.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, versioned copy of a {@link CalendarStore}'s committed state. The store publishes a new view
+ * after every load, commit and compaction; readers take the current one without locking and always see a
+ * complete calendar, never the middle of a multi-event change such as a rebalance.
+ *
+ * A view also carries the uncompacted delta and the ICS file and journal stamp it belongs to, so {@link #render()} can
+ * rebuild the ICS text without the store; it returns null when the file changed underneath it (e.g. a
+ * compaction finished), and the caller retries with the newer view.
+ */
+final class CalendarView {
+
+    private final long version;
+    private final EventColumns columns;    // ordered by start
+    private final EventRecord[] recurring;
+    private final RecurrenceExpander expander;
+    private final File file;
+    private final long fileLength;
+    private final long fileModified;
+    private final File journal;
+    private final long journalLength;
+    private final Map<String, String> added;
+    private final Map<String, EventRecord> retimed;
+    private final Set<String> deleted;
+    private final boolean uncompacted;
+
+    CalendarView(long version, EventColumns columns, List<EventRecord> recurring, RecurrenceExpander expander,
+                 File file, long fileLength, long fileModified, File journal, long journalLength,
+                 Map<String, String> added, Map<String, EventRecord> retimed, Set<String> deleted, boolean uncompacted) {
+        this.version = version;
+        this.columns = columns;
+        this.recurring = recurring.toArray(new EventRecord[0]);
+        this.expander = expander;
+        this.file = file;
+        this.fileLength = fileLength;
+        this.fileModified = fileModified;
+        this.journal = journal;
+        this.journalLength = journalLength;
+        this.added = added;
+        this.retimed = retimed;
+        this.deleted = deleted;
+        this.uncompacted = uncompacted;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /** The ICS file this is a view of. */
+    File file() {
+        return file;
+    }
+
+    int size() {
+        return columns.size();
+    }
+
+    /** The events as primitive columns, for allocation-free scans. */
+    EventColumns columns() {
+        return columns;
+    }
+
+    /** All events ordered by start time. */
+    List<EventRecord> events() {
+        return columns.records();
+    }
+
+    /** Events starting in [fromMs, toMs), ordered by start time. */
+    List<EventRecord> eventsStartingBetween(long fromMs, long toMs) {
+        return columns.recordsStartingBetween(fromMs, toMs);
+    }
+
+    /** Finds an event by case-insensitive title and exact start, or null. */
+    EventRecord find(String title, long startMs) {
+        int i = columns.find(title, startMs);
+        return i < 0 ? null : columns.record(i);
+    }
+
+    /** Same as {@link CalendarStore#repeatOccurrencesBetween(long, long)}, against this view. */
+    List<EventRecord> repeatOccurrencesBetween(long fromMs, long toMs) {
+        List<EventRecord> out = new ArrayList<>();
+        for (EventRecord rec : recurring) {
+            if (rec.start >= toMs) continue;
+            long[] occurrences;
+            // the expansion cache is shared by all views and only ever touched by readers
+            synchronized (expander) {
+                occurrences = expander.occurrences(rec, fromMs, toMs);
+            }
+            for (long start : occurrences) {
+                if (start != rec.start) out.add(rec.withTimes(start, start + rec.duration()));
+            }
+        }
+        out.sort(Comparator.comparingLong(r -> r.start));
+        return out;
+    }
+
+    /** True when the ICS file on disk lags behind this view. */
+    boolean hasUncompactedChanges() {
+        return uncompacted;
+    }
+
+    /** True while the ICS file and journal on disk are still the ones this view was built from. */
+    boolean matchesFile() {
+        return file.length() == fileLength && file.lastModified() == fileModified && journal.length() == journalLength;
+    }
+
+    /** ICS text of this view, or null if the file on disk no longer matches it. */
+    String render() throws IOException {
+        if (!matchesFile()) return null;
+        String text;
+        if (!uncompacted) {
+            text = file.exists() ? Files.readString(file.toPath(), StandardCharsets.UTF_8) : "";
+        } else {
+            StringWriter out = new StringWriter();
+            IcsRewriter.write(file, out, added, retimed, deleted);
+            text = out.toString();
+        }
+        return matchesFile() ? text : null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.gemini.backend.service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rendered summary lines of single days, shared by every {@link CalendarView} of one {@link CalendarStore}.
+ * The store reports each record it indexes or unindexes together with the version that change produced,
+ * which invalidates only the record's start day; a change to a recurring event invalidates every day.
+ *
+ * A fragment is served to a view only when neither the fragment nor the view predates the last change to
+ * its day, so a reader still holding an older view renders that day itself instead of seeing newer events
+ * (and vice versa). Readers look up and fill the cache without the store's monitor.
+ *
+ * Past {@value #MAX_ENTRIES} recorded day changes, those no newer than the oldest cached fragment are folded
+ * into the all-days change version: views that old then miss everywhere, but no cached fragment is lost.
+ */
+final class DaySummaryCache {
+
+    /** Rendered lines of one day and the number of events they list. */
+    static final class Fragment {
+        final String text;
+        final int events;
+
+        Fragment(String text, int events) {
+            this.text = text;
+            this.events = events;
+        }
+    }
+
+    private static final class Entry {
+        final Fragment fragment;
+        final long renderedAt;
+
+        Entry(Fragment fragment, long renderedAt) {
+            this.fragment = fragment;
+            this.renderedAt = renderedAt;
+        }
+    }
+
+    /** Bound on cached days; past it the cache starts over. */
+    private static final int MAX_ENTRIES = 16_384;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>(); // epoch day -> version of its last change
+    private volatile long allChangedAt;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();  // key(day, occurrences) -> fragment
+
+    /** Records that {@code rec} was indexed or unindexed by the change that produced {@code version}. */
+    void touched(EventRecord rec, long version) {
+        if (rec.isRecurring()) {
+            allChangedAt = version;
+            changedAt.clear();
+            entries.clear();
+            return;
+        }
+        long day = Instant.ofEpochMilli(rec.start).atZone(zone).toLocalDate().toEpochDay();
+        changedAt.put(day, version);
+        entries.remove(key(day, false));
+        entries.remove(key(day, true));
+        if (changedAt.size() > MAX_ENTRIES) {
+            long oldest = Long.MAX_VALUE;
+            for (Entry e : entries.values()) oldest = Math.min(oldest, e.renderedAt);
+            forgetChangesUpTo(oldest);
+            // fragments of old views pin the range; start over rather than let the changes pile up
+            if (changedAt.size() > MAX_ENTRIES / 2) {
+                forgetChangesUpTo(Long.MAX_VALUE);
+                entries.values().removeIf(e -> e.renderedAt < allChangedAt);
+            }
+        }
+    }
+
+    /** Drops the day changes made at or before {@code version}, counting them as a change to every day. */
+    private void forgetChangesUpTo(long version) {
+        long newest = allChangedAt;
+        for (long v : changedAt.values()) {
+            if (v <= version) newest = Math.max(newest, v);
+        }
+        // raised before the days are dropped, so a concurrent reader never sees neither
+        allChangedAt = newest;
+        changedAt.values().removeIf(v -> v <= version);
+    }
+
+    int changedDays() {
+        return changedAt.size();
+    }
+
+    /** The cached fragment of {@code epochDay} valid for a view at {@code viewVersion}, or null. */
+    Fragment get(long epochDay, boolean withOccurrences, long viewVersion) {
+        long changed = lastChange(epochDay);
+        if (viewVersion < changed) return null;
+        Entry e = entries.get(key(epochDay, withOccurrences));
+        return e != null && e.renderedAt >= changed ? e.fragment : null;
+    }
+
+    /** Caches a fragment rendered from a view at {@code viewVersion}, unless that view is already outdated. */
+    void put(long epochDay, boolean withOccurrences, long viewVersion, Fragment fragment) {
+        if (viewVersion < lastChange(epochDay)) return;
+        if (entries.size() >= MAX_ENTRIES) entries.clear();
+        entries.put(key(epochDay, withOccurrences), new Entry(fragment, viewVersion));
+    }
+
+    private long lastChange(long epochDay) {
+        return Math.max(allChangedAt, changedAt.getOrDefault(epochDay, 0L));
+    }
+
+    private static long key(long epochDay, boolean withOccurrences) {
+        return epochDay * 2 + (withOccurrences ? 1 : 0);
+    }
+}
@@ -0,0 +1,292 @@
+package com.gemini.backend.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Immutable struct-of-arrays copy of a calendar's events, ordered by start: parallel primitive columns for
+ * start, end, flags, title id and rrule id, plus the records themselves for callers that need strings.
+ * Range scans, lookups and overlap checks walk the primitive columns and allocate nothing.
+ *
+ * Title ids identify the case-folded title and rrule ids the RRULE text (0 = not recurring); both come from
+ * the {@link Dictionary} of the store the columns were built for, so equal ids mean equal values only
+ * among columns sharing that dictionary. The store starts a fresh dictionary whenever it rebuilds its
+ * columns from scratch, so values of events that are gone do not stay resident.
+ *
+ * {@link #apply(Collection, Collection)} derives the next version from a small change set by copying the
+ * unchanged runs of each column, which is how {@link CalendarStore} publishes a commit without rebuilding
+ * the whole calendar.
+ */
+final class EventColumns {
+
+    static final int ALL_DAY = 1;
+    static final int RECURRING = 2;
+
+    /**
+     * Ids of case-folded titles and RRULE texts. Written under the store's monitor and read lock-free by the
+     * views, hence concurrent.
+     */
+    static final class Dictionary {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger(1);
+
+        /** Id of the case-folded title (0 for no title), allocating one on first sight. */
+        int titleId(String title) {
+            return title == null ? 0 : id("t:" + title.toLowerCase(Locale.ROOT));
+        }
+
+        /** Id {@code title} would have, or -1 if no event had that title (so nothing can match it). */
+        int existingTitleId(String title) {
+            if (title == null) return 0;
+            return ids.getOrDefault("t:" + title.toLowerCase(Locale.ROOT), -1);
+        }
+
+        int rruleId(String rrule) {
+            return rrule == null ? 0 : id("r:" + rrule);
+        }
+
+        private int id(String key) {
+            Integer id = ids.get(key);
+            return id != null ? id : ids.computeIfAbsent(key, k -> nextId.getAndIncrement());
+        }
+    }
+
+    private final Dictionary dictionary;
+    private final int size;
+    private final long[] start;
+    private final long[] end;
+    private final int[] flags;
+    private final int[] title;
+    private final int[] rrule;
+    private final EventRecord[] records;
+    private final long maxTimedDuration; // bounds the backward scan of overlaps()
+
+    private EventColumns(Dictionary dictionary, int size) {
+        this.dictionary = dictionary;
+        this.size = size;
+        this.start = new long[size];
+        this.end = new long[size];
+        this.flags = new int[size];
+        this.title = new int[size];
+        this.rrule = new int[size];
+        this.records = new EventRecord[size];
+        this.maxTimedDuration = 0;
+    }
+
+    private EventColumns(EventColumns filled, long maxTimedDuration) {
+        this.dictionary = filled.dictionary;
+        this.size = filled.size;
+        this.start = filled.start;
+        this.end = filled.end;
+        this.flags = filled.flags;
+        this.title = filled.title;
+        this.rrule = filled.rrule;
+        this.records = filled.records;
+        this.maxTimedDuration = maxTimedDuration;
+    }
+
+    /** Columns of {@code sorted}, which must already be ordered by start, with ids from {@code dictionary}. */
+    static EventColumns of(List<EventRecord> sorted, Dictionary dictionary) {
+        EventColumns c = new EventColumns(dictionary, sorted.size());
+        long maxDuration = 0;
+        for (int i = 0; i < c.size; i++) maxDuration = Math.max(maxDuration, c.set(i, sorted.get(i)));
+        return new EventColumns(c, maxDuration);
+    }
+
+    /** The dictionary the title and rrule ids of these columns come from. */
+    Dictionary dictionary() {
+        return dictionary;
+    }
+
+    /** Fills row {@code i}; returns the record's duration if it is timed, else 0. */
+    private long set(int i, EventRecord rec) {
+        start[i] = rec.start;
+        end[i] = rec.end;
+        flags[i] = (rec.allDay ? ALL_DAY : 0) | (rec.isRecurring() ? RECURRING : 0);
+        title[i] = dictionary.titleId(rec.title);
+        rrule[i] = dictionary.rruleId(rec.rrule);
+        records[i] = rec;
+        return rec.allDay ? 0 : rec.duration();
+    }
+
+    private static void copy(EventColumns from, int fromIndex, EventColumns to, int toIndex, int length) {
+        System.arraycopy(from.start, fromIndex, to.start, toIndex, length);
+        System.arraycopy(from.end, fromIndex, to.end, toIndex, length);
+        System.arraycopy(from.flags, fromIndex, to.flags, toIndex, length);
+        System.arraycopy(from.title, fromIndex, to.title, toIndex, length);
+        System.arraycopy(from.rrule, fromIndex, to.rrule, toIndex, length);
+        System.arraycopy(from.records, fromIndex, to.records, toIndex, length);
+    }
+
+    /**
+     * These columns without {@code removed} (matched by identity) and with {@code added}. Unchanged runs are
+     * copied with {@link System#arraycopy}; an added record goes after existing records with the same start.
+     */
+    EventColumns apply(Collection<EventRecord> removed, Collection<EventRecord> added) {
+        if (removed.isEmpty() && added.isEmpty()) return this;
+        int[] gone = new int[removed.size()];
+        int goneCount = 0;
+        for (EventRecord rec : removed) {
+            int i = indexOf(rec);
+            if (i >= 0) gone[goneCount++] = i;
+        }
+        Arrays.sort(gone, 0, goneCount);
+        EventRecord[] in = added.toArray(new EventRecord[0]);
+        Arrays.sort(in, Comparator.comparingLong(r -> r.start));
+
+        EventColumns out = new EventColumns(dictionary, size - goneCount + in.length);
+        long maxDuration = maxTimedDuration;
+        int src = 0;
+        int dst = 0;
+        int g = 0;
+        for (EventRecord rec : in) {
+            int until = upperBound(rec.start); // copy everything up to and including equal starts
+            while (src < until) {
+                int next = g < goneCount ? Math.min(gone[g], until) : until;
+                copy(this, src, out, dst, next - src);
+                dst += next - src;
+                src = next;
+                if (g < goneCount && src == gone[g]) {
+                    src++;
+                    g++;
+                }
+            }
+            maxDuration = Math.max(maxDuration, out.set(dst++, rec));
+        }
+        while (src < size) {
+            int next = g < goneCount ? gone[g] : size;
+            copy(this, src, out, dst, next - src);
+            dst += next - src;
+            src = next;
+            if (g < goneCount) {
+                src++;
+                g++;
+            }
+        }
+        return new EventColumns(out, maxDuration);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long start(int i) {
+        return start[i];
+    }
+
+    long end(int i) {
+        return end[i];
+    }
+
+    boolean isAllDay(int i) {
+        return (flags[i] & ALL_DAY) != 0;
+    }
+
+    boolean isRecurring(int i) {
+        return (flags[i] & RECURRING) != 0;
+    }
+
+    int titleIdAt(int i) {
+        return title[i];
+    }
+
+    int rruleIdAt(int i) {
+        return rrule[i];
+    }
+
+    EventRecord record(int i) {
+        return records[i];
+    }
+
+    /** All records, ordered by start (a read-only list backed by the column). */
+    List<EventRecord> records() {
+        return Collections.unmodifiableList(Arrays.asList(records));
+    }
+
+    /** Records starting in [fromMs, toMs), ordered by start (a read-only list backed by the column). */
+    List<EventRecord> recordsStartingBetween(long fromMs, long toMs) {
+        int from = lowerBound(fromMs);
+        int to = lowerBound(toMs);
+        return from >= to ? Collections.emptyList() : records().subList(from, to);
+    }
+
+    /** Index of the first event starting at or after {@code t}; {@link #size()} if none. */
+    int lowerBound(long t) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start[mid] < t) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Index of the first event starting after {@code t}; {@link #size()} if none. */
+    int upperBound(long t) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start[mid] <= t) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Row holding exactly {@code rec}, or -1. */
+    int indexOf(EventRecord rec) {
+        for (int i = lowerBound(rec.start); i < size && start[i] == rec.start; i++) {
+            if (records[i] == rec) return i;
+        }
+        return -1;
+    }
+
+    /** Row of the event with case-insensitive title {@code title} starting exactly at {@code startMs}, or -1. */
+    int find(String title, long startMs) {
+        int id = dictionary.existingTitleId(title);
+        if (id <= 0) return -1;
+        for (int i = lowerBound(startMs); i < size && start[i] == startMs; i++) {
+            if (this.title[i] == id) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * True if a timed event other than {@code excludeUid} overlaps [fromMs, toMs). Only stored events are
+     * checked, not the repeat occurrences of recurring ones.
+     */
+    boolean overlaps(long fromMs, long toMs, String excludeUid) {
+        // an overlapping event starts before toMs and, being at most maxTimedDuration long, not before this
+        long earliest = fromMs - maxTimedDuration;
+        for (int i = lowerBound(earliest > fromMs ? Long.MIN_VALUE : earliest), to = lowerBound(toMs); i < to; i++) {
+            if ((flags[i] & ALL_DAY) != 0 || end[i] <= fromMs) continue;
+            if (excludeUid != null && records[i].uid.equals(excludeUid)) continue;
+            return true;
+        }
+        return false;
+    }
+
+    /** Calls {@code action} for every timed event overlapping [fromMs, toMs), in start order. */
+    void forEachTimedOverlap(long fromMs, long toMs, Consumer<EventRecord> action) {
+        long earliest = fromMs - maxTimedDuration;
+        for (int i = lowerBound(earliest > fromMs ? Long.MIN_VALUE : earliest), to = lowerBound(toMs); i < to; i++) {
+            if ((flags[i] & ALL_DAY) == 0 && end[i] > fromMs) action.accept(records[i]);
+        }
+    }
+
+    /** Number of timed events starting in [fromMs, toMs). */
+    int countTimedStartingBetween(long fromMs, long toMs) {
+        int n = 0;
+        for (int i = lowerBound(fromMs), to = lowerBound(toMs); i < to; i++) {
+            if ((flags[i] & ALL_DAY) == 0) n++;
+        }
+        return n;
+    }
+}
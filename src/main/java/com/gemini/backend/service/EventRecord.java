@@ -0,0 +1,95 @@
+package com.gemini.backend.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Lightweight, immutable view of a VEVENT holding only the fields the calendar tools query on.
+ * Times are epoch millis; {@code end} equals {@code start} when the event has no end.
+ */
+final class EventRecord {
+    private static final long[] NO_DATES = new long[0];
+
+    final String uid;
+    final String title;
+    final long start;
+    final long end;
+    final boolean allDay;
+    final String rrule; // null when non-recurring
+    final String tz;    // zone of a timed DTSTART: its TZID, "UTC" for a UTC time, null when floating (JVM zone)
+    final long[] exdates; // ascending starts of the occurrences left out of the series (EXDATE or overridden)
+    final String series;  // for a RECURRENCE-ID override, the UID of the series it belongs to; else null
+
+    EventRecord(String uid, String title, long start, long end, boolean allDay, String rrule) {
+        this(uid, title, start, end, allDay, rrule, null);
+    }
+
+    EventRecord(String uid, String title, long start, long end, boolean allDay, String rrule, String tz) {
+        this(uid, title, start, end, allDay, rrule, tz, null, null);
+    }
+
+    EventRecord(String uid, String title, long start, long end, boolean allDay, String rrule, String tz,
+                long[] exdates, String series) {
+        this.uid = uid;
+        this.title = title;
+        this.start = start;
+        this.end = end;
+        this.allDay = allDay;
+        this.rrule = rrule;
+        this.tz = tz;
+        this.exdates = exdates == null || exdates.length == 0 ? NO_DATES : exdates;
+        this.series = series;
+    }
+
+    EventRecord withTimes(long newStart, long newEnd) {
+        return new EventRecord(uid, title, newStart, newEnd, allDay, rrule, tz, exdates, series);
+    }
+
+    /** This record with {@code more} occurrence starts left out as well. */
+    EventRecord withExdates(Collection<Long> more) {
+        long[] merged = Arrays.copyOf(exdates, exdates.length + more.size());
+        int n = exdates.length;
+        for (long t : more) merged[n++] = t;
+        return new EventRecord(uid, title, start, end, allDay, rrule, tz, Arrays.stream(merged).sorted().distinct().toArray(), series);
+    }
+
+    /** True if the occurrence starting at {@code occurrence} was cancelled (EXDATE) or replaced by an override. */
+    boolean excludes(long occurrence) {
+        if (exdates.length == 0) return false;
+        if (!allDay) return Arrays.binarySearch(exdates, occurrence) >= 0;
+        // all-day values name a date, whatever instant either side was decoded to
+        LocalDate day = Instant.ofEpochMilli(occurrence).atZone(ZoneId.systemDefault()).toLocalDate();
+        for (long t : exdates) {
+            if (Instant.ofEpochMilli(t).atZone(ZoneId.systemDefault()).toLocalDate().equals(day)) return true;
+        }
+        return false;
+    }
+
+    /** Zone whose wall-clock time the event keeps when it repeats. */
+    ZoneId zone() {
+        return tz == null ? ZoneId.systemDefault() : ZoneId.of(tz);
+    }
+
+    long duration() {
+        return end - start;
+    }
+
+    boolean isRecurring() {
+        return rrule != null;
+    }
+
+    /** True if both records describe the same event with the same times. */
+    boolean sameAs(EventRecord o) {
+        return uid.equals(o.uid) && start == o.start && end == o.end && allDay == o.allDay
+                && java.util.Objects.equals(title, o.title) && java.util.Objects.equals(rrule, o.rrule)
+                && java.util.Objects.equals(tz, o.tz) && Arrays.equals(exdates, o.exdates)
+                && java.util.Objects.equals(series, o.series);
+    }
+
+    boolean titleMatches(String other) {
+        return title != null && other != null && title.equalsIgnoreCase(other);
+    }
+}
@@ -0,0 +1,269 @@
+package com.gemini.backend.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minute-granularity free/busy bitmaps, one per local calendar day (a bit per minute packed in a {@code long[]}),
+ * built lazily from the timed-event {@link IntervalTree} plus the expanded occurrences of recurring events
+ * (see {@link RecurrenceExpander}). Adding an event sets its bits in the cached days it
+ * touches; moving or removing one drops those days so they are rebuilt on the next query. Slot searches then
+ * become word-level bit scans instead of pairwise interval comparisons.
+ *
+ * Events of {@link #blockers(List) blocking calendars} (the overlay, see {@link CalendarOverlay}) are marked
+ * busy as well; the cache is dropped whenever one of them publishes a new view. Only days within
+ * {@code -Dcalendar.freeBusy.windowDays} (default 62) of the latest one built stay cached, so a long-running
+ * server does not keep every day it was ever asked about.
+ *
+ * Busy minutes are rounded outwards (an event ending at 10:00:30 blocks 10:00-10:01). Bitmaps have room for
+ * a 25-hour DST day; the bits past the end of a shorter day are marked busy.
+ */
+final class FreeBusyIndex {
+
+    /** Bits per day bitmap: minutes in the longest (25-hour) local day. */
+    static final int DAY_MINUTES = 25 * 60;
+    private static final int WORDS = (DAY_MINUTES + 63) / 64;
+    private static final long MINUTE_MS = 60_000L;
+    private static final int WINDOW_DAYS = Integer.getInteger("calendar.freeBusy.windowDays", 62);
+
+    /** Bitmap for one local day; bit i is set when minute i after local midnight is busy. */
+    static final class Day {
+        final long epochDay;
+        final long startMs;
+        final long endMs;
+        final long[] bits;
+
+        Day(long epochDay, long startMs, long endMs) {
+            this.epochDay = epochDay;
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.bits = new long[WORDS];
+            int minutes = (int) Math.min(DAY_MINUTES, (endMs - startMs) / MINUTE_MS);
+            if (minutes < DAY_MINUTES) FreeBusyIndex.mark(bits, minutes, DAY_MINUTES);
+        }
+
+        void mark(EventRecord rec) {
+            long s = Math.max(rec.start, startMs);
+            long e = Math.min(rec.end, endMs);
+            if (e <= s) return;
+            int from = (int) ((s - startMs) / MINUTE_MS);
+            int to = (int) Math.min(DAY_MINUTES, (e - startMs + MINUTE_MS - 1) / MINUTE_MS);
+            FreeBusyIndex.mark(bits, from, to);
+        }
+
+        int minuteOf(long ms) {
+            return (int) ((ms - startMs) / MINUTE_MS);
+        }
+
+        long msOf(int minute) {
+            return Math.min(endMs, startMs + minute * MINUTE_MS);
+        }
+    }
+
+    private final IntervalTree source;
+    private final Collection<EventRecord> recurring;
+    private final RecurrenceExpander expander;
+    private final ZoneId zone;
+    private final Map<Long, Day> days = new HashMap<>();
+    private List<CalendarView> blockers = Collections.emptyList();
+
+    FreeBusyIndex(IntervalTree source, Collection<EventRecord> recurring, RecurrenceExpander expander) {
+        this(source, recurring, expander, ZoneId.systemDefault());
+    }
+
+    FreeBusyIndex(IntervalTree source, Collection<EventRecord> recurring, RecurrenceExpander expander, ZoneId zone) {
+        this.source = source;
+        this.recurring = recurring;
+        this.expander = expander;
+        this.zone = zone;
+    }
+
+    void clear() {
+        days.clear();
+    }
+
+    int cachedDays() {
+        return days.size();
+    }
+
+    /** Other calendars whose events count as busy; the cached days are rebuilt if they changed. */
+    void blockers(List<CalendarView> views) {
+        if (views.size() == blockers.size()) {
+            boolean same = true;
+            for (int i = 0; i < views.size() && same; i++) same = views.get(i) == blockers.get(i);
+            if (same) return;
+        }
+        blockers = views;
+        days.clear();
+    }
+
+    long epochDayOf(long ms) {
+        return Instant.ofEpochMilli(ms).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    long dayStartMs(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /** Minutes from the start of {@code day} to wall-clock {@code minuteOfDay} on it (shifted out of a DST gap). */
+    int elapsedMinutes(Day day, int minuteOfDay) {
+        long ms = LocalDate.ofEpochDay(day.epochDay).atStartOfDay().plusMinutes(minuteOfDay)
+                .atZone(zone).toInstant().toEpochMilli();
+        return (int) Math.floorDiv(ms - day.startMs, MINUTE_MS);
+    }
+
+    /** The cached bitmap for a day, building it from the interval tree if needed. */
+    Day day(long epochDay) {
+        Day d = days.get(epochDay);
+        if (d == null) {
+            d = build(epochDay, null);
+            days.put(epochDay, d);
+            if (days.size() > 2 * WINDOW_DAYS + 1) days.keySet().removeIf(k -> Math.abs(k - epochDay) > WINDOW_DAYS);
+        }
+        return d;
+    }
+
+    /** A bitmap for the day as it would look without {@code exclude}; uncached if the event touches the day. */
+    Day dayWithout(long epochDay, EventRecord exclude) {
+        if (exclude == null || exclude.allDay) return day(epochDay);
+        Day cached = day(epochDay);
+        if (exclude.isRecurring()) {
+            if (expander.occurrences(exclude, cached.startMs, cached.endMs).length == 0) return cached;
+        } else if (exclude.end <= cached.startMs || exclude.start >= cached.endMs) {
+            return cached;
+        }
+        return build(epochDay, exclude.uid);
+    }
+
+    private Day build(long epochDay, String excludeUid) {
+        Day d = new Day(epochDay, dayStartMs(epochDay), dayStartMs(epochDay + 1));
+        source.forEachOverlap(d.startMs, d.endMs, rec -> {
+            if (!rec.uid.equals(excludeUid)) d.mark(rec);
+        });
+        for (EventRecord rec : recurring) {
+            if (rec.allDay || rec.uid.equals(excludeUid) || rec.start >= d.endMs) continue;
+            for (long start : expander.occurrences(rec, d.startMs, d.endMs)) {
+                d.mark(rec.withTimes(start, start + rec.duration()));
+            }
+        }
+        // blocking calendars are never excluded: the event being moved only lives in this one
+        for (CalendarView view : blockers) {
+            view.columns().forEachTimedOverlap(d.startMs, d.endMs, d::mark);
+            for (EventRecord occ : view.repeatOccurrencesBetween(d.startMs, d.endMs)) {
+                if (!occ.allDay) d.mark(occ);
+            }
+        }
+        return d;
+    }
+
+    void added(EventRecord rec) {
+        if (rec.allDay || rec.end <= rec.start) return;
+        if (rec.isRecurring()) {
+            // occurrences can land on any day
+            days.clear();
+            return;
+        }
+        for (long day = epochDayOf(rec.start), last = epochDayOf(rec.end - 1); day <= last; day++) {
+            Day d = days.get(day);
+            if (d != null) d.mark(rec);
+        }
+    }
+
+    void removed(EventRecord rec) {
+        if (rec.allDay || rec.end <= rec.start) return;
+        if (rec.isRecurring()) {
+            days.clear();
+            return;
+        }
+        for (long day = epochDayOf(rec.start), last = epochDayOf(rec.end - 1); day <= last; day++) {
+            days.remove(day);
+        }
+    }
+
+    /**
+     * First start {@code fromMs + k*stepMs} before {@code startLimit} whose [start, start+duration) is free
+     * and ends before {@code endLimit}, ignoring {@code exclude}; -1 if none.
+     */
+    long firstFree(long fromMs, long durationMs, long stepMs, long startLimit, long endLimit, EventRecord exclude) {
+        long cursor = fromMs;
+        while (cursor < startLimit && cursor + durationMs < endLimit) {
+            long busyUntil = busyUntil(cursor, cursor + durationMs, exclude);
+            if (busyUntil < 0) return cursor;
+            long steps = Math.max(1, (busyUntil - cursor + stepMs - 1) / stepMs);
+            cursor += steps * stepMs;
+        }
+        return -1;
+    }
+
+    /** -1 if [s,e) is free, otherwise the end of the first busy run inside it. */
+    private long busyUntil(long s, long e, EventRecord exclude) {
+        if (e <= s) return -1;
+        for (long day = epochDayOf(s), last = epochDayOf(e - 1); day <= last; day++) {
+            Day d = dayWithout(day, exclude);
+            int from = d.minuteOf(Math.max(s, d.startMs));
+            int to = (int) Math.min(DAY_MINUTES, (Math.min(e, d.endMs) - d.startMs + MINUTE_MS - 1) / MINUTE_MS);
+            int busy = nextSetBit(d.bits, from, to);
+            if (busy >= 0) return d.msOf(nextClearBit(d.bits, busy));
+        }
+        return -1;
+    }
+
+    /** First minute at or after {@code from} that starts a free run of {@code length} minutes, or -1. */
+    static int firstFreeRun(long[] bits, int from, int length) {
+        int cursor = from;
+        while (cursor + length <= DAY_MINUTES) {
+            int busy = nextSetBit(bits, cursor, cursor + length);
+            if (busy < 0) return cursor;
+            cursor = nextClearBit(bits, busy);
+        }
+        return -1;
+    }
+
+    static void mark(long[] bits, int from, int to) {
+        if (to <= from) return;
+        int fw = from >>> 6;
+        int tw = (to - 1) >>> 6;
+        long fm = -1L << (from & 63);
+        long tm = -1L >>> (63 - ((to - 1) & 63));
+        if (fw == tw) {
+            bits[fw] |= fm & tm;
+            return;
+        }
+        bits[fw] |= fm;
+        for (int w = fw + 1; w < tw; w++) bits[w] = -1L;
+        bits[tw] |= tm;
+    }
+
+    /** Index of the first set bit in [from, to), or -1. */
+    static int nextSetBit(long[] bits, int from, int to) {
+        if (to <= from) return -1;
+        int w = from >>> 6;
+        long word = bits[w] & (-1L << (from & 63));
+        while (true) {
+            if (word != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+                return bit < to ? bit : -1;
+            }
+            if (++w >= WORDS || (w << 6) >= to) return -1;
+            word = bits[w];
+        }
+    }
+
+    /** Index of the first clear bit at or after {@code from}, or {@link #DAY_MINUTES} if none. */
+    static int nextClearBit(long[] bits, int from) {
+        if (from >= DAY_MINUTES) return DAY_MINUTES;
+        int w = from >>> 6;
+        long word = ~bits[w] & (-1L << (from & 63));
+        while (true) {
+            if (word != 0) return Math.min(DAY_MINUTES, (w << 6) + Long.numberOfTrailingZeros(word));
+            if (++w >= WORDS) return DAY_MINUTES;
+            word = ~bits[w];
+        }
+    }
+}
@@ -1,5 +1,149 @@
 package com.gemini.backend.service;
 
+import com.gemini.backend.service.ActionPlan.Action;
+import com.gemini.backend.service.ActionPlan.Suggestion;
+import com.google.genai.Client;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side calendar assistant: turns one chat message into a model action plan and applies it to the
+ * shared calendar store. Each browser session keeps its own short rolling conversation so follow-ups like
+ * "yes, do that" resolve against that session only; sessions are kept in a bounded LRU map
+ * (-Dserver.maxSessions, default 10000).
+ *
+ * {@link #handle(String, String)} blocks on the model call and is meant to run on a virtual thread, where
+ * waiting for the response parks the virtual thread instead of holding a platform thread.
+ */
 public class GeminiService {
-    
+
+    private static final String MODEL = "gemini-2.5-flash";
+    private static final int CONVO_LINES = 12;
+    private static final int CONTEXT_LINES = 6;
+
+    /** Result of one {@link #handle(String, String)} call. */
+    public static class Outcome {
+        public ActionPlan plan;
+        public String responseText;
+        public boolean parseError;
+        public int applied;
+        public String summaryAfter;  // calendar summary when something changed or the model asked for one
+        public String suggestions;   // "- note" lines, or null
+        public List<String> log = new ArrayList<>();
+    }
+
+    private static final class Session {
+        final Deque<String> convo = new ArrayDeque<>();
+    }
+
+    private final Client client;
+    private final Gson gson = new Gson();
+    private final Map<String, Session> sessions;
+
+    public GeminiService(String apiKey) {
+        this.client = Client.builder().apiKey(apiKey == null ? "" : apiKey).build();
+        int maxSessions = Integer.getInteger("server.maxSessions", 10_000);
+        this.sessions = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    private Session session(String id) {
+        synchronized (sessions) {
+            return sessions.computeIfAbsent(id == null ? "" : id, k -> new Session());
+        }
+    }
+
+    /** Plans {@code message} with the model, applies the plan as one transaction and records the turn. */
+    public Outcome handle(String sessionId, String message) throws Exception {
+        Session session = session(sessionId);
+        String prompt;
+        synchronized (session) {
+            StringBuilder ctx = new StringBuilder();
+            if (!session.convo.isEmpty()) {
+                ctx.append("Conversation context (most recent first):\n");
+                Iterator<String> it = session.convo.descendingIterator();
+                for (int c = 0; it.hasNext() && c < CONTEXT_LINES; c++) ctx.append(it.next()).append('\n');
+            }
+            String slots = CalendarTool.freeSlotsContext();
+            if (!slots.isEmpty()) slots += "\n";
+            prompt = PlanExecutor.instruction(LocalDate.now()) + "\n\nRelevant calendar events:\n"
+                    + CalendarTool.promptContext(message) + "\n\n" + slots + ctx + "User request:\n" + message;
+        }
+
+        Outcome out = new Outcome();
+        Metrics.counter("gemini_plans_total{source=\"model\"}").increment();
+        PlanExecutor.PROMPT_CHARS.record(prompt.length());
+        long t0 = System.nanoTime();
+        GenerateContentResponse response = client.models.generateContent(MODEL, prompt, null);
+        PlanExecutor.MODEL_TIME.recordSince(t0);
+        out.responseText = response.text();
+        if (out.responseText != null) PlanExecutor.RESPONSE_CHARS.record(out.responseText.length());
+        try {
+            t0 = System.nanoTime();
+            // a response without text (e.g. blocked by a safety filter) is as unusable as malformed JSON
+            if (out.responseText == null) throw new JsonSyntaxException("Model returned no text");
+            out.plan = gson.fromJson(PlanExecutor.sanitizeJson(out.responseText), ActionPlan.class);
+            PlanExecutor.PARSE_TIME.recordSince(t0);
+        } catch (JsonSyntaxException e) {
+            PlanExecutor.PARSE_FAILURES.increment();
+            out.parseError = true;
+            remember(session, message, "Assistant: parse error on model output");
+            return out;
+        }
+
+        ActionPlan plan = out.plan;
+        boolean wantsSummary = false;
+        if (plan != null && plan.actions != null && !plan.actions.isEmpty()) {
+            boolean allowPast = PlanExecutor.allowsPast(message);
+            t0 = System.nanoTime();
+            try {
+                out.applied = CalendarTool.inTransaction(() -> PlanExecutor.apply(plan.actions, allowPast, out.log::add));
+            } catch (Exception e) {
+                out.log.add(e.getMessage());
+                out.log.add("Plan aborted; no changes were applied.");
+            }
+            PlanExecutor.APPLY_TIME.recordSince(t0);
+            for (Action a : plan.actions) {
+                if (a != null && "respond".equals(a.type) && Boolean.TRUE.equals(a.includeSummary)) wantsSummary = true;
+            }
+        }
+        if (out.applied > 0 || wantsSummary) out.summaryAfter = CalendarTool.summarizeWeek();
+
+        StringBuilder note = new StringBuilder("Assistant: applied ").append(out.applied).append(" action(s)");
+        if (plan != null && plan.suggestions != null && !plan.suggestions.isEmpty()) {
+            StringBuilder lines = new StringBuilder();
+            note.append("; suggestions: ");
+            int i = 0;
+            for (Suggestion s : plan.suggestions) {
+                if (s == null || s.note == null) continue;
+                lines.append("- ").append(s.note).append('\n');
+                if (note.length() <= 400) note.append(i++ > 0 ? " | " : "").append(s.note);
+            }
+            if (lines.length() > 0) out.suggestions = lines.toString().trim();
+        }
+        remember(session, message, note.toString());
+        return out;
+    }
+
+    private static void remember(Session session, String message, String assistantNote) {
+        synchronized (session) {
+            session.convo.addLast("User: " + message);
+            session.convo.addLast(assistantNote);
+            while (session.convo.size() > CONVO_LINES) session.convo.removeFirst();
+        }
+    }
 }
@@ -0,0 +1,252 @@
+package com.gemini.backend.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams an ICS file to a writer while applying the changes made since it was loaded: VEVENTs in
+ * {@code deleted} are dropped, those in {@code retimed} get new DTSTART/DTEND lines, and the blocks in
+ * {@code added} are written before END:VCALENDAR (replacing any file block with the same UID). A RECURRENCE-ID
+ * override is addressed by {@link IcsStreamParser#overrideUid}; deleting one on its own marks it cancelled so its
+ * occurrence stays out of the series. Everything
+ * else, including properties the {@link IcsStreamParser} never decodes, is copied verbatim, so only one
+ * VEVENT is buffered at a time. A file cut off before END:VCALENDAR still gets the added blocks and is
+ * closed; a VEVENT cut off at the end of the file is dropped, as the parser never indexed it.
+ */
+final class IcsRewriter {
+
+    private static final String CRLF = "\r\n";
+    private static final String HEADER = "BEGIN:VCALENDAR" + CRLF + "PRODID:-//AI Calendar//Gemini Tool//EN" + CRLF
+            + "VERSION:2.0" + CRLF + "CALSCALE:GREGORIAN" + CRLF;
+    private static final DateTimeFormatter UTC_STAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter LOCAL_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE_STAMP =
+            DateTimeFormatter.BASIC_ISO_DATE.withZone(ZoneId.systemDefault());
+
+    private IcsRewriter() {
+    }
+
+    static void write(File source, Writer out, Map<String, String> added, Map<String, EventRecord> retimed,
+                      Set<String> deleted) throws IOException {
+        if (!source.exists()) {
+            out.write(HEADER);
+            for (String block : added.values()) writeBlock(out, block);
+            out.write("END:VCALENDAR" + CRLF);
+            return;
+        }
+        IcsStreamParser parser = new IcsStreamParser();
+        Set<String> seen = new HashSet<>();
+        List<String> block = null;
+        int nested = 0;
+        int ordinal = 0;
+        boolean begun = false;
+        boolean wroteAdded = false;
+        try (BufferedReader in = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (block != null) {
+                    block.add(line);
+                    if (line.startsWith("BEGIN:")) {
+                        nested++;
+                    } else if (line.startsWith("END:")) {
+                        if (nested > 0) {
+                            nested--;
+                        } else {
+                            emit(out, block, ordinal++, parser, added, retimed, deleted, seen);
+                            block = null;
+                        }
+                    }
+                    continue;
+                }
+                if (IcsStreamParser.isEventBegin(line)) {
+                    block = new ArrayList<>();
+                    block.add(line);
+                    continue;
+                }
+                if (line.startsWith("BEGIN:VCALENDAR")) begun = true;
+                if (line.startsWith("END:VCALENDAR") && !wroteAdded) {
+                    for (String b : added.values()) writeBlock(out, b);
+                    wroteAdded = true;
+                }
+                out.write(line);
+                out.write(CRLF);
+            }
+        }
+        if (!wroteAdded) {
+            // truncated (or empty) file: close the calendar here rather than lose the added events
+            if (!begun) out.write(HEADER);
+            for (String b : added.values()) writeBlock(out, b);
+            out.write("END:VCALENDAR" + CRLF);
+        }
+    }
+
+    private static void emit(Writer out, List<String> block, int ordinal, IcsStreamParser parser,
+                             Map<String, String> added, Map<String, EventRecord> retimed, Set<String> deleted,
+                             Set<String> seen) throws IOException {
+        String uid = topLevelValue(block, "UID");
+        boolean generated = uid == null || uid.isEmpty();
+        if (generated) uid = IcsStreamParser.syntheticUid(ordinal);
+        String key = generated ? uid : key(uid, topLevelLine(block, "RECURRENCE-ID"), parser);
+        List<String> lines = block;
+        // an override goes with its series
+        if (deleted.contains(uid)) return;
+        if (deleted.contains(key)) lines = cancel(block);
+        if (added.containsKey(key)) return;
+        boolean first = seen.add(key);
+        EventRecord rec = retimed.get(key);
+        // only the first block with a key is indexed; repeated ones are kept as is
+        if (rec != null && first) lines = retime(lines, rec);
+        if (generated) {
+            lines = new ArrayList<>(lines);
+            lines.add(1, "UID:" + uid);
+        }
+        for (String l : lines) {
+            out.write(l);
+            out.write(CRLF);
+        }
+    }
+
+    /** The index key of a block: its UID, or for a RECURRENCE-ID override the key the parser gives it. */
+    private static String key(String uid, String recurrenceId, IcsStreamParser parser) {
+        if (recurrenceId == null) return uid;
+        try {
+            return IcsStreamParser.overrideUid(uid, parser.timeValue(recurrenceId));
+        } catch (RuntimeException e) {
+            return uid;
+        }
+    }
+
+    /** The block with its top-level STATUS replaced by STATUS:CANCELLED. */
+    private static List<String> cancel(List<String> block) {
+        List<String> out = new ArrayList<>(block.size() + 1);
+        int nested = 0;
+        boolean skipping = false;
+        for (int i = 0; i < block.size(); i++) {
+            String line = block.get(i);
+            if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+                if (!skipping) out.add(line);
+                continue;
+            }
+            skipping = false;
+            if (i > 0 && line.startsWith("BEGIN:")) nested++;
+            else if (nested > 0 && line.startsWith("END:")) nested--;
+            else if (nested == 0 && isProperty(line, "STATUS")) {
+                skipping = true;
+                continue;
+            }
+            out.add(line);
+            if (i == 0) out.add("STATUS:CANCELLED");
+        }
+        return out;
+    }
+
+    /** Returns the VEVENT text with DTSTART/DTEND replaced by the times of {@code rec}. */
+    static String retime(String veventText, EventRecord rec) {
+        List<String> lines = retime(Arrays.asList(veventText.split("\r?\n")), rec);
+        StringBuilder sb = new StringBuilder(veventText.length() + 32);
+        for (String l : lines) sb.append(l).append(CRLF);
+        return sb.toString();
+    }
+
+    /**
+     * Drops DTEND/DURATION (and DTSTART when the start moved) and inserts the new values after BEGIN:VEVENT.
+     * An unchanged DTSTART keeps its original TZID and format.
+     */
+    private static List<String> retime(List<String> block, EventRecord rec) {
+        String oldStart = topLevelLine(block, "DTSTART");
+        boolean keepStart = false;
+        if (oldStart != null) {
+            try {
+                EventRecord original = new IcsStreamParser().parseOne(String.join(CRLF, block));
+                keepStart = original != null && original.start == rec.start;
+            } catch (IOException e) {
+                keepStart = false;
+            }
+        }
+        List<String> out = new ArrayList<>(block.size() + 2);
+        int nested = 0;
+        boolean skipping = false;
+        for (int i = 0; i < block.size(); i++) {
+            String line = block.get(i);
+            boolean continuation = !line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t');
+            if (continuation) {
+                if (!skipping) out.add(line);
+                continue;
+            }
+            skipping = false;
+            if (i > 0 && line.startsWith("BEGIN:")) nested++;
+            else if (nested > 0 && line.startsWith("END:")) nested--;
+            else if (nested == 0 && (isProperty(line, "DTEND") || isProperty(line, "DURATION")
+                    || (!keepStart && isProperty(line, "DTSTART")))) {
+                skipping = true;
+                continue;
+            }
+            out.add(line);
+            if (i == 0) {
+                if (!keepStart) out.add("DTSTART" + stamp(rec, rec.start));
+                out.add("DTEND" + stamp(rec, rec.end));
+            }
+        }
+        return out;
+    }
+
+    /** A new DTSTART/DTEND value in the event's own form (UTC, TZID or floating), so repeats keep their zone. */
+    private static String stamp(EventRecord rec, long ms) {
+        Instant t = Instant.ofEpochMilli(ms);
+        if (rec.allDay) return ";VALUE=DATE:" + DATE_STAMP.format(t);
+        if ("UTC".equals(rec.tz)) return ":" + UTC_STAMP.format(t);
+        String local = LOCAL_STAMP.format(t.atZone(rec.zone()));
+        return rec.tz == null ? ":" + local : ";TZID=" + rec.tz + ":" + local;
+    }
+
+    private static boolean isProperty(String line, String name) {
+        return line.length() > name.length() && line.startsWith(name)
+                && (line.charAt(name.length()) == ':' || line.charAt(name.length()) == ';');
+    }
+
+    /** Unfolded top-level line of property {@code name} in a VEVENT block, or null. */
+    private static String topLevelLine(List<String> block, String name) {
+        int nested = 0;
+        for (int i = 1; i < block.size(); i++) {
+            String line = block.get(i);
+            if (line.startsWith("BEGIN:")) nested++;
+            else if (nested > 0 && line.startsWith("END:")) nested--;
+            else if (nested == 0 && isProperty(line, name)) {
+                StringBuilder sb = new StringBuilder(line);
+                while (i + 1 < block.size() && !block.get(i + 1).isEmpty()
+                        && (block.get(i + 1).charAt(0) == ' ' || block.get(i + 1).charAt(0) == '\t')) {
+                    sb.append(block.get(++i), 1, block.get(i).length());
+                }
+                return sb.toString();
+            }
+        }
+        return null;
+    }
+
+    private static String topLevelValue(List<String> block, String name) {
+        String line = topLevelLine(block, name);
+        if (line == null) return null;
+        int sep = IcsStreamParser.valueSeparator(line);
+        return sep < 0 ? null : line.substring(sep + 1).trim();
+    }
+
+    private static void writeBlock(Writer out, String block) throws IOException {
+        out.write(block);
+        if (!block.endsWith("\n")) out.write(CRLF);
+    }
+}
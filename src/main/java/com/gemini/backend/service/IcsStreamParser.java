@@ -0,0 +1,360 @@
+package com.gemini.backend.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streaming, line-unfolding VEVENT parser. Reads an ICS stream once and emits one {@link EventRecord} per
+ * top-level VEVENT without building a component model. Only UID, SUMMARY, STATUS, DTSTART, DTEND, DURATION,
+ * RRULE, EXDATE and RECURRENCE-ID are decoded; every other property (ATTENDEE, DESCRIPTION, ORGANIZER, ...) is skipped together with its
+ * continuation lines without being unfolded, and nested components such as VALARM are ignored. Memory use is
+ * bounded by the longest kept property, not by the file.
+ *
+ * Events without a UID get a synthetic one derived from their position in the file ({@link #syntheticUid});
+ * events whose DTSTART cannot be read are skipped. A RECURRENCE-ID override is emitted as an event of its own
+ * under {@link #overrideUid}, and the occurrence it replaces is reported through {@link #replacedOccurrences()}
+ * so the series can leave it out; a cancelled override only replaces.
+ */
+final class IcsStreamParser {
+
+    private static final ZoneId LOCAL = ZoneId.systemDefault();
+
+    private final Map<String, ZoneId> zones = new HashMap<>();
+    private final Map<String, List<Long>> replaced = new HashMap<>();
+    private int generatedUids;
+
+    static String syntheticUid(int ordinal) {
+        return "generated-" + ordinal + "@ai-calendar";
+    }
+
+    /** Key of the override of series {@code uid} that replaces the occurrence starting at {@code recurrenceId}. */
+    static String overrideUid(String uid, long recurrenceId) {
+        return uid + "#occurrence=" + recurrenceId;
+    }
+
+    /**
+     * True if {@code line} opens a VEVENT. {@link IcsRewriter} counts events with the same test, so synthetic
+     * UIDs (which are positional) name the same event in both.
+     */
+    static boolean isEventBegin(String line) {
+        return line.startsWith("BEGIN:VEVENT");
+    }
+
+    /**
+     * Parses every VEVENT from {@code in} and hands it to {@code sink}.
+     *
+     * @return number of VEVENT blocks seen (including skipped ones)
+     */
+    int parse(Reader in, Consumer<EventRecord> sink) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        EventBuilder ev = null;
+        int ordinal = 0;
+        int nested = 0;
+        StringBuilder prop = new StringBuilder(128);
+        boolean keep = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+                if (keep) prop.append(line, 1, line.length());
+                continue;
+            }
+            // a new logical line starts: finish the previous kept property
+            if (keep) {
+                ev.property(prop);
+                keep = false;
+            }
+            if (line.startsWith("BEGIN:")) {
+                if (ev != null) {
+                    nested++;
+                } else if (isEventBegin(line)) {
+                    ev = new EventBuilder(this);
+                }
+                continue;
+            }
+            if (line.startsWith("END:")) {
+                if (ev == null) continue;
+                if (nested > 0) {
+                    nested--;
+                } else {
+                    EventRecord rec = ev.build(ordinal++);
+                    if (rec != null) {
+                        if (ev.uid == null || ev.uid.isEmpty()) generatedUids++;
+                        sink.accept(rec);
+                    }
+                    ev = null;
+                }
+                continue;
+            }
+            if (ev == null || nested > 0) continue;
+            if (isWanted(line)) {
+                prop.setLength(0);
+                prop.append(line);
+                keep = true;
+            }
+        }
+        if (keep) ev.property(prop);
+        return ordinal;
+    }
+
+    /** Parses a single VEVENT block (e.g. a journal entry); null if it has no readable DTSTART. */
+    EventRecord parseOne(String veventText) throws IOException {
+        EventRecord[] out = new EventRecord[1];
+        parse(new StringReader(veventText), rec -> out[0] = rec);
+        return out[0];
+    }
+
+    /** Number of events given a synthetic UID so far. */
+    int generatedUids() {
+        return generatedUids;
+    }
+
+    /** Per series UID, the occurrence starts replaced by the RECURRENCE-ID overrides parsed so far. */
+    Map<String, List<Long>> replacedOccurrences() {
+        return replaced;
+    }
+
+    /** Epoch millis of a DATE or DATE-TIME property line such as {@code RECURRENCE-ID;TZID=...:...}. */
+    long timeValue(CharSequence line) {
+        int sep = valueSeparator(line);
+        if (sep < 0) throw new NumberFormatException("No value: " + line);
+        return parseDateValue(line.subSequence(sep + 1, line.length()).toString().trim(), param(line.subSequence(0, sep), "TZID"));
+    }
+
+    private static boolean isWanted(String line) {
+        switch (line.charAt(0)) {
+            case 'U': return nameIs(line, "UID");
+            case 'S': return nameIs(line, "SUMMARY") || nameIs(line, "STATUS");
+            case 'D': return nameIs(line, "DTSTART") || nameIs(line, "DTEND") || nameIs(line, "DURATION");
+            case 'R': return nameIs(line, "RRULE") || nameIs(line, "RECURRENCE-ID");
+            case 'E': return nameIs(line, "EXDATE");
+            default: return false;
+        }
+    }
+
+    private static boolean nameIs(CharSequence line, String name) {
+        int n = name.length();
+        if (line.length() <= n) return false;
+        for (int i = 0; i < n; i++) {
+            if (line.charAt(i) != name.charAt(i)) return false;
+        }
+        char c = line.charAt(n);
+        return c == ':' || c == ';';
+    }
+
+    /** Index of the ':' separating name/parameters from the value, skipping quoted parameter values. */
+    static int valueSeparator(CharSequence line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) return i;
+        }
+        return -1;
+    }
+
+    /** Value of parameter {@code name} in the name/parameter section, or null. */
+    static String param(CharSequence head, String name) {
+        String h = head.toString();
+        int i = 0;
+        while ((i = h.indexOf(';', i)) >= 0) {
+            i++;
+            if (h.regionMatches(true, i, name, 0, name.length()) && h.length() > i + name.length()
+                    && h.charAt(i + name.length()) == '=') {
+                int from = i + name.length() + 1;
+                int to = from;
+                boolean quoted = false;
+                while (to < h.length() && (quoted || h.charAt(to) != ';')) {
+                    if (h.charAt(to) == '"') quoted = !quoted;
+                    to++;
+                }
+                String v = h.substring(from, to);
+                return v.length() >= 2 && v.charAt(0) == '"' ? v.substring(1, v.length() - 1) : v;
+            }
+        }
+        return null;
+    }
+
+    /** Id of the zone a DATE-TIME value is in: "UTC" for a UTC time, the resolved TZID, or null when floating. */
+    String zoneId(String v, String tzid) {
+        if (v.length() > 15 && v.charAt(15) == 'Z') return "UTC";
+        if (tzid == null) return null;
+        ZoneId z = zone(tzid);
+        return z == LOCAL ? null : z.getId();
+    }
+
+    private ZoneId zone(String tzid) {
+        if (tzid == null) return LOCAL;
+        return zones.computeIfAbsent(tzid, id -> {
+            try {
+                return ZoneId.of(id);
+            } catch (DateTimeException e) {
+                return LOCAL;
+            }
+        });
+    }
+
+    /**
+     * Parses a DATE ({@code yyyyMMdd}) or DATE-TIME ({@code yyyyMMddTHHmmss[Z]}) value to epoch millis.
+     * DATE values and floating times are interpreted in the JVM's zone.
+     */
+    long parseDateValue(String v, String tzid) {
+        int y = digits(v, 0, 4), mo = digits(v, 4, 2), d = digits(v, 6, 2);
+        if (v.length() < 15 || v.charAt(8) != 'T') {
+            return LocalDate.of(y, mo, d).atStartOfDay(LOCAL).toInstant().toEpochMilli();
+        }
+        LocalDateTime t = LocalDateTime.of(y, mo, d, digits(v, 9, 2), digits(v, 11, 2), digits(v, 13, 2));
+        ZoneId z = v.length() > 15 && v.charAt(15) == 'Z' ? ZoneOffset.UTC : zone(tzid);
+        return t.atZone(z).toInstant().toEpochMilli();
+    }
+
+    private static int digits(String s, int from, int len) {
+        int v = 0;
+        for (int i = from; i < from + len; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new NumberFormatException("Bad date value: " + s);
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    /** ISO 8601 duration as used by iCalendar (supports weeks, e.g. P1W, and a leading sign). */
+    static long parseDuration(String v) {
+        String s = v.trim();
+        boolean negative = s.startsWith("-");
+        if (negative || s.startsWith("+")) s = s.substring(1);
+        long ms;
+        int w = s.indexOf('W');
+        if (w > 0) {
+            ms = Long.parseLong(s.substring(1, w)) * 7L * 24 * 60 * 60 * 1000;
+        } else {
+            ms = Duration.parse(s).toMillis();
+        }
+        return negative ? -ms : ms;
+    }
+
+    static String unescapeText(String v) {
+        if (v.indexOf('\\') < 0) return v;
+        StringBuilder sb = new StringBuilder(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '\\' && i + 1 < v.length()) {
+                char n = v.charAt(++i);
+                sb.append(n == 'n' || n == 'N' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Collects the decoded properties of one VEVENT. */
+    private static final class EventBuilder {
+        private final IcsStreamParser parser;
+        String uid;
+        String summary;
+        String rrule;
+        String dtstart;
+        String dtstartTz;
+        boolean dateOnly;
+        String dtend;
+        String dtendTz;
+        String duration;
+        List<Long> exdates;
+        String recurrenceId;
+        String recurrenceIdTz;
+        boolean cancelled;
+
+        EventBuilder(IcsStreamParser parser) {
+            this.parser = parser;
+        }
+
+        void property(CharSequence line) {
+            int sep = valueSeparator(line);
+            if (sep < 0) return;
+            CharSequence head = line.subSequence(0, sep);
+            String value = line.subSequence(sep + 1, line.length()).toString().trim();
+            if (nameIs(line, "UID")) {
+                uid = value;
+            } else if (nameIs(line, "SUMMARY")) {
+                summary = unescapeText(value);
+            } else if (nameIs(line, "RRULE")) {
+                rrule = value;
+            } else if (nameIs(line, "DTSTART")) {
+                dtstart = value;
+                dtstartTz = param(head, "TZID");
+                dateOnly = "DATE".equalsIgnoreCase(param(head, "VALUE")) || value.indexOf('T') < 0;
+            } else if (nameIs(line, "DTEND")) {
+                dtend = value;
+                dtendTz = param(head, "TZID");
+            } else if (nameIs(line, "DURATION")) {
+                duration = value;
+            } else if (nameIs(line, "EXDATE")) {
+                String tzid = param(head, "TZID");
+                if (exdates == null) exdates = new ArrayList<>();
+                for (String v : value.split(",")) {
+                    try {
+                        exdates.add(parser.parseDateValue(v.trim(), tzid));
+                    } catch (RuntimeException e) {
+                        // unreadable value: that occurrence stays
+                    }
+                }
+            } else if (nameIs(line, "RECURRENCE-ID")) {
+                recurrenceId = value;
+                recurrenceIdTz = param(head, "TZID");
+            } else if (nameIs(line, "STATUS")) {
+                cancelled = "CANCELLED".equalsIgnoreCase(value);
+            }
+        }
+
+        EventRecord build(int ordinal) {
+            String series = null;
+            long replaces = 0;
+            if (recurrenceId != null && uid != null && !uid.isEmpty()) {
+                try {
+                    replaces = parser.parseDateValue(recurrenceId, recurrenceIdTz);
+                } catch (RuntimeException e) {
+                    return null;
+                }
+                parser.replaced.computeIfAbsent(uid, k -> new ArrayList<>()).add(replaces);
+                if (cancelled) return null;
+                series = uid;
+            }
+            if (dtstart == null) return null;
+            try {
+                long start = parser.parseDateValue(dtstart, dtstartTz);
+                long end;
+                if (dtend != null) {
+                    end = parser.parseDateValue(dtend, dtendTz);
+                } else if (duration != null) {
+                    end = start + parseDuration(duration);
+                } else if (dateOnly) {
+                    end = LocalDate.parse(dtstart.substring(0, 8), java.time.format.DateTimeFormatter.BASIC_ISO_DATE)
+                            .plusDays(1).atStartOfDay(LOCAL).toInstant().toEpochMilli();
+                } else {
+                    end = start;
+                }
+                String id = series != null ? overrideUid(uid, replaces) : uid != null && !uid.isEmpty() ? uid : syntheticUid(ordinal);
+                String tz = dateOnly ? null : parser.zoneId(dtstart, dtstartTz);
+                // an override is one occurrence; only a series keeps its rule and exclusions
+                String rule = series != null ? null : rrule;
+                long[] excluded = rule == null || exdates == null ? null : exdates.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+                return new EventRecord(id, summary, start, Math.max(start, end), dateOnly, rule, tz, excluded, series);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
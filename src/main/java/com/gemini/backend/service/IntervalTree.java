@@ -0,0 +1,157 @@
+package com.gemini.backend.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Augmented interval tree (a treap ordered by start, each node carrying the max end of its subtree) over
+ * timed events. Answers "does [s,e) overlap anything" in O(log n) and enumerates the events overlapping a
+ * range in O(log n + k).
+ */
+final class IntervalTree {
+
+    private static final class Node {
+        final EventRecord rec;
+        final int priority;
+        Node left;
+        Node right;
+        long maxEnd;
+
+        Node(EventRecord rec) {
+            this.rec = rec;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            this.maxEnd = rec.end;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        root = null;
+        size = 0;
+    }
+
+    void insert(EventRecord rec) {
+        root = insert(root, new Node(rec));
+        size++;
+    }
+
+    void remove(EventRecord rec) {
+        int before = size;
+        root = remove(root, rec);
+        if (size == before) throw new IllegalStateException("Interval not indexed: " + rec.uid);
+    }
+
+    /** Returns an event overlapping [s,e) other than {@code excludeUid}, or null. */
+    EventRecord firstOverlap(long s, long e, String excludeUid) {
+        return firstOverlap(root, s, e, excludeUid);
+    }
+
+    boolean overlaps(long s, long e, String excludeUid) {
+        return firstOverlap(root, s, e, excludeUid) != null;
+    }
+
+    /** Visits every event overlapping [s,e) in start order. */
+    void forEachOverlap(long s, long e, Consumer<EventRecord> visitor) {
+        forEachOverlap(root, s, e, visitor);
+    }
+
+    private static int compare(EventRecord a, EventRecord b) {
+        int c = Long.compare(a.start, b.start);
+        return c != 0 ? c : a.uid.compareTo(b.uid);
+    }
+
+    private static long maxEnd(Node n) {
+        return n == null ? Long.MIN_VALUE : n.maxEnd;
+    }
+
+    private static void update(Node n) {
+        n.maxEnd = Math.max(n.rec.end, Math.max(maxEnd(n.left), maxEnd(n.right)));
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private static Node insert(Node n, Node added) {
+        if (n == null) return added;
+        if (compare(added.rec, n.rec) < 0) {
+            n.left = insert(n.left, added);
+            if (n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, added);
+            if (n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        update(n);
+        return n;
+    }
+
+    private Node remove(Node n, EventRecord rec) {
+        if (n == null) return null;
+        int c = compare(rec, n.rec);
+        if (c < 0) {
+            n.left = remove(n.left, rec);
+        } else if (c > 0) {
+            n.right = remove(n.right, rec);
+        } else {
+            size--;
+            return merge(n.left, n.right);
+        }
+        update(n);
+        return n;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static void forEachOverlap(Node n, long s, long e, Consumer<EventRecord> visitor) {
+        if (n == null || n.maxEnd <= s) return;
+        forEachOverlap(n.left, s, e, visitor);
+        if (n.rec.start >= e) return;
+        if (n.rec.end > s) visitor.accept(n.rec);
+        forEachOverlap(n.right, s, e, visitor);
+    }
+
+    private static EventRecord firstOverlap(Node n, long s, long e, String excludeUid) {
+        while (n != null) {
+            if (n.maxEnd <= s) return null;
+            if (n.left != null && n.left.maxEnd > s) {
+                EventRecord hit = firstOverlap(n.left, s, e, excludeUid);
+                if (hit != null) return hit;
+            }
+            if (n.rec.start >= e) return null; // everything to the right starts even later
+            if (n.rec.end > s && !n.rec.uid.equals(excludeUid)) return n.rec;
+            n = n.right;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,216 @@
+package com.gemini.backend.service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics registry: counters and histograms for each CalendarTool operation and each stage of
+ * a model turn (prompt building, model call, JSON parsing, applying the plan, writing the calendar).
+ * Recording is lock-free and allocation-free, so it can sit on hot paths.
+ *
+ * Histograms are HDR-style log-linear: exact below 16, then 8 sub-buckets per power of two (values are
+ * within 12.5% of the reported percentile). Metric names may carry Prometheus labels, e.g.
+ * {@code calendar_op_seconds{op="create"}}; {@link #prometheus()} renders everything in the Prometheus text
+ * format and {@link #report()} as a table for the CLI {@code stats} command.
+ */
+public final class Metrics {
+
+    /** What a histogram's raw values mean, and how they are shown. */
+    public enum Unit {
+        NANOS, BYTES, COUNT
+    }
+
+    /** Monotonic counter. */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /** Lock-free log-linear histogram of non-negative longs. */
+    public static final class Histogram {
+        private static final int LINEAR = 16;
+        private static final int SUB_BITS = 3;
+        private static final int SUBS = 1 << SUB_BITS;
+        private static final int BUCKETS = LINEAR + (63 - 4) * SUBS;
+
+        final Unit unit;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(Unit unit) {
+            this.unit = unit;
+        }
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            counts.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            if (value > max.get()) max.accumulateAndGet(value, Math::max);
+        }
+
+        /** Records the time since {@code startNanos} (a {@link System#nanoTime()} reading). */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /** Upper bound of the bucket holding the {@code q}-quantile (0..1), capped at the maximum seen. */
+        public long percentile(double q) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank && snapshot[i] > 0) return Math.min(upper(i), max());
+            }
+            return max();
+        }
+
+        static int bucket(long v) {
+            if (v < LINEAR) return (int) v;
+            int magnitude = 63 - Long.numberOfLeadingZeros(v); // >= 4
+            int sub = (int) (v >>> (magnitude - SUB_BITS)) & (SUBS - 1);
+            return LINEAR + (magnitude - 4) * SUBS + sub;
+        }
+
+        static long upper(int bucket) {
+            if (bucket < LINEAR) return bucket;
+            int magnitude = (bucket - LINEAR) / SUBS + 4;
+            int sub = (bucket - LINEAR) % SUBS;
+            long lower = (long) (SUBS + sub) << (magnitude - SUB_BITS);
+            return lower + (1L << (magnitude - SUB_BITS)) - 1;
+        }
+    }
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        Counter c = COUNTERS.get(name);
+        return c != null ? c : COUNTERS.computeIfAbsent(name, k -> new Counter());
+    }
+
+    public static Histogram histogram(String name, Unit unit) {
+        Histogram h = HISTOGRAMS.get(name);
+        return h != null ? h : HISTOGRAMS.computeIfAbsent(name, k -> new Histogram(unit));
+    }
+
+    /** Latency histogram in nanoseconds (exported in seconds). */
+    public static Histogram timer(String name) {
+        return histogram(name, Unit.NANOS);
+    }
+
+    /** Duration histogram of one CalendarTool operation, {@code calendar_op_seconds{op="..."}}. */
+    static Histogram op(String op) {
+        return timer("calendar_op_seconds{op=\"" + op + "\"}");
+    }
+
+    /** Human-readable table of all metrics, sorted by name. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-58s %9s %11s %11s %11s %11s%n", "histogram", "count", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            Histogram h = e.getValue();
+            if (h.count() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-58s %9d %11s %11s %11s %11s%n", e.getKey(), h.count(),
+                    human(h.percentile(0.5), h.unit), human(h.percentile(0.9), h.unit),
+                    human(h.percentile(0.99), h.unit), human(h.max(), h.unit)));
+        }
+        sb.append(String.format(Locale.ROOT, "%n%-58s %9s%n", "counter", "value"));
+        for (Map.Entry<String, Counter> e : new TreeMap<>(COUNTERS).entrySet()) {
+            sb.append(String.format(Locale.ROOT, "%-58s %9d%n", e.getKey(), e.getValue().get()));
+        }
+        return sb.toString();
+    }
+
+    private static String human(long v, Unit unit) {
+        switch (unit) {
+            case NANOS:
+                if (v >= 1_000_000_000L) return String.format(Locale.ROOT, "%.2fs", v / 1e9);
+                if (v >= 1_000_000L) return String.format(Locale.ROOT, "%.1fms", v / 1e6);
+                return String.format(Locale.ROOT, "%.0fus", v / 1e3);
+            case BYTES:
+                if (v >= 1L << 20) return String.format(Locale.ROOT, "%.1fMiB", v / (double) (1L << 20));
+                if (v >= 1L << 10) return String.format(Locale.ROOT, "%.1fKiB", v / 1024.0);
+                return v + "B";
+            default:
+                return Long.toString(v);
+        }
+    }
+
+    /** All metrics in the Prometheus text exposition format (histograms as summaries). */
+    public static String prometheus() {
+        StringBuilder sb = new StringBuilder();
+        String lastBase = null;
+        for (Map.Entry<String, Counter> e : new TreeMap<>(COUNTERS).entrySet()) {
+            String base = baseName(e.getKey());
+            if (!base.equals(lastBase)) sb.append("# TYPE ").append(base).append(" counter\n");
+            lastBase = base;
+            sb.append(e.getKey()).append(' ').append(e.getValue().get()).append('\n');
+        }
+        lastBase = null;
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            String name = e.getKey();
+            String base = baseName(name);
+            String labels = name.length() > base.length() ? name.substring(base.length() + 1, name.length() - 1) : "";
+            Histogram h = e.getValue();
+            double divisor = h.unit == Unit.NANOS ? 1e9 : 1;
+            if (!base.equals(lastBase)) sb.append("# TYPE ").append(base).append(" summary\n");
+            lastBase = base;
+            for (double q : QUANTILES) {
+                sb.append(base).append("{").append(labels).append(labels.isEmpty() ? "" : ",")
+                        .append("quantile=\"").append(q).append("\"} ").append(number(h.percentile(q) / divisor)).append('\n');
+            }
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            sb.append(base).append("_sum").append(suffix).append(' ').append(number(h.sum() / divisor)).append('\n');
+            sb.append(base).append("_count").append(suffix).append(' ').append(h.count()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String baseName(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name : name.substring(0, brace);
+    }
+
+    private static String number(double v) {
+        return v == Math.rint(v) && Math.abs(v) < 1e15 ? Long.toString((long) v) : Double.toString(v);
+    }
+}
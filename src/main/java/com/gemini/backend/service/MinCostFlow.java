@@ -0,0 +1,121 @@
+package com.gemini.backend.service;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Min-cost flow by successive shortest paths, with Dijkstra on reduced costs (Johnson potentials). Edge
+ * costs must be non-negative. Besides plain edges there are uncapacitated convex edges whose k-th unit costs
+ * {@code marginal(k)} (non-decreasing in k); they stand in for a ladder of unit edges without materializing it.
+ */
+final class MinCostFlow {
+
+    private final int nodes;
+    private final int[] head;
+    private int[] next = new int[16];
+    private int[] to = new int[16];
+    private int[] cap = new int[16];
+    private long[] cost = new long[16];
+    private LongUnaryOperator[] convex = new LongUnaryOperator[8]; // per edge pair, null for plain edges
+    private int edges;
+
+    MinCostFlow(int nodes) {
+        this.nodes = nodes;
+        this.head = new int[nodes];
+        Arrays.fill(head, -1);
+    }
+
+    /** Adds an edge and its residual twin; returns the edge id for {@link #flow(int)}. */
+    int addEdge(int from, int target, int capacity, long edgeCost) {
+        if (edgeCost < 0) throw new IllegalArgumentException("negative cost");
+        int id = edges;
+        link(from, target, capacity, edgeCost);
+        link(target, from, 0, -edgeCost);
+        return id;
+    }
+
+    /** Adds an uncapacitated edge whose k-th unit of flow (k &gt;= 1) costs {@code marginal(k)}. */
+    int addConvexEdge(int from, int target, LongUnaryOperator marginal) {
+        if (marginal.applyAsLong(1) < 0) throw new IllegalArgumentException("negative cost");
+        int id = addEdge(from, target, Integer.MAX_VALUE, 0);
+        convex[id >> 1] = marginal;
+        return id;
+    }
+
+    private void link(int from, int target, int capacity, long edgeCost) {
+        if (edges == to.length) {
+            int n = edges * 2;
+            next = Arrays.copyOf(next, n);
+            to = Arrays.copyOf(to, n);
+            cap = Arrays.copyOf(cap, n);
+            cost = Arrays.copyOf(cost, n);
+            convex = Arrays.copyOf(convex, n / 2);
+        }
+        to[edges] = target;
+        cap[edges] = capacity;
+        cost[edges] = edgeCost;
+        next[edges] = head[from];
+        head[from] = edges++;
+    }
+
+    /** Flow on the edge returned by {@link #addEdge} or {@link #addConvexEdge}. */
+    int flow(int edge) {
+        return cap[edge ^ 1];
+    }
+
+    /** Cost of sending one more unit through residual edge {@code e}. */
+    private long residualCost(int e) {
+        LongUnaryOperator marginal = convex[e >> 1];
+        if (marginal == null) return cost[e];
+        // forward: the next unit; backward: refunds the last unit sent
+        return (e & 1) == 0 ? marginal.applyAsLong(cap[e ^ 1] + 1L) : -marginal.applyAsLong(cap[e]);
+    }
+
+    /**
+     * Sends up to {@code maxFlow} units from {@code source} to {@code sink} at minimum total cost.
+     * @return units sent
+     */
+    int solve(int source, int sink, int maxFlow) {
+        long[] potential = new long[nodes];
+        long[] dist = new long[nodes];
+        int[] via = new int[nodes];
+        int sent = 0;
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        while (sent < maxFlow) {
+            Arrays.fill(dist, Long.MAX_VALUE);
+            Arrays.fill(via, -1);
+            dist[source] = 0;
+            queue.add(new long[]{0, source});
+            while (!queue.isEmpty()) {
+                long[] top = queue.poll();
+                int u = (int) top[1];
+                if (top[0] > dist[u]) continue;
+                for (int e = head[u]; e >= 0; e = next[e]) {
+                    if (cap[e] == 0) continue;
+                    int v = to[e];
+                    long d = dist[u] + residualCost(e) + potential[u] - potential[v];
+                    if (d < dist[v]) {
+                        dist[v] = d;
+                        via[v] = e;
+                        queue.add(new long[]{d, v});
+                    }
+                }
+            }
+            if (dist[sink] == Long.MAX_VALUE) break;
+            // capping at the sink's distance keeps reduced costs non-negative for nodes not reached this round
+            for (int v = 0; v < nodes; v++) potential[v] += Math.min(dist[v], dist[sink]);
+            int push = maxFlow - sent;
+            for (int v = sink; v != source; v = to[via[v] ^ 1]) {
+                // a convex edge's price changes after every unit
+                push = Math.min(push, convex[via[v] >> 1] != null ? 1 : cap[via[v]]);
+            }
+            for (int v = sink; v != source; v = to[via[v] ^ 1]) {
+                cap[via[v]] -= push;
+                cap[via[v] ^ 1] += push;
+            }
+            sent += push;
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,327 @@
+package com.gemini.backend.service;
+
+import com.gemini.backend.service.ActionPlan.Action;
+import com.gemini.backend.service.ActionPlan.Move;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Shared handling of model action plans for the CLI and the HTTP server: the prompt instruction, JSON clean-up,
+ * descriptions shown before confirmation, and applying a plan through {@link CalendarTool}.
+ */
+public final class PlanExecutor {
+
+    // stages of a model turn, recorded by both front ends
+    public static final Metrics.Histogram PROMPT_CHARS = Metrics.histogram("gemini_prompt_chars", Metrics.Unit.COUNT);
+    public static final Metrics.Histogram RESPONSE_CHARS = Metrics.histogram("gemini_response_chars", Metrics.Unit.COUNT);
+    public static final Metrics.Histogram MODEL_TIME = Metrics.timer("gemini_model_seconds");
+    public static final Metrics.Histogram FIRST_CHUNK_TIME = Metrics.timer("gemini_model_first_chunk_seconds");
+    public static final Metrics.Histogram PARSE_TIME = Metrics.timer("gemini_plan_parse_seconds");
+    public static final Metrics.Counter PARSE_FAILURES = Metrics.counter("gemini_plan_parse_failures_total");
+    public static final Metrics.Histogram APPLY_TIME = Metrics.timer("gemini_plan_apply_seconds");
+
+    private PlanExecutor() {
+    }
+
+    /** System instruction asking the model for a strict JSON action plan, relative to {@code today}. */
+    public static String instruction(LocalDate today) {
+        LocalDate weekStart = today.with(DayOfWeek.MONDAY);
+        LocalDate weekEnd = today.with(DayOfWeek.SUNDAY);
+        return String.join("\n",
+                "You are a calendar assistant. Convert the user's request into JSON only.",
+                "Today's date: " + today + ". Current week (ISO Monday-Sunday) range: " + weekStart + " to " + weekEnd + ".",
+                "Relevant calendar events are listed below, one per line as 'yyyy-MM-dd Day HH:mm-HH:mm | title'. Use them to avoid duplicates and allow updates.",
+                "Use the conversation context below to resolve pronouns and confirmations like 'yes', 'do that', 'move it', 'the previous one'.",
+                "If prior suggestions proposed a concrete time slot and the user confirms (e.g., 'yeah do that'), convert that suggestion into a concrete create_event action with a meaningful title.",
+                "If user says 'this week', choose a date within that range not in the past relative to today (prefer first available weekday).",
+                "Never schedule events before the current moment unless the user explicitly asks to backdate (keywords: 'past', 'backdate', 'retroactive', 'yesterday', 'last week'). If a requested time is earlier than now, shift to the next reasonable future slot on the same day or the next day.",
+                "Schema strictly:",
+                "{",
+                "  \"actions\": [",
+                "    { \"type\": \"create_event\", \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\", \"durationMinutes\": 60, \"recurring\": \"non-recurring|daily|weekly|monthly|yearly\" },",
+                "    { \"type\": \"update_event\", \"title\": \"...\", \"date\": \"oldDate\", \"time\": \"oldTime\", \"newDate\": \"yyyy-MM-dd\", \"newTime\": \"HH:mm\" },",
+                "    { \"type\": \"resize_event\", \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\", \"newDurationMinutes\": 240 },",
+                "    { \"type\": \"delete_event\", \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\" },",
+                "    { \"type\": \"auto_space\", \"minGapMinutes\": 60, \"fromDate\": \"yyyy-MM-dd\", \"toDate\": \"yyyy-MM-dd\" },",
+                "    { \"type\": \"bulk_update\", \"moves\": [ { \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\", \"newDate\": \"yyyy-MM-dd\", \"newTime\": \"HH:mm\" } ] }",
+                "    { \"type\": \"rebalance_week\", \"fromDate\": \"yyyy-MM-dd\", \"toDate\": \"yyyy-MM-dd\" },",
+                "    { \"type\": \"ask_clarification\", \"question\": \"...\" }",
+                "    { \"type\": \"respond\", \"message\": \"...\", \"includeSummary\": false }",
+                "  ],",
+                "  \"suggestions\": [ { \"note\": \"Human readable optional suggestion...\" } ]",
+                "}",
+                "Rules:",
+                "- Use title fields meaningfully (e.g., 'Dentist Appointment').",
+                "- For unspecified time choose 10:00 local time.",
+                "- make sure when scheduling events, give more priority to later time slots in the day and to days with less stuff scheduled",
+                "- When the user leaves the time open, pick from 'Suggested free slots' if listed; they are already ranked that way and free.",
+                "- Avoid creating duplicates (same title + start). Prefer update if user implies reschedule.",
+                "- When the user asks to change how long an event lasts, use resize_event with newDurationMinutes (e.g., 240 for 4 hours).",
+                "- For new events with specified duration, set durationMinutes on create_event (defaults to 60 if omitted).",
+                "- If the user asks to move multiple events, prefer a single 'bulk_update' action with a 'moves' array. Each move may change both date and time (cross-day moves allowed).",
+                "- If the user says phrases like 'free up <date>' or 'clear <date>' prefer rescheduling events off that date using bulk_update moves to future days instead of delete_event unless user explicitly says 'delete' or 'remove'.",
+                "- If the user's instruction is ambiguous (missing which event or target), use ask_clarification with a question instead of guessing.",
+                "- For direct questions (e.g., 'what does my week look like?', 'summarize', 'what's on <date>?'), include a 'respond' action with a friendly concise natural-language answer and set includeSummary=true if a summary of this week should follow.",
+                "- For daily recurring bedtime requests (e.g., 'add a daily bed time of 8pm', 'add bedtime at 8pm every day'), create a create_event with title 'Bed Time', time '20:00', date = today if 20:00 is in the future else tomorrow, recurring='daily', durationMinutes=60.",
+                "- Recognize synonyms: daily|every day|each day|nightly; bedtime|bed time|bed-time.",
+                "- For auto_space, omit fromDate/toDate to space everything from today on; set them to limit spacing to those days.",
+                "- If the user asks to spread events across the week, use 'rebalance_week'. Omit fromDate/toDate for the current week; set both to rebalance another or a longer period.",
+                "- When the user confirms a prior suggestion (e.g., 'yeah do that'), turn that suggestion into concrete actions (e.g., create_event).",
+                "- Return JSON only. No markdown, no prose.",
+                "- If no actions, still return {\"actions\":[],\"suggestions\":[]}.");
+    }
+
+    /** Strips code fences around the model's JSON. */
+    public static String sanitizeJson(String raw) {
+        String s = raw.trim();
+        // Strip code fences if present
+        if (s.startsWith("```")) {
+            int firstNewline = s.indexOf('\n');
+            if (firstNewline != -1) {
+                s = s.substring(firstNewline + 1);
+            }
+            if (s.endsWith("```")) {
+                s = s.substring(0, s.length() - 3);
+            }
+        }
+        return s.trim();
+    }
+
+    /** True when the request explicitly asks for past scheduling (backdate, yesterday, last week, ...). */
+    public static boolean allowsPast(String userRequest) {
+        if (userRequest == null) return false;
+        String ur = userRequest.toLowerCase();
+        String[] pastKeys = new String[]{" backdate", "retroactive", "in the past", "past", "yesterday", "last week", "last monday", "last tuesday", "last wednesday", "last thursday", "last friday", "last saturday", "last sunday"};
+        for (String k : pastKeys) { if (ur.contains(k)) return true; }
+        return false;
+    }
+
+    /** True if any action changes the calendar ('respond' and 'ask_clarification' do not). */
+    public static boolean mutates(List<Action> actions) {
+        if (actions == null) return false;
+        for (Action a : actions) {
+            if (a == null || a.type == null) continue;
+            switch (a.type) {
+                case "create_event":
+                case "update_event":
+                case "resize_event":
+                case "delete_event":
+                case "auto_space":
+                case "bulk_update":
+                case "rebalance_week":
+                    return true;
+                default:
+                    // non-mutating
+            }
+        }
+        return false;
+    }
+
+    /** One-line (bulk_update: multi-line) description of a planned action, as shown before confirmation. */
+    public static String describe(Action a) {
+        switch (a.type) {
+            case "create_event":
+                return "CREATE  title='" + (a.title == null ? "(none)" : a.title) +
+                        "' date=" + a.date + " time=" + a.time +
+                        (a.durationMinutes != null ? (" duration=" + a.durationMinutes + "m") : "") +
+                        " recurring=" + (a.recurring == null ? "non-recurring" : a.recurring);
+            case "update_event":
+                return "UPDATE  title='" + a.title + "' " + a.date + " " + a.time +
+                        " -> " + a.newDate + " " + a.newTime;
+            case "resize_event":
+                return "RESIZE  title='" + a.title + "' " + a.date + " " + a.time +
+                        " -> duration=" + (a.newDurationMinutes == null ? "(missing)" : a.newDurationMinutes + "m");
+            case "delete_event":
+                return "DELETE  title='" + a.title + "' " + a.date + " " + a.time;
+            case "auto_space":
+                return "AUTO_SPACE  minGapMinutes=" + (a.minGapMinutes == null ? "60" : a.minGapMinutes)
+                        + (a.fromDate != null || a.toDate != null ? " " + (a.fromDate == null ? "today" : a.fromDate) + ".." + (a.toDate == null ? "" : a.toDate) : "");
+            case "bulk_update":
+                int count = (a.moves == null ? 0 : a.moves.size());
+                StringBuilder sb = new StringBuilder("BULK_UPDATE  moves=" + count);
+                if (count > 0) {
+                    int j = 1;
+                    for (Move m : a.moves) {
+                        if (m == null) continue;
+                        sb.append("\n     - [").append(j++).append("] '").append(m.title).append("' ").append(m.date).append(" ")
+                                .append(m.time).append(" -> ").append(m.newDate).append(" ").append(m.newTime);
+                    }
+                }
+                return sb.toString();
+            case "rebalance_week":
+                return "REBALANCE_WEEK distribute events across days"
+                        + (a.fromDate != null && a.toDate != null ? " " + a.fromDate + ".." + a.toDate : "");
+            case "ask_clarification":
+                return "ASK_CLARIFICATION question='" + (a.question == null ? "(none)" : a.question) + "'";
+            case "respond":
+                return "RESPOND message='" + (a.message == null ? "" : a.message) + "'" + (Boolean.TRUE.equals(a.includeSummary) ? " includeSummary" : "");
+            default:
+                return "(unsupported) type='" + a.type + "'";
+        }
+    }
+
+    /** Names the fields an action is missing for its type, or returns null when it can be applied. */
+    public static String missingFields(Action a) {
+        if (a.type == null) return "type";
+        switch (a.type) {
+            case "create_event":
+                return a.date == null || a.time == null ? "date/time" : null;
+            case "update_event":
+                return a.title == null || a.date == null || a.time == null || a.newDate == null || a.newTime == null
+                        ? "title/date/time/newDate/newTime" : null;
+            case "resize_event":
+                return a.title == null || a.date == null || a.time == null || a.newDurationMinutes == null
+                        ? "title/date/time/newDurationMinutes" : null;
+            case "delete_event":
+                return a.title == null || a.date == null || a.time == null ? "title/date/time" : null;
+            case "bulk_update":
+                return a.moves == null || a.moves.isEmpty() ? "moves" : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Applies the actions of a confirmed plan in order, reporting skipped or informational actions to
+     * {@code log}. Call it inside {@link CalendarTool#inTransaction} so a failing action aborts the whole plan.
+     *
+     * @return number of applied changes
+     */
+    public static int apply(List<Action> actions, boolean allowPast, Consumer<String> log) throws Exception {
+        int applied = 0;
+        for (Action a : actions) {
+            if (a == null || a.type == null) continue;
+            try {
+                switch (a.type) {
+                    case "create_event":
+                        if (a.date != null && a.time != null) {
+                            // past guard
+                            try {
+                                LocalDateTime start = LocalDateTime.of(LocalDate.parse(a.date), LocalTime.parse(a.time));
+                                if (!allowPast && start.isBefore(LocalDateTime.now())) {
+                                    log.accept("Skipped create_event in the past (say 'backdate' to allow): " + a.title + " " + a.date + " " + a.time);
+                                    break;
+                                }
+                            } catch (Exception ignore) { /* if parsing fails, proceed */ }
+                            String recurring = (a.recurring == null || a.recurring.isBlank()) ? "non-recurring" : a.recurring;
+                            String title = (a.title == null || a.title.isBlank()) ? "Meeting" : a.title;
+                            if (a.durationMinutes != null && a.durationMinutes > 0) {
+                                CalendarTool.createCalendarEvent(a.date, a.time, recurring, title, a.durationMinutes);
+                            } else {
+                                CalendarTool.createCalendarEvent(a.date, a.time, recurring, title);
+                            }
+                            applied++;
+                        } else {
+                            log.accept("Skipped create_event missing date/time.");
+                        }
+                        break;
+                    case "update_event":
+                        if (a.title != null && a.date != null && a.time != null && a.newDate != null && a.newTime != null) {
+                            // past guard for new time
+                            try {
+                                LocalDateTime target = LocalDateTime.of(LocalDate.parse(a.newDate), LocalTime.parse(a.newTime));
+                                if (!allowPast && target.isBefore(LocalDateTime.now())) {
+                                    log.accept("Skipped update_event to past (say 'backdate' to allow): " + a.title + " -> " + a.newDate + " " + a.newTime);
+                                    break;
+                                }
+                            } catch (Exception ignore) { }
+                            boolean ok = CalendarTool.updateEventByTitleAndStart(a.title, a.date, a.time, a.newDate, a.newTime);
+                            if (ok) applied++; else log.accept("Update failed to match event: " + a.title);
+                        } else {
+                            log.accept("Skipped update_event missing fields.");
+                        }
+                        break;
+                    case "resize_event":
+                        if (a.title != null && a.date != null && a.time != null && a.newDurationMinutes != null) {
+                            boolean ok = CalendarTool.updateEventDuration(a.title, a.date, a.time, a.newDurationMinutes);
+                            if (ok) applied++; else log.accept("Resize failed to match event: " + a.title);
+                        } else {
+                            log.accept("Skipped resize_event missing fields.");
+                        }
+                        break;
+                    case "delete_event":
+                        if (a.title != null && a.date != null && a.time != null) {
+                            boolean ok = CalendarTool.deleteEventByTitleAndStart(a.title, a.date, a.time);
+                            if (ok) applied++; else log.accept("Delete failed to match event: " + a.title);
+                        } else {
+                            log.accept("Skipped delete_event missing fields.");
+                        }
+                        break;
+                    case "auto_space":
+                        int gap = (a.minGapMinutes == null || a.minGapMinutes <= 0) ? 60 : a.minGapMinutes;
+                        String spaceFrom = a.fromDate;
+                        // past days stay as they are unless the request asked for backdating
+                        if (!allowPast && a.toDate != null && LocalDate.parse(a.toDate).isBefore(LocalDate.now())) {
+                            log.accept("Skipped auto_space of past days (say 'backdate' to allow): " + a.fromDate + ".." + a.toDate);
+                            break;
+                        }
+                        if (!allowPast && spaceFrom != null && LocalDate.parse(spaceFrom).isBefore(LocalDate.now())) spaceFrom = null;
+                        int moved = CalendarTool.autoSpaceEvents(gap, spaceFrom, a.toDate);
+                        log.accept("Auto-space moved events: " + moved);
+                        if (moved > 0) applied += moved;
+                        break;
+                    case "bulk_update":
+                        if (a.moves != null && !a.moves.isEmpty()) {
+                            for (Move m : a.moves) {
+                                if (m == null) continue;
+                                if (m.title != null && m.date != null && m.time != null && m.newDate != null && m.newTime != null) {
+                                    // past guard for move target
+                                    try {
+                                        LocalDateTime target = LocalDateTime.of(LocalDate.parse(m.newDate), LocalTime.parse(m.newTime));
+                                        if (!allowPast && target.isBefore(LocalDateTime.now())) {
+                                            log.accept("Skipped bulk move to past (say 'backdate' to allow): " + m.title + " -> " + m.newDate + " " + m.newTime);
+                                            continue;
+                                        }
+                                    } catch (Exception ignore) { }
+                                    boolean ok = false;
+                                    try {
+                                        // try conflict-aware move first (supports cross-day)
+                                        ok = CalendarTool.updateEventWithConflictResolution(m.title, m.date, m.time, m.newDate, m.newTime);
+                                    } catch (Exception ex) {
+                                        // fall back below
+                                    }
+                                    if (!ok) {
+                                        ok = CalendarTool.updateEventByTitleAndStart(m.title, m.date, m.time, m.newDate, m.newTime);
+                                    }
+                                    if (ok) applied++; else log.accept("Bulk update failed for: " + m.title + " from " + m.date + " " + m.time + " -> " + m.newDate + " " + m.newTime);
+                                } else {
+                                    log.accept("Skipped bulk move due to missing fields.");
+                                }
+                            }
+                        } else {
+                            log.accept("No moves provided for bulk_update.");
+                        }
+                        break;
+                    case "rebalance_week":
+                        int shifted = a.fromDate != null && a.toDate != null
+                                ? CalendarTool.rebalance(a.fromDate, a.toDate) : CalendarTool.rebalanceWeek();
+                        log.accept("Rebalance moved events: " + shifted);
+                        if (shifted > 0) applied += shifted;
+                        break;
+                    case "ask_clarification":
+                        log.accept("Clarification needed: " + (a.question != null ? a.question : "(no question provided)"));
+                        break;
+                    case "respond":
+                        if (a.message != null && !a.message.isBlank()) {
+                            log.accept(a.message);
+                        }
+                        if (Boolean.TRUE.equals(a.includeSummary)) {
+                            log.accept("");
+                            log.accept(CalendarTool.summarizeWeek());
+                        }
+                        break;
+                    default:
+                        log.accept("Unsupported action type: " + a.type + " (skipped)");
+                }
+            } catch (Exception ex) {
+                throw new Exception("Action failed (" + a.type + "): " + ex.getMessage(), ex);
+            }
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,91 @@
+package com.gemini.backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses the day of every movable event for {@link CalendarTool#rebalance(String, String)} in one solve:
+ * minimizes the sum of squared day loads (equivalently their variance, as the total is fixed), then the
+ * number of moves, preferring earlier target days.
+ *
+ * Modelled as min-cost flow. Events on the same day with the same set of possible target days are
+ * interchangeable and form one class: source -&gt; class (capacity = its size) -&gt; each day its events may
+ * be on -&gt; sink. A day reaches the sink through a convex edge whose k-th unit costs the growth of the
+ * day's squared load ({@code 2*(load+k)-1}), so the minimum-cost flow is an optimal assignment. Within a
+ * class the latest-starting events are the ones moved, freeing evenings first.
+ */
+final class RebalancePlanner {
+
+    // the weights keep the objectives strictly ordered: any change in squared load (always even) outweighs
+    // all move costs together, and a move outweighs the target-day tie-break
+    private static final long LOAD_WEIGHT = 1L << 40;
+    private static final long MOVE_COST = 1L << 20;
+
+    private RebalancePlanner() {
+    }
+
+    /**
+     * @param fixedLoad   per day, events that count towards its load but cannot move
+     * @param currentDay  per movable event, the day it is on now
+     * @param allowedDays per movable event, the other days it may be moved to (ascending)
+     * @param rank        per movable event, 0 for the latest-starting event of its day, 1 for the one before...
+     * @return per movable event, the day it should be on
+     */
+    static int[] assign(int[] fixedLoad, int[] currentDay, int[][] allowedDays, int[] rank) {
+        int days = fixedLoad.length;
+        Map<List<Integer>, Integer> classIds = new HashMap<>();
+        List<List<Integer>> members = new ArrayList<>();
+        List<int[]> classDays = new ArrayList<>(); // own day first, then the allowed days
+        for (int i = 0; i < currentDay.length; i++) {
+            List<Integer> key = new ArrayList<>(allowedDays[i].length + 1);
+            key.add(currentDay[i]);
+            for (int d : allowedDays[i]) key.add(d);
+            Integer id = classIds.get(key);
+            if (id == null) {
+                id = members.size();
+                classIds.put(key, id);
+                members.add(new ArrayList<>());
+                int[] dayList = new int[key.size()];
+                for (int k = 0; k < dayList.length; k++) dayList[k] = key.get(k);
+                classDays.add(dayList);
+            }
+            members.get(id).add(i);
+        }
+
+        int classes = members.size();
+        int source = 0;
+        int sink = 1 + classes + days;
+        MinCostFlow flow = new MinCostFlow(sink + 1);
+        int[][] edge = new int[classes][];
+        for (int c = 0; c < classes; c++) {
+            int size = members.get(c).size();
+            int[] dayList = classDays.get(c);
+            flow.addEdge(source, 1 + c, size, 0);
+            edge[c] = new int[dayList.length];
+            for (int k = 0; k < dayList.length; k++) {
+                long cost = k == 0 ? 0 : MOVE_COST + Math.min(dayList[k], 1023);
+                edge[c][k] = flow.addEdge(1 + c, 1 + classes + dayList[k], size, cost);
+            }
+        }
+        for (int d = 0; d < days; d++) {
+            long fixed = fixedLoad[d];
+            flow.addConvexEdge(1 + classes + d, sink, k -> LOAD_WEIGHT * (2 * (fixed + k) - 1));
+        }
+        flow.solve(source, sink, currentDay.length);
+
+        int[] target = currentDay.clone();
+        for (int c = 0; c < classes; c++) {
+            Integer[] order = members.get(c).toArray(new Integer[0]);
+            Arrays.sort(order, (a, b) -> Integer.compare(rank[a], rank[b]));
+            int next = 0;
+            int[] dayList = classDays.get(c);
+            for (int k = 1; k < dayList.length; k++) {
+                for (int n = flow.flow(edge[c][k]); n > 0; n--) target[order[next++]] = dayList[k];
+            }
+        }
+        return target;
+    }
+}
@@ -0,0 +1,133 @@
+package com.gemini.backend.service;
+
+import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.parameter.Value;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Materializes the occurrences of recurring events for a requested window. Expansions are computed per
+ * fixed 28-day bucket and kept in an LRU cache keyed by event and bucket, so repeated day/week queries reuse
+ * earlier work instead of re-running the RRULE from DTSTART each time. A cached bucket is only reused for the
+ * exact {@link EventRecord} it was computed from; moving an event therefore yields a fresh expansion.
+ *
+ * DTSTART + RRULE are expanded, minus the occurrences in {@link EventRecord#exdates} (EXDATEs and the ones
+ * replaced by RECURRENCE-ID overrides, which are events of their own); RDATE is not supported, and the
+ * DTSTART occurrence itself is the stored event, so excluding it has no effect here. A single query expands at
+ * most two years. Timed events repeat in the wall-clock time of their DTSTART's zone
+ * ({@link EventRecord#zone()}), so a 09:00 Europe/Berlin event stays at 09:00 there across DST changes
+ * whatever the JVM's zone.
+ */
+final class RecurrenceExpander {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long BUCKET_MS = 28L * 24 * 60 * 60 * 1000;
+    /** Longest window expanded per query; wider requests are truncated at the end. */
+    private static final long MAX_WINDOW_MS = 2 * 366L * 24 * 60 * 60 * 1000;
+    private static final int MAX_BUCKETS = Integer.getInteger("calendar.recurrence.cacheBuckets", 4096);
+    private static final long[] NONE = new long[0];
+
+    private static final class Expansion {
+        final EventRecord rec;
+        final long[] starts; // ascending occurrence starts within the bucket
+
+        Expansion(EventRecord rec, long[] starts) {
+            this.rec = rec;
+            this.starts = starts;
+        }
+    }
+
+    private final Map<String, Expansion> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Expansion> eldest) {
+            return size() > MAX_BUCKETS;
+        }
+    };
+
+    /** Starts (ascending) of the occurrences of {@code rec} that overlap [fromMs, toMs). */
+    long[] occurrences(EventRecord rec, long fromMs, long toMs) {
+        if (!rec.isRecurring()) {
+            return rec.start < toMs && Math.max(rec.end, rec.start + 1) > fromMs ? new long[]{rec.start} : NONE;
+        }
+        long duration = Math.max(1, rec.duration());
+        long from = Math.max(fromMs - duration + 1, rec.start);
+        toMs = Math.min(toMs, from + MAX_WINDOW_MS);
+        if (from >= toMs) return NONE;
+        long[] out = NONE;
+        int n = 0;
+        for (long bucket = Math.floorDiv(from, BUCKET_MS), last = Math.floorDiv(toMs - 1, BUCKET_MS); bucket <= last; bucket++) {
+            for (long start : bucket(rec, bucket)) {
+                if (start < from || start >= toMs) continue;
+                if (n == out.length) out = Arrays.copyOf(out, Math.max(8, n * 2));
+                out[n++] = start;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    private long[] bucket(EventRecord rec, long bucket) {
+        String key = rec.uid + '|' + bucket;
+        Expansion cached = cache.get(key);
+        if (cached != null && cached.rec == rec) return cached.starts;
+        long[] starts = expand(rec, bucket * BUCKET_MS, (bucket + 1) * BUCKET_MS);
+        cache.put(key, new Expansion(rec, starts));
+        return starts;
+    }
+
+    private static long[] expand(EventRecord rec, long fromMs, long toMs) {
+        if (toMs <= rec.start) return NONE;
+        try {
+            Recur recur = new Recur(rec.rrule);
+            // expand over the zone's wall-clock times written as UTC (all-day dates as UTC midnights); the window
+            // gets a day of slack on each side for the offset, and the exact bounds apply to the mapped-back instants
+            ZoneId zone = rec.zone();
+            long seed = wallClock(rec.start, zone);
+            long periodStart = wallClock(fromMs - DAY_MS, zone);
+            long periodEnd = wallClock(toMs + DAY_MS, zone);
+            DateList dates = rec.allDay
+                    ? recur.getDates(new Date(seed), new Date(periodStart), new Date(periodEnd), Value.DATE)
+                    : recur.getDates(utc(seed), utc(periodStart), utc(periodEnd), Value.DATE_TIME);
+            long[] out = new long[dates.size()];
+            int n = 0;
+            for (Date d : dates) {
+                long t = instant(d.getTime(), zone);
+                if (t >= fromMs && t < toMs && !rec.excludes(t)) out[n++] = t;
+            }
+            out = Arrays.copyOf(out, n);
+            Arrays.sort(out);
+            return out;
+        } catch (Exception e) {
+            // unparseable rule: treat the event as a single occurrence
+            return rec.start >= fromMs && rec.start < toMs ? new long[]{rec.start} : NONE;
+        }
+    }
+
+    /** The wall-clock time of {@code ms} in {@code zone}, as the UTC millis with the same fields. */
+    private static long wallClock(long ms, ZoneId zone) {
+        return Instant.ofEpochMilli(ms).atZone(zone).toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static DateTime utc(long ms) {
+        DateTime t = new DateTime(ms);
+        t.setUtc(true);
+        return t;
+    }
+
+    /** Inverse of {@link #wallClock}; a wall-clock time skipped by a DST gap moves forward by the gap. */
+    private static long instant(long wallClockMs, ZoneId zone) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(wallClockMs), ZoneOffset.UTC).atZone(zone).toInstant().toEpochMilli();
+    }
+}
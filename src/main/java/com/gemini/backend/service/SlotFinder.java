@@ -0,0 +1,120 @@
+package com.gemini.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ranks free slots of one duration over a range of days, read straight off the {@link FreeBusyIndex} day
+ * bitmaps. The ranking follows the preference the model is given: lighter days first (fewest busy minutes)
+ * and, within a day, later times first. Every suggested slot counts towards its day's load for the ranking
+ * of the rest, so the list spreads over the light days instead of filling the lightest one; slots suggested
+ * for the same day never overlap.
+ *
+ * Candidates start on a grid of {@code stepMinutes} from local midnight and must fit inside the day's
+ * wall-clock window, which on a DST day covers one hour more or fewer of the bitmap. Each day keeps a cursor on its latest remaining candidate, found by jumping below the first busy
+ * minute instead of probing every grid step.
+ */
+final class SlotFinder {
+
+    /** One suggested slot. */
+    static final class Slot {
+        final long startMs;
+        final long endMs;
+        final int dayBusyMinutes; // busy minutes of the day, not counting other suggestions
+
+        Slot(long startMs, long endMs, int dayBusyMinutes) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.dayBusyMinutes = dayBusyMinutes;
+        }
+    }
+
+    private static final class DayCursor {
+        final FreeBusyIndex.Day day;
+        final int busyMinutes;
+        final int earliest;
+        int load;
+        int next; // latest remaining candidate start, minutes after midnight
+
+        DayCursor(FreeBusyIndex.Day day, int busyMinutes, int earliest, int next) {
+            this.day = day;
+            this.busyMinutes = busyMinutes;
+            this.earliest = earliest;
+            this.load = busyMinutes;
+            this.next = next;
+        }
+    }
+
+    private SlotFinder() {
+    }
+
+    /**
+     * @param firstDay     first epoch day to search
+     * @param lastDay      last epoch day to search (inclusive)
+     * @param windowFrom   earliest start, wall-clock minutes after midnight
+     * @param windowTo     latest end, wall-clock minutes after midnight
+     * @param notBeforeMs  no slot starts before this instant (now)
+     * @return up to {@code limit} slots, best first
+     */
+    static List<Slot> find(FreeBusyIndex index, long firstDay, long lastDay, int durationMinutes, int windowFrom,
+                           int windowTo, int stepMinutes, long notBeforeMs, int limit) {
+        PriorityQueue<DayCursor> queue = new PriorityQueue<>((a, b) -> a.load != b.load
+                ? Integer.compare(a.load, b.load)
+                : a.next != b.next ? Integer.compare(b.next, a.next) : Long.compare(a.day.epochDay, b.day.epochDay));
+        for (long epochDay = firstDay; epochDay <= lastDay; epochDay++) {
+            FreeBusyIndex.Day day = index.day(epochDay);
+            if (day.endMs <= notBeforeMs) continue;
+            int latestStart = floorToGrid(index.elapsedMinutes(day, windowTo) - durationMinutes, stepMinutes);
+            int from = index.elapsedMinutes(day, windowFrom);
+            if (day.startMs < notBeforeMs) from = Math.max(from, (int) ((notBeforeMs - day.startMs + 59_999) / 60_000));
+            int earliest = ceilToGrid(from, stepMinutes);
+            int next = latestFree(day.bits, earliest, latestStart, durationMinutes, stepMinutes);
+            if (next >= 0) queue.add(new DayCursor(day, busyMinutes(day), earliest, next));
+        }
+
+        List<Slot> out = new ArrayList<>(Math.min(limit, 64));
+        while (out.size() < limit && !queue.isEmpty()) {
+            DayCursor c = queue.poll();
+            long start = c.day.startMs + c.next * 60_000L;
+            out.add(new Slot(start, start + durationMinutes * 60_000L, c.busyMinutes));
+            c.load += durationMinutes;
+            c.next = latestFree(c.day.bits, c.earliest, floorToGrid(c.next - durationMinutes, stepMinutes),
+                    durationMinutes, stepMinutes);
+            if (c.next >= 0) queue.add(c);
+        }
+        return out;
+    }
+
+    /** Latest grid start in [earliest, latest] whose {@code duration} minutes are all free, or -1. */
+    private static int latestFree(long[] bits, int earliest, int latest, int duration, int step) {
+        int s = latest;
+        while (s >= earliest) {
+            int busy = FreeBusyIndex.nextSetBit(bits, s, s + duration);
+            if (busy < 0) return s;
+            // every start from busy - duration + 1 up to s covers that busy minute
+            s = floorToGrid(busy - duration, step);
+        }
+        return -1;
+    }
+
+    /** Busy minutes of the day, leaving out the padding past its end. */
+    private static int busyMinutes(FreeBusyIndex.Day day) {
+        int minutes = (int) Math.min(FreeBusyIndex.DAY_MINUTES, (day.endMs - day.startMs) / 60_000);
+        int busy = 0;
+        for (int m = FreeBusyIndex.nextSetBit(day.bits, 0, minutes); m >= 0; ) {
+            int free = Math.min(minutes, FreeBusyIndex.nextClearBit(day.bits, m));
+            busy += free - m;
+            m = FreeBusyIndex.nextSetBit(day.bits, free, minutes);
+        }
+        return busy;
+    }
+
+    private static int floorToGrid(int minute, int step) {
+        return Math.floorDiv(minute, step) * step;
+    }
+
+    private static int ceilToGrid(int minute, int step) {
+        return -Math.floorDiv(-minute, step) * step;
+    }
+}
@@ -0,0 +1,265 @@
+package com.gemini.backend.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Writes realistic synthetic ICS calendars for load and scale testing. Events are streamed one VEVENT at a
+ * time through a buffered writer, so memory use does not depend on the event count and multi-GB files are
+ * fine. Output is deterministic for a given configuration and seed.
+ *
+ * Configurable:
+ * <ul>
+ *   <li>event count and density (events per day, which sets how many days are covered; centred on today
+ *   unless a first day is given)</li>
+ *   <li>share of recurring events and the DAILY / WEEKLY / MONTHLY / YEARLY mix among them</li>
+ *   <li>share of all-day events</li>
+ *   <li>ATTENDEE lines per event and DESCRIPTION size in bytes (folded at 75 octets)</li>
+ *   <li>time zones: a share of timed events is written with {@code TZID=} from a zone list, the rest in UTC</li>
+ * </ul>
+ * Usage from code: {@code new SyntheticCalendarGenerator().events(100_000).eventsPerDay(20).write(file)}.
+ * From the command line: {@code java ... SyntheticCalendarGenerator out.ics events=100000 perDay=20 ...}
+ * with the same option names as the setters.
+ */
+public final class SyntheticCalendarGenerator {
+
+    private static final String CRLF = "\r\n";
+    private static final DateTimeFormatter UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter LOCAL = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String[] FREQUENCIES = {"DAILY", "WEEKLY", "MONTHLY", "YEARLY"};
+    private static final String[] WORDS = {
+            "Standup", "Review", "Planning", "Sync", "Lunch", "Dentist", "Gym", "Interview", "Retro", "Demo",
+            "Workshop", "Call", "Focus", "Kickoff", "Training", "Offsite", "Dinner", "Flight", "Report", "Budget"};
+
+    private long events = 1000;
+    private double eventsPerDay = 8;
+    private LocalDate firstDay;
+    private double recurringRatio = 0.05;
+    private double[] rruleMix = {0.2, 0.6, 0.15, 0.05};
+    private double allDayRatio = 0.03;
+    private int attendees;
+    private int descriptionBytes;
+    private String[] timeZones = {};
+    private double timeZoneRatio;
+    private long seed = 42;
+
+    /** Number of VEVENTs to write. */
+    public SyntheticCalendarGenerator events(long count) {
+        this.events = count;
+        return this;
+    }
+
+    /** Average events per day; determines how many days the calendar spans. */
+    public SyntheticCalendarGenerator eventsPerDay(double perDay) {
+        this.eventsPerDay = Math.max(0.001, perDay);
+        return this;
+    }
+
+    /** First day of the range; defaults to a range centred on today. */
+    public SyntheticCalendarGenerator firstDay(LocalDate day) {
+        this.firstDay = day;
+        return this;
+    }
+
+    /** Share (0..1) of events that carry an RRULE. */
+    public SyntheticCalendarGenerator recurringRatio(double ratio) {
+        this.recurringRatio = ratio;
+        return this;
+    }
+
+    /** Relative weights of FREQ=DAILY, WEEKLY, MONTHLY and YEARLY among recurring events. */
+    public SyntheticCalendarGenerator rruleMix(double daily, double weekly, double monthly, double yearly) {
+        this.rruleMix = new double[]{daily, weekly, monthly, yearly};
+        return this;
+    }
+
+    /** Share (0..1) of all-day events. */
+    public SyntheticCalendarGenerator allDayRatio(double ratio) {
+        this.allDayRatio = ratio;
+        return this;
+    }
+
+    /** ATTENDEE lines per event. */
+    public SyntheticCalendarGenerator attendees(int count) {
+        this.attendees = count;
+        return this;
+    }
+
+    /** Approximate DESCRIPTION length in bytes; 0 writes none. */
+    public SyntheticCalendarGenerator descriptionBytes(int bytes) {
+        this.descriptionBytes = bytes;
+        return this;
+    }
+
+    /** Writes {@code ratio} of the timed events with a TZID chosen from {@code zones} (IANA names). */
+    public SyntheticCalendarGenerator timeZones(double ratio, String... zones) {
+        for (String z : zones) ZoneId.of(z); // fail early on unknown zones
+        this.timeZones = zones;
+        this.timeZoneRatio = zones.length == 0 ? 0 : ratio;
+        return this;
+    }
+
+    public SyntheticCalendarGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Writes the calendar to {@code file} (replacing it) and returns the number of bytes written. */
+    public long write(File file) throws IOException {
+        if (file.getAbsoluteFile().getParentFile() != null) file.getAbsoluteFile().getParentFile().mkdirs();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            write(out);
+        }
+        return file.length();
+    }
+
+    /** Streams the calendar to {@code out}. */
+    public void write(Writer out) throws IOException {
+        Random random = new Random(seed);
+        long days = Math.max(1, (long) Math.ceil(events / eventsPerDay));
+        LocalDate first = firstDay != null ? firstDay : LocalDate.now().minusDays(days / 2);
+        Instant stamp = first.atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        out.write("BEGIN:VCALENDAR" + CRLF + "VERSION:2.0" + CRLF + "PRODID:-//AI Calendar//Synthetic//EN" + CRLF
+                + "CALSCALE:GREGORIAN" + CRLF);
+        for (String zone : timeZones) writeTimeZone(out, ZoneId.of(zone), stamp);
+
+        StringBuilder line = new StringBuilder(256);
+        for (long i = 0; i < events; i++) {
+            LocalDate day = first.plusDays(i * days / Math.max(1, events));
+            out.write("BEGIN:VEVENT" + CRLF);
+            out.write("UID:synthetic-" + seed + "-" + i + "@ai-calendar" + CRLF);
+            out.write("DTSTAMP:" + UTC.format(stamp.atOffset(ZoneOffset.UTC)) + CRLF);
+            out.write("SUMMARY:" + WORDS[random.nextInt(WORDS.length)] + " " + i + CRLF);
+
+            if (random.nextDouble() < allDayRatio) {
+                out.write("DTSTART;VALUE=DATE:" + DATE.format(day) + CRLF);
+                out.write("DTEND;VALUE=DATE:" + DATE.format(day.plusDays(1 + (random.nextInt(10) == 0 ? 1 : 0))) + CRLF);
+            } else {
+                // working hours on a 15-minute grid, 15 minutes to 3 hours long
+                LocalDateTime start = day.atTime(7, 0).plusMinutes(15L * random.nextInt(52));
+                LocalDateTime end = start.plusMinutes(15L * (1 + random.nextInt(12)));
+                if (random.nextDouble() < timeZoneRatio) {
+                    String tzid = timeZones[random.nextInt(timeZones.length)];
+                    out.write("DTSTART;TZID=" + tzid + ":" + LOCAL.format(start) + CRLF);
+                    out.write("DTEND;TZID=" + tzid + ":" + LOCAL.format(end) + CRLF);
+                } else {
+                    out.write("DTSTART:" + UTC.format(start.atOffset(ZoneOffset.UTC)) + CRLF);
+                    out.write("DTEND:" + UTC.format(end.atOffset(ZoneOffset.UTC)) + CRLF);
+                }
+            }
+            if (random.nextDouble() < recurringRatio) {
+                out.write("RRULE:FREQ=" + FREQUENCIES[pick(random, rruleMix)]
+                        + (random.nextInt(3) == 0 ? ";COUNT=" + (2 + random.nextInt(50)) : "") + CRLF);
+            }
+            for (int a = 0; a < attendees; a++) {
+                line.setLength(0);
+                line.append("ATTENDEE;CN=Guest ").append(a).append(";ROLE=REQ-PARTICIPANT;PARTSTAT=NEEDS-ACTION:mailto:guest")
+                        .append(a).append('.').append(i % 1000).append("@example.com");
+                writeFolded(out, line);
+            }
+            if (descriptionBytes > 0) {
+                line.setLength(0);
+                line.append("DESCRIPTION:");
+                while (line.length() < descriptionBytes + 12) {
+                    line.append(WORDS[random.nextInt(WORDS.length)].toLowerCase()).append(' ');
+                }
+                line.setLength(descriptionBytes + 12);
+                writeFolded(out, line);
+            }
+            out.write("END:VEVENT" + CRLF);
+        }
+        out.write("END:VCALENDAR" + CRLF);
+    }
+
+    private static int pick(Random random, double[] weights) {
+        double total = 0;
+        for (double w : weights) total += w;
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+    /**
+     * Minimal VTIMEZONE with the zone's standard offset. Readers that know IANA names (ical4j, this
+     * project's parser) resolve TZID directly and do not depend on it.
+     */
+    private static void writeTimeZone(Writer out, ZoneId zone, Instant at) throws IOException {
+        String offset = zone.getRules().getStandardOffset(at).getId().replace(":", "");
+        if (offset.equals("Z")) offset = "+0000";
+        out.write("BEGIN:VTIMEZONE" + CRLF + "TZID:" + zone.getId() + CRLF + "BEGIN:STANDARD" + CRLF
+                + "DTSTART:19700101T000000" + CRLF + "TZOFFSETFROM:" + offset + CRLF + "TZOFFSETTO:" + offset + CRLF
+                + "END:STANDARD" + CRLF + "END:VTIMEZONE" + CRLF);
+    }
+
+    /** Writes a content line folded at 75 characters (the payload here is ASCII, so also 75 octets). */
+    private static void writeFolded(Writer out, CharSequence line) throws IOException {
+        int len = line.length();
+        int pos = Math.min(75, len);
+        out.append(line, 0, pos).append(CRLF);
+        while (pos < len) {
+            int next = Math.min(pos + 74, len);
+            out.append(' ').append(line, pos, next).append(CRLF);
+            pos = next;
+        }
+    }
+
+    /** {@code SyntheticCalendarGenerator <out.ics> [events=N] [perDay=D] [recurring=R] [allDay=R] ...} */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: SyntheticCalendarGenerator <out.ics> [events=N] [perDay=D] [firstDay=yyyy-MM-dd]"
+                    + " [recurring=0.05] [rruleMix=daily,weekly,monthly,yearly] [allDay=0.03] [attendees=N]"
+                    + " [descriptionBytes=N] [tzRatio=R] [zones=Europe/Berlin,America/New_York] [seed=N]");
+            return;
+        }
+        SyntheticCalendarGenerator gen = new SyntheticCalendarGenerator();
+        double tzRatio = 0;
+        String[] zones = {};
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected name=value: " + args[i]);
+            String name = args[i].substring(0, eq);
+            String value = args[i].substring(eq + 1);
+            switch (name) {
+                case "events": gen.events(Long.parseLong(value)); break;
+                case "perDay": gen.eventsPerDay(Double.parseDouble(value)); break;
+                case "firstDay": gen.firstDay(LocalDate.parse(value)); break;
+                case "recurring": gen.recurringRatio(Double.parseDouble(value)); break;
+                case "rruleMix":
+                    String[] w = value.split(",");
+                    if (w.length != 4) throw new IllegalArgumentException("rruleMix needs four weights");
+                    gen.rruleMix(Double.parseDouble(w[0]), Double.parseDouble(w[1]), Double.parseDouble(w[2]),
+                            Double.parseDouble(w[3]));
+                    break;
+                case "allDay": gen.allDayRatio(Double.parseDouble(value)); break;
+                case "attendees": gen.attendees(Integer.parseInt(value)); break;
+                case "descriptionBytes": gen.descriptionBytes(Integer.parseInt(value)); break;
+                case "tzRatio": tzRatio = Double.parseDouble(value); break;
+                case "zones": zones = value.split(","); break;
+                case "seed": gen.seed(Long.parseLong(value)); break;
+                default: throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        gen.timeZones(tzRatio, zones);
+        long start = System.nanoTime();
+        long bytes = gen.write(new File(args[0]));
+        System.out.printf("Wrote %s: %,d bytes in %d ms%n", args[0], bytes, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -1,16 +1,19 @@
 package com.gemini.cli;
 
+import com.gemini.backend.service.ActionPlan;
+import com.gemini.backend.service.ActionPlan.Action;
+import com.gemini.backend.service.ActionPlan.Suggestion;
 import com.gemini.backend.service.CalendarTool;
+import com.gemini.backend.service.Metrics;
+import com.gemini.backend.service.PlanExecutor;
 import com.google.genai.Client;
+import com.google.genai.ResponseStream;
 import com.google.genai.types.GenerateContentResponse;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.List;
 import java.util.Scanner;
 
 public class GenerateTextFromTextInput {
@@ -21,57 +24,36 @@ public class GenerateTextFromTextInput {
         return input.nextLine();
     }
 
-    // POJOs for parsing Gemini's JSON output
-    static class ActionPlan {
-        List<Action> actions;
-        List<Suggestion> suggestions; // model may propose optional improvements
-        List<Clarification> clarifications; // model may ask for user input before applying changes
-    }
-    static class Action {
-        String type;      // e.g., "create_event"
-        String date;      // yyyy-MM-dd
-        String time;      // HH:mm
-        String recurring; // non-recurring|daily|weekly|monthly|yearly
-        String title;     // optional title for create/update/delete
-        Integer durationMinutes; // optional for create_event
-        // for update
-        String newDate;
-        String newTime;
-        Integer newDurationMinutes; // for resize_event
-        Integer minGapMinutes; // for auto spacing
-        List<Move> moves; // for bulk updates
-    String question; // for ask_clarification
-        String message; // for respond
-        Boolean includeSummary; // for respond
-    }
-    static class Move {
-        String title;
-        String date;
-        String time;
-        String newDate;
-        String newTime;
-    }
-    static class Suggestion {
-        String note;
-    }
-    static class Clarification {
-        String question;
+
+    /** Prints action {@code number} of a plan as the stream delivers it. */
+    private static void printStreamed(Action a, int number) {
+        if (number == 1) System.out.println("Planned changes:");
+        String missing = PlanExecutor.missingFields(a);
+        System.out.println(" " + number + ". " + PlanExecutor.describe(a)
+                + (missing != null ? "   [incomplete: missing " + missing + "]" : ""));
     }
-    // (Removed stray closing brace)
 
-    private static String sanitizeJson(String raw) {
-        String s = raw.trim();
-        // Strip code fences if present
-        if (s.startsWith("```")) {
-            int firstNewline = s.indexOf('\n');
-            if (firstNewline != -1) {
-                s = s.substring(firstNewline + 1);
-            }
-            if (s.endsWith("```")) {
-                s = s.substring(0, s.length() - 3);
+    /**
+     * Streams the model response into {@code reader}, which prints each action of the plan as soon as its JSON
+     * object is complete.
+     *
+     * @return the full response text
+     */
+    private static String streamPlan(Client client, String prompt, IncrementalActionReader reader) {
+        StringBuilder raw = new StringBuilder();
+        long t0 = System.nanoTime();
+        try (ResponseStream<GenerateContentResponse> stream =
+                     client.models.generateContentStream("gemini-2.5-flash", prompt, null)) {
+            for (GenerateContentResponse chunk : stream) {
+                String text = chunk.text();
+                if (text == null) continue;
+                if (raw.length() == 0) PlanExecutor.FIRST_CHUNK_TIME.recordSince(t0);
+                raw.append(text);
+                reader.feed(text);
             }
         }
-        return s.trim();
+        PlanExecutor.MODEL_TIME.recordSince(t0);
+        return raw.toString();
     }
 
     public static void main(String[] args) {
@@ -86,6 +68,9 @@ public class GenerateTextFromTextInput {
         System.out.println("Type 'help' for commands. The assistant will keep running until you type 'exit' or 'quit'.\n");
 
     Gson gson = new Gson();
+    PlanCache planCache = new PlanCache();
+    // stream responses and show actions as they arrive; -Dgemini.stream=false or 'stream off' restores blocking calls
+    boolean streaming = !"false".equalsIgnoreCase(System.getProperty("gemini.stream", "true"));
     java.util.Deque<String> convo = new java.util.ArrayDeque<>(); // simple rolling conversation context
         while (true) {
             // Ask the user how we can help organize the calendar
@@ -102,70 +87,48 @@ public class GenerateTextFromTextInput {
                 System.out.println("Bye!");
                 break;
             }
+            if (cmd.equals("stream on") || cmd.equals("stream off")) {
+                streaming = cmd.endsWith("on");
+                System.out.println("Streaming " + (streaming ? "enabled" : "disabled") + ".\n");
+                continue;
+            }
+            if (cmd.equals("stats")) {
+                System.out.println(Metrics.report());
+                continue;
+            }
             if (cmd.equals("help")) {
-                System.out.println("Commands: summary | help | exit\n" +
+                System.out.println("Commands: summary [today|week|all|<from> <to>] | stats | stream on|off | help | exit\n" +
                         "Or describe changes like: 'Move the kickoff meeting to tomorrow 10:30'\n");
                 continue;
             }
+            if (cmd.startsWith("summary ")) {
+                String[] range = cmd.substring(8).trim().split("\\s+");
+                if (range.length == 2) {
+                    System.out.println(CalendarTool.summarizeRange(range[0], range[1]));
+                } else if (range[0].equals("all")) {
+                    System.out.println(CalendarTool.summarizeCalendar());
+                } else if (range[0].equals("today")) {
+                    System.out.println(CalendarTool.summarizeToday());
+                } else {
+                    System.out.println(CalendarTool.summarizeWeek());
+                }
+                continue;
+            }
             if (cmd.equals("summary") || cmd.contains("summarize") || cmd.contains("summurize") || cmd.contains("what does my week") || cmd.contains("week look like") || cmd.contains("what is my week")) {
-                System.out.println(CalendarTool.summarizeCalendar());
+                System.out.println(CalendarTool.summarizeWeek());
                 continue;
             }
 
             LocalDate today = LocalDate.now();
-            LocalDate weekStart = today.with(DayOfWeek.MONDAY);
-            LocalDate weekEnd = today.with(DayOfWeek.SUNDAY);
 
-        // Instruct Gemini to translate the user's request into a strict JSON action plan
-    String instruction = String.join("\n",
-                    "You are a calendar assistant. Convert the user's request into JSON only.",
-                    "Today's date: " + today + ". Current week (ISO Monday-Sunday) range: " + weekStart + " to " + weekEnd + ".",
-                    "Existing calendar ICS content is provided below. Use it to avoid duplicates and allow updates.",
-            "Use the conversation context below to resolve pronouns and confirmations like 'yes', 'do that', 'move it', 'the previous one'.",
-            "If prior suggestions proposed a concrete time slot and the user confirms (e.g., 'yeah do that'), convert that suggestion into a concrete create_event action with a meaningful title.",
-                    "If user says 'this week', choose a date within that range not in the past relative to today (prefer first available weekday).",
-            "Never schedule events before the current moment unless the user explicitly asks to backdate (keywords: 'past', 'backdate', 'retroactive', 'yesterday', 'last week'). If a requested time is earlier than now, shift to the next reasonable future slot on the same day or the next day.",
-                    "Schema strictly:",
-                    "{",
-                    "  \"actions\": [",
-            "    { \"type\": \"create_event\", \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\", \"durationMinutes\": 60, \"recurring\": \"non-recurring|daily|weekly|monthly|yearly\" },",
-                    "    { \"type\": \"update_event\", \"title\": \"...\", \"date\": \"oldDate\", \"time\": \"oldTime\", \"newDate\": \"yyyy-MM-dd\", \"newTime\": \"HH:mm\" },",
-            "    { \"type\": \"resize_event\", \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\", \"newDurationMinutes\": 240 },",
-                    "    { \"type\": \"delete_event\", \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\" },",
-                    "    { \"type\": \"auto_space\", \"minGapMinutes\": 60 },",
-                    "    { \"type\": \"bulk_update\", \"moves\": [ { \"title\": \"...\", \"date\": \"yyyy-MM-dd\", \"time\": \"HH:mm\", \"newDate\": \"yyyy-MM-dd\", \"newTime\": \"HH:mm\" } ] }",
-            "    { \"type\": \"rebalance_week\" },",
-                    "    { \"type\": \"ask_clarification\", \"question\": \"...\" }",
-        "    { \"type\": \"respond\", \"message\": \"...\", \"includeSummary\": false }",
-                    "  ],",
-                    "  \"suggestions\": [ { \"note\": \"Human readable optional suggestion...\" } ]",
-                    "}",
-                    "Rules:",
-                    "- Use title fields meaningfully (e.g., 'Dentist Appointment').",
-                    "- For unspecified time choose 10:00 local time.",
-                    "- make sure when scheduling events, give more priority to later time slots in the day and to days with less stuff scheduled",
-                    "- Avoid creating duplicates (same title + start). Prefer update if user implies reschedule.",
-            "- When the user asks to change how long an event lasts, use resize_event with newDurationMinutes (e.g., 240 for 4 hours).",
-            "- For new events with specified duration, set durationMinutes on create_event (defaults to 60 if omitted).",
-        "- If the user asks to move multiple events, prefer a single 'bulk_update' action with a 'moves' array. Each move may change both date and time (cross-day moves allowed).",
-        "- If the user says phrases like 'free up <date>' or 'clear <date>' prefer rescheduling events off that date using bulk_update moves to future days instead of delete_event unless user explicitly says 'delete' or 'remove'.",
-        "- If the user's instruction is ambiguous (missing which event or target), use ask_clarification with a question instead of guessing.",
-        "- For direct questions (e.g., 'what does my week look like?', 'summarize', 'what's on <date>?'), include a 'respond' action with a friendly concise natural-language answer and set includeSummary=true if a full calendar summary should follow.",
-        "- For daily recurring bedtime requests (e.g., 'add a daily bed time of 8pm', 'add bedtime at 8pm every day'), create a create_event with title 'Bed Time', time '20:00', date = today if 20:00 is in the future else tomorrow, recurring='daily', durationMinutes=60.",
-        "- Recognize synonyms: daily|every day|each day|nightly; bedtime|bed time|bed-time.",
-                    "- If the user asks to spread events across the week, use 'rebalance_week'.",
-            "- When the user confirms a prior suggestion (e.g., 'yeah do that'), turn that suggestion into concrete actions (e.g., create_event).",
-                    "- Return JSON only. No markdown, no prose.",
-                    "- If no actions, still return {\"actions\":[],\"suggestions\":[]}.");
+            String instruction = PlanExecutor.instruction(today);
 
-            String existingCalendar = CalendarTool.readCalendarContent();
+            // simple single-event commands are parsed locally and never reach the model
+            ActionPlan localPlan = LocalIntentParser.parse(userRequest, LocalDateTime.now());
+            String existingCalendar = localPlan == null ? CalendarTool.promptContext(userRequest) : "";
+            String freeSlots = localPlan == null ? CalendarTool.freeSlotsContext() : "";
             // Determine if user explicitly allows past scheduling
-            boolean allowPast = false;
-            if (userRequest != null) {
-                String ur = userRequest.toLowerCase();
-                String[] pastKeys = new String[]{" backdate", "retroactive", "in the past", "past", "yesterday", "last week", "last monday", "last tuesday", "last wednesday", "last thursday", "last friday", "last saturday", "last sunday"};
-                for (String k : pastKeys) { if (ur.contains(k)) { allowPast = true; break; } }
-            }
+            boolean allowPast = PlanExecutor.allowsPast(userRequest);
         // Build recent conversation context (last ~6 lines)
         StringBuilder ctx = new StringBuilder();
         if (!convo.isEmpty()) {
@@ -175,91 +138,67 @@ public class GenerateTextFromTextInput {
         while (it.hasNext() && c < 6) { ctx.append(it.next()).append('\n'); c++; }
         }
 
-        String prompt = instruction + "\n\nExisting calendar ICS:\n" + existingCalendar +
-            "\n\n" + ctx.toString() +
+        String prompt = instruction + "\n\nRelevant calendar events:\n" + existingCalendar +
+            "\n\n" + (freeSlots.isEmpty() ? "" : freeSlots + "\n") + ctx.toString() +
             "User request:\n" + userRequest;
 
-            GenerateContentResponse response = client.models.generateContent(
-                    "gemini-2.5-flash",
-                    prompt,
-                    null);
-
-            String raw = response.text();
-            String json = sanitizeJson(raw);
+            // identical requests against an unchanged calendar reuse the earlier plan
+            long calendarVersion = -1;
+            try {
+                calendarVersion = CalendarTool.calendarVersion();
+            } catch (Exception ignore) { }
+            String cacheKey = calendarVersion < 0 ? null : planCache.key(userRequest, calendarVersion, today, ctx);
+            PlanCache.Entry cached = planCache.get(cacheKey, calendarVersion);
 
+            String raw;
+            IncrementalActionReader reader = new IncrementalActionReader(gson, GenerateTextFromTextInput::printStreamed);
+            if (localPlan != null) {
+                System.out.println("(understood locally; no model call needed)");
+                Metrics.counter("gemini_plans_total{source=\"local\"}").increment();
+                raw = gson.toJson(localPlan);
+            } else if (cached != null) {
+                System.out.println("(reusing plan from an identical earlier request)");
+                Metrics.counter("gemini_plans_total{source=\"cache\"}").increment();
+                raw = cached.raw;
+            } else {
+                Metrics.counter("gemini_plans_total{source=\"model\"}").increment();
+                PlanExecutor.PROMPT_CHARS.record(prompt.length());
+                if (streaming) {
+                    raw = streamPlan(client, prompt, reader);
+                } else {
+                    long t0 = System.nanoTime();
+                    GenerateContentResponse response = client.models.generateContent(
+                            "gemini-2.5-flash",
+                            prompt,
+                            null);
+                    PlanExecutor.MODEL_TIME.recordSince(t0);
+                    raw = response.text();
+                }
+                if (raw != null) PlanExecutor.RESPONSE_CHARS.record(raw.length());
+            }
             try {
-                ActionPlan plan = gson.fromJson(json, ActionPlan.class);
+                if (raw == null) throw new JsonSyntaxException("Model returned no text");
+                String json = PlanExecutor.sanitizeJson(raw);
+                long parseStart = System.nanoTime();
+                ActionPlan plan = cached != null ? cached.plan : gson.fromJson(json, ActionPlan.class);
+                if (cached == null) PlanExecutor.PARSE_TIME.recordSince(parseStart);
                 int applied = 0;
+                boolean completed = false;
 
                 // Show plan and confirm before applying
                 boolean hasActions = plan != null && plan.actions != null && !plan.actions.isEmpty();
-                boolean requiresConfirm = false;
+                boolean requiresConfirm = PlanExecutor.mutates(plan == null ? null : plan.actions);
                 if (hasActions) {
-                    // Determine if any action mutates state; 'respond' and 'ask_clarification' do not
+                    // already printed while streaming unless the incremental reader missed some
+                    int shown = 0;
                     for (Action a : plan.actions) {
-                        if (a == null || a.type == null) continue;
-                        switch (a.type) {
-                            case "create_event":
-                            case "update_event":
-                            case "resize_event":
-                            case "delete_event":
-                            case "auto_space":
-                            case "bulk_update":
-                            case "rebalance_week":
-                                requiresConfirm = true;
-                                break;
-                            default:
-                                // non-mutating, no confirm required
-                        }
-                        if (requiresConfirm) break;
+                        if (IncrementalActionReader.shows(a)) shown++;
                     }
-                    System.out.println("Planned changes:");
-                    int idx = 1;
-                    for (Action a : plan.actions) {
-                        if (a == null || a.type == null) continue;
-                        switch (a.type) {
-                            case "create_event":
-                                System.out.println(" " + (idx++) + ". CREATE  title='" + (a.title == null ? "(none)" : a.title) +
-                                        "' date=" + a.date + " time=" + a.time +
-                                        (a.durationMinutes != null ? (" duration=" + a.durationMinutes + "m") : "") +
-                                        " recurring=" + (a.recurring == null ? "non-recurring" : a.recurring));
-                                break;
-                            case "update_event":
-                                System.out.println(" " + (idx++) + ". UPDATE  title='" + a.title + "' " + a.date + " " + a.time +
-                                        " -> " + a.newDate + " " + a.newTime);
-                                break;
-                            case "resize_event":
-                                System.out.println(" " + (idx++) + ". RESIZE  title='" + a.title + "' " + a.date + " " + a.time +
-                                        " -> duration=" + (a.newDurationMinutes == null ? "(missing)" : a.newDurationMinutes + "m"));
-                                break;
-                            case "delete_event":
-                                System.out.println(" " + (idx++) + ". DELETE  title='" + a.title + "' " + a.date + " " + a.time);
-                                break;
-                            case "auto_space":
-                                System.out.println(" " + (idx++) + ". AUTO_SPACE  minGapMinutes=" + (a.minGapMinutes == null ? "60" : a.minGapMinutes));
-                                break;
-                            case "bulk_update":
-                                int count = (a.moves == null ? 0 : a.moves.size());
-                                System.out.println(" " + (idx++) + ". BULK_UPDATE  moves=" + count);
-                                if (count > 0) {
-                                    int j = 1;
-                                    for (Move m : a.moves) {
-                                        if (m == null) continue;
-                                        System.out.println("     - [" + (j++) + "] '" + m.title + "' " + m.date + " " + m.time + " -> " + m.newDate + " " + m.newTime);
-                                    }
-                                }
-                                break;
-                            case "rebalance_week":
-                                System.out.println(" " + (idx++) + ". REBALANCE_WEEK distribute events across days");
-                                break;
-                            case "ask_clarification":
-                                System.out.println(" " + (idx++) + ". ASK_CLARIFICATION question='" + (a.question == null ? "(none)" : a.question) + "'");
-                                break;
-                            case "respond":
-                                System.out.println(" " + (idx++) + ". RESPOND message='" + (a.message == null ? "" : a.message) + "'" + (Boolean.TRUE.equals(a.includeSummary) ? " includeSummary" : ""));
-                                break;
-                            default:
-                                System.out.println(" " + (idx++) + ". (unsupported) type='" + a.type + "'");
+                    if (reader.emitted() != shown) {
+                        System.out.println("Planned changes:");
+                        int idx = 1;
+                        for (Action a : plan.actions) {
+                            if (IncrementalActionReader.shows(a)) System.out.println(" " + (idx++) + ". " + PlanExecutor.describe(a));
                         }
                     }
                     if (requiresConfirm) {
@@ -272,131 +211,20 @@ public class GenerateTextFromTextInput {
                 }
 
                 if (hasActions) {
-                    for (Action a : plan.actions) {
-                        if (a == null || a.type == null) continue;
-                        try {
-                            switch (a.type) {
-                                case "create_event":
-                                    if (a.date != null && a.time != null) {
-                                        // past guard
-                                        try {
-                                            LocalDateTime start = LocalDateTime.of(LocalDate.parse(a.date), LocalTime.parse(a.time));
-                                            if (!allowPast && start.isBefore(LocalDateTime.now())) {
-                                                System.out.println("Skipped create_event in the past (say 'backdate' to allow): " + a.title + " " + a.date + " " + a.time);
-                                                break;
-                                            }
-                                        } catch (Exception ignore) { /* if parsing fails, proceed */ }
-                                        String recurring = (a.recurring == null || a.recurring.isBlank()) ? "non-recurring" : a.recurring;
-                                        String title = (a.title == null || a.title.isBlank()) ? "Meeting" : a.title;
-                                        if (a.durationMinutes != null && a.durationMinutes > 0) {
-                                            CalendarTool.createCalendarEvent(a.date, a.time, recurring, title, a.durationMinutes);
-                                        } else {
-                                            CalendarTool.createCalendarEvent(a.date, a.time, recurring, title);
-                                        }
-                                        applied++;
-                                    } else {
-                                        System.out.println("Skipped create_event missing date/time.");
-                                    }
-                                    break;
-                                case "update_event":
-                                    if (a.title != null && a.date != null && a.time != null && a.newDate != null && a.newTime != null) {
-                                        // past guard for new time
-                                        try {
-                                            LocalDateTime target = LocalDateTime.of(LocalDate.parse(a.newDate), LocalTime.parse(a.newTime));
-                                            if (!allowPast && target.isBefore(LocalDateTime.now())) {
-                                                System.out.println("Skipped update_event to past (say 'backdate' to allow): " + a.title + " -> " + a.newDate + " " + a.newTime);
-                                                break;
-                                            }
-                                        } catch (Exception ignore) { }
-                                        boolean ok = CalendarTool.updateEventByTitleAndStart(a.title, a.date, a.time, a.newDate, a.newTime);
-                                        if (ok) applied++; else System.out.println("Update failed to match event: " + a.title);
-                                    } else {
-                                        System.out.println("Skipped update_event missing fields.");
-                                    }
-                                    break;
-                                case "resize_event":
-                                    if (a.title != null && a.date != null && a.time != null && a.newDurationMinutes != null) {
-                                        boolean ok = CalendarTool.updateEventDuration(a.title, a.date, a.time, a.newDurationMinutes);
-                                        if (ok) applied++; else System.out.println("Resize failed to match event: " + a.title);
-                                    } else {
-                                        System.out.println("Skipped resize_event missing fields.");
-                                    }
-                                    break;
-                                case "delete_event":
-                                    if (a.title != null && a.date != null && a.time != null) {
-                                        boolean ok = CalendarTool.deleteEventByTitleAndStart(a.title, a.date, a.time);
-                                        if (ok) applied++; else System.out.println("Delete failed to match event: " + a.title);
-                                    } else {
-                                        System.out.println("Skipped delete_event missing fields.");
-                                    }
-                                    break;
-                                case "auto_space":
-                                    int gap = (a.minGapMinutes == null || a.minGapMinutes <= 0) ? 60 : a.minGapMinutes;
-                                    int moved = CalendarTool.autoSpaceEvents(gap);
-                                    System.out.println("Auto-space moved events: " + moved);
-                                    if (moved > 0) applied += moved;
-                                    break;
-                                case "bulk_update":
-                                    if (a.moves != null && !a.moves.isEmpty()) {
-                                        for (Move m : a.moves) {
-                                            if (m == null) continue;
-                                            if (m.title != null && m.date != null && m.time != null && m.newDate != null && m.newTime != null) {
-                                                // past guard for move target
-                                                try {
-                                                    LocalDateTime target = LocalDateTime.of(LocalDate.parse(m.newDate), LocalTime.parse(m.newTime));
-                                                    if (!allowPast && target.isBefore(LocalDateTime.now())) {
-                                                        System.out.println("Skipped bulk move to past (say 'backdate' to allow): " + m.title + " -> " + m.newDate + " " + m.newTime);
-                                                        continue;
-                                                    }
-                                                } catch (Exception ignore) { }
-                                                boolean ok = false;
-                                                try {
-                                                    // try conflict-aware move first (supports cross-day)
-                                                    ok = CalendarTool.updateEventWithConflictResolution(m.title, m.date, m.time, m.newDate, m.newTime);
-                                                } catch (Exception ex) {
-                                                    // fall back below
-                                                }
-                                                if (!ok) {
-                                                    ok = CalendarTool.updateEventByTitleAndStart(m.title, m.date, m.time, m.newDate, m.newTime);
-                                                }
-                                                if (ok) applied++; else System.out.println("Bulk update failed for: " + m.title + " from " + m.date + " " + m.time + " -> " + m.newDate + " " + m.newTime);
-                                            } else {
-                                                System.out.println("Skipped bulk move due to missing fields.");
-                                            }
-                                        }
-                                    } else {
-                                        System.out.println("No moves provided for bulk_update.");
-                                    }
-                                    break;
-                                case "rebalance_week":
-                                    try {
-                                        int shifted = CalendarTool.rebalanceWeek();
-                                        System.out.println("Rebalance moved events: " + shifted);
-                                        if (shifted > 0) applied += shifted;
-                                    } catch (Exception ex) {
-                                        System.out.println("Rebalance failed: " + ex.getMessage());
-                                    }
-                                    break;
-                                case "ask_clarification":
-                                    System.out.println("Clarification needed: " + (a.question != null ? a.question : "(no question provided)"));
-                                    break;
-                                case "respond":
-                                    if (a.message != null && !a.message.isBlank()) {
-                                        System.out.println(a.message);
-                                    }
-                                    if (Boolean.TRUE.equals(a.includeSummary)) {
-                                        System.out.println();
-                                        System.out.println(CalendarTool.summarizeCalendar());
-                                    }
-                                    break;
-                                default:
-                                    System.out.println("Unsupported action type: " + a.type + " (skipped)");
-                            }
-                        } catch (Exception ex) {
-                            System.out.println("Action failed (" + a.type + "): " + ex.getMessage());
-                        }
+                    // apply the whole plan against one in-memory calendar and persist it once, all-or-nothing
+                    final boolean allowPastFinal = allowPast;
+                    long applyStart = System.nanoTime();
+                    try {
+                        applied = CalendarTool.inTransaction(() -> PlanExecutor.apply(plan.actions, allowPastFinal, System.out::println));
+                        completed = true;
+                    } catch (Exception ex) {
+                        System.out.println(ex.getMessage());
+                        System.out.println("Plan aborted; no changes were applied.");
                     }
+                    PlanExecutor.APPLY_TIME.recordSince(applyStart);
                 }
+                // only a plan that went through is worth repeating; a declined or failed one must be asked again
+                if (completed && cached == null && localPlan == null) planCache.put(cacheKey, calendarVersion, raw, plan);
 
                 System.out.println("Applied actions: " + applied);
                 if (applied == 0 && (plan == null || plan.actions == null || plan.actions.isEmpty())) {
@@ -405,7 +233,7 @@ public class GenerateTextFromTextInput {
                 // Show summary only if something changed
                 if (applied > 0) {
                     System.out.print("\u001b[2J\u001b[H"); // clear
-                    System.out.println(CalendarTool.summarizeCalendar());
+                    System.out.println(CalendarTool.summarizeWeek());
                 }
                 if (plan != null && plan.suggestions != null && !plan.suggestions.isEmpty()) {
                     System.out.println("Suggestions:");
@@ -444,6 +272,7 @@ public class GenerateTextFromTextInput {
                 convo.addLast(assistantNote.toString());
                 while (convo.size() > 12) convo.removeFirst();
             } catch (JsonSyntaxException jse) {
+                PlanExecutor.PARSE_FAILURES.increment();
                 System.out.println("Couldn't parse model output as JSON. Raw output:\n" + raw);
                 convo.addLast("User: " + userRequest);
                 convo.addLast("Assistant: parse error on model output");
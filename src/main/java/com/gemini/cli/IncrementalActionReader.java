@@ -0,0 +1,108 @@
+package com.gemini.cli;
+
+import com.gemini.backend.service.ActionPlan;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Incremental scanner over a streamed action-plan JSON document. Text is fed chunk by chunk as the model
+ * produces it; every object that closes directly inside the top-level {@code "actions"} array is decoded as
+ * an {@link ActionPlan.Action} and handed to the listener right away, long before the rest
+ * of the plan has arrived, together with its 1-based number. Only actions that {@link #shows} are handed on and
+ * counted. Anything before the first '{' (such as a code fence) is ignored.
+ *
+ * The scanner only tracks nesting and string state; the complete text is still parsed in full afterwards,
+ * so a malformed document is reported there.
+ */
+final class IncrementalActionReader {
+
+    private final Gson gson;
+    private final ObjIntConsumer<ActionPlan.Action> listener;
+    private final StringBuilder buf = new StringBuilder();
+
+    private int scanned;
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+    private int stringStart = -1;
+    private String lastRootString;
+    private int actionsDepth = -1; // depth of the actions array once it is open
+    private int objectStart = -1;
+    private int emitted;
+
+    IncrementalActionReader(Gson gson, ObjIntConsumer<ActionPlan.Action> listener) {
+        this.gson = gson;
+        this.listener = listener;
+    }
+
+    /** Number of actions handed to the listener so far. */
+    int emitted() {
+        return emitted;
+    }
+
+    /** True for the actions worth listing to the user: those with a type. */
+    static boolean shows(ActionPlan.Action action) {
+        return action != null && action.type != null;
+    }
+
+    void feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) return;
+        buf.append(chunk);
+        for (; scanned < buf.length(); scanned++) {
+            char c = buf.charAt(scanned);
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 1) lastRootString = buf.substring(stringStart, scanned);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    if (depth > 0) {
+                        inString = true;
+                        stringStart = scanned + 1;
+                    }
+                    break;
+                case '{':
+                    depth++;
+                    if (actionsDepth > 0 && depth == actionsDepth + 1) objectStart = scanned;
+                    break;
+                case '[':
+                    depth++;
+                    if (depth == 2 && actionsDepth < 0 && "actions".equals(lastRootString)) actionsDepth = depth;
+                    break;
+                case '}':
+                    if (actionsDepth > 0 && depth == actionsDepth + 1 && objectStart >= 0) {
+                        emit(buf.substring(objectStart, scanned + 1));
+                        objectStart = -1;
+                    }
+                    depth--;
+                    break;
+                case ']':
+                    if (depth == actionsDepth) actionsDepth = 0; // closed; later arrays are not actions
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void emit(String json) {
+        ActionPlan.Action action;
+        try {
+            action = gson.fromJson(json, ActionPlan.Action.class);
+        } catch (JsonSyntaxException e) {
+            return; // left for the full parse to report
+        }
+        if (!shows(action)) return;
+        listener.accept(action, ++emitted);
+    }
+}
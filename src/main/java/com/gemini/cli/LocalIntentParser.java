@@ -0,0 +1,315 @@
+package com.gemini.cli;
+
+import com.gemini.backend.service.ActionPlan;
+import com.gemini.backend.service.CalendarTool;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic parser for simple one-event commands, so they can skip the model round trip:
+ * <pre>
+ * add|create|schedule|book &lt;title&gt; [on] &lt;date&gt; [at] &lt;time&gt; [for &lt;duration&gt;] [daily|weekly|every monday|...]
+ * delete|remove|cancel &lt;title&gt; [on] &lt;date&gt; [at] &lt;time&gt;
+ * move|reschedule|push|shift &lt;title&gt; [from &lt;date&gt; &lt;time&gt;] to [&lt;date&gt;] [&lt;time&gt;]
+ * </pre>
+ * Dates may be ISO ({@code 2025-11-10}), today/tomorrow, [next] weekday names, "in N days" or month-day
+ * ("Nov 10"); times are {@code HH:mm}, {@code 9am}/{@code 2:30pm} or noon. Anything it does not fully
+ * understand (leftover date words, several clauses, pronouns, unknown events) returns null so the caller
+ * falls back to the model.
+ */
+final class LocalIntentParser {
+
+    private static final Pattern CREATE = Pattern.compile("^(?:add|create|schedule|book)\\s+(.+)$");
+    private static final Pattern DELETE = Pattern.compile("^(?:delete|remove|cancel)\\s+(.+)$");
+    private static final Pattern MOVE = Pattern.compile("^(?:move|reschedule|push|shift)\\s+(.+?)(?:\\s+from\\s+(.+?))?\\s+to\\s+(.+)$");
+
+    private static final Pattern ISO_DATE = Pattern.compile("\\b(\\d{4}-\\d{2}-\\d{2})\\b");
+    private static final Pattern IN_DAYS = Pattern.compile("\\bin\\s+(\\d{1,3})\\s+days?\\b");
+    private static final Pattern MONTH_DAY = Pattern.compile(
+            "\\b(january|february|march|april|may|june|july|august|september|october|november|december"
+            + "|jan|feb|mar|apr|jun|jul|aug|sept|sep|oct|nov|dec)\\.?\\s+(\\d{1,2})(?:st|nd|rd|th)?\\b");
+    private static final Pattern WEEKDAY = Pattern.compile(
+            "\\b(next\\s+|this\\s+)?(monday|tuesday|wednesday|thursday|friday|saturday|sunday)\\b");
+    private static final Pattern EVERY_WEEKDAY = Pattern.compile(
+            "\\bevery\\s+(monday|tuesday|wednesday|thursday|friday|saturday|sunday)\\b");
+    private static final Pattern TIME_24 = Pattern.compile("\\b([01]?\\d|2[0-3]):([0-5]\\d)\\b(?!\\s*[ap]\\.?m)");
+    private static final Pattern TIME_12 = Pattern.compile("\\b(1[0-2]|0?[1-9])(?::([0-5]\\d))?\\s*([ap])\\.?m\\.?(?![a-z])");
+    private static final Pattern NOON = Pattern.compile("\\bnoon\\b");
+    private static final Pattern DURATION = Pattern.compile(
+            "\\bfor\\s+(?:(an|one|half an|\\d+(?:\\.\\d+)?)\\s*(hours?|hrs?|h|minutes?|mins?|m))\\b");
+    private static final Pattern RECURRENCE = Pattern.compile(
+            "\\b(daily|every\\s+day|each\\s+day|nightly|weekly|every\\s+week|monthly|every\\s+month|yearly|annually|every\\s+year)\\b");
+
+    private static final Set<String> FILLER = new HashSet<>(Arrays.asList("on", "at", "a", "an", "the", "my", "for"));
+    /** Words that mean the request needs judgement (fuzzy dates, several clauses, pronouns) rather than parsing. */
+    private static final Set<String> UNSURE = new HashSet<>(Arrays.asList(
+            "and", "then", "also", "or", "sometime", "somewhere", "some", "week", "weekend", "morning", "afternoon",
+            "evening", "night", "tonight", "later", "soon", "earlier", "before", "after", "around", "between",
+            "free", "clear", "all", "every", "each", "it", "that", "this", "them", "those", "these", "one",
+            "previous", "same", "again", "yesterday", "last", "past", "next", "from", "to", "until", "if"));
+
+    private LocalIntentParser() {
+    }
+
+    /** Returns a one-action plan for {@code request}, or null when the model should handle it. */
+    static ActionPlan parse(String request, LocalDateTime now) {
+        if (request == null) return null;
+        String text = request.trim().toLowerCase(Locale.ROOT).replaceAll("[.!?]+$", "").replaceAll("\\s+", " ");
+        if (text.isEmpty() || text.contains("?") || text.contains(",")) return null;
+        try {
+            Matcher m = MOVE.matcher(text);
+            if (m.matches()) return move(m.group(1), m.group(2), m.group(3), now);
+            m = CREATE.matcher(text);
+            if (m.matches()) return create(m.group(1), now);
+            m = DELETE.matcher(text);
+            if (m.matches()) return delete(m.group(1), now);
+        } catch (Exception e) {
+            // anything unexpected: let the model decide
+        }
+        return null;
+    }
+
+    private static ActionPlan create(String rest, LocalDateTime now) {
+        Parsed p = new Parsed(rest, now.toLocalDate());
+        p.recurrence();
+        p.duration();
+        p.date();
+        p.time();
+        String title = p.title();
+        if (title == null || p.date == null || p.time == null) return null;
+        ActionPlan.Action a = new ActionPlan.Action();
+        a.type = "create_event";
+        a.title = capitalize(title);
+        a.date = p.date.toString();
+        a.time = p.time.toString();
+        a.durationMinutes = p.minutes;
+        a.recurring = p.recurring != null ? p.recurring : "non-recurring";
+        return plan(a);
+    }
+
+    private static ActionPlan delete(String rest, LocalDateTime now) throws Exception {
+        Parsed p = new Parsed(rest, now.toLocalDate());
+        p.date();
+        p.time();
+        String title = p.title();
+        if (title == null || p.date == null || p.time == null) return null;
+        if (!CalendarTool.hasEvent(title, p.date.toString(), p.time.toString())) return null;
+        ActionPlan.Action a = new ActionPlan.Action();
+        a.type = "delete_event";
+        a.title = title;
+        a.date = p.date.toString();
+        a.time = p.time.toString();
+        return plan(a);
+    }
+
+    private static ActionPlan move(String titlePart, String fromPart, String toPart, LocalDateTime now)
+            throws Exception {
+        LocalDate today = now.toLocalDate();
+        Parsed name = new Parsed(titlePart, today);
+        String title = name.title();
+        if (title == null) return null;
+
+        LocalDate oldDate;
+        LocalTime oldTime;
+        if (fromPart != null) {
+            Parsed from = new Parsed(fromPart, today);
+            from.date();
+            from.time();
+            if (from.date == null || from.time == null || !from.leftoverEmpty()) return null;
+            oldDate = from.date;
+            oldTime = from.time;
+            if (!CalendarTool.hasEvent(title, oldDate.toString(), oldTime.toString())) return null;
+        } else {
+            String start = CalendarTool.findUpcomingEventStart(title);
+            if (start == null) return null;
+            oldDate = LocalDate.parse(start.substring(0, 10));
+            oldTime = LocalTime.parse(start.substring(11));
+        }
+
+        Parsed to = new Parsed(toPart, today);
+        to.date();
+        to.time();
+        if ((to.date == null && to.time == null) || !to.leftoverEmpty()) return null;
+        ActionPlan.Action a = new ActionPlan.Action();
+        a.type = "update_event";
+        a.title = title;
+        a.date = oldDate.toString();
+        a.time = oldTime.toString();
+        a.newDate = (to.date != null ? to.date : oldDate).toString();
+        a.newTime = (to.time != null ? to.time : oldTime).toString();
+        return plan(a);
+    }
+
+    private static ActionPlan plan(ActionPlan.Action a) {
+        ActionPlan plan = new ActionPlan();
+        plan.actions = new ArrayList<>();
+        plan.actions.add(a);
+        plan.suggestions = new ArrayList<>();
+        return plan;
+    }
+
+    private static String capitalize(String title) {
+        StringBuilder sb = new StringBuilder(title.length());
+        for (String w : title.split(" ")) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(Character.toUpperCase(w.charAt(0))).append(w.substring(1));
+        }
+        return sb.toString();
+    }
+
+    /** Strips recognised pieces out of a clause, leaving the words that make up the title. */
+    private static final class Parsed {
+        private String rest;
+        private final LocalDate today;
+        LocalDate date;
+        LocalTime time;
+        Integer minutes;
+        String recurring;
+
+        Parsed(String text, LocalDate today) {
+            this.rest = " " + text + " ";
+            this.today = today;
+        }
+
+        private Matcher find(Pattern p) {
+            Matcher m = p.matcher(rest);
+            return m.find() ? m : null;
+        }
+
+        private void cut(Matcher m) {
+            rest = rest.substring(0, m.start()) + " " + rest.substring(m.end());
+        }
+
+        void recurrence() {
+            Matcher m = find(EVERY_WEEKDAY);
+            if (m != null) {
+                recurring = "weekly";
+                DayOfWeek dow = DayOfWeek.valueOf(m.group(1).toUpperCase(Locale.ROOT));
+                if (date == null) date = today.with(TemporalAdjusters.nextOrSame(dow));
+                cut(m);
+                return;
+            }
+            m = find(RECURRENCE);
+            if (m == null) return;
+            String w = m.group(1);
+            if (w.equals("daily") || w.endsWith("day") || w.equals("nightly")) recurring = "daily";
+            else if (w.contains("week")) recurring = "weekly";
+            else if (w.contains("month")) recurring = "monthly";
+            else recurring = "yearly";
+            cut(m);
+        }
+
+        void duration() {
+            Matcher m = find(DURATION);
+            if (m == null) return;
+            String n = m.group(1);
+            double amount = n.equals("an") || n.equals("one") ? 1 : n.equals("half an") ? 0.5 : Double.parseDouble(n);
+            boolean hours = m.group(2).startsWith("h");
+            minutes = (int) Math.round(hours ? amount * 60 : amount);
+            if (minutes <= 0) minutes = null;
+            cut(m);
+        }
+
+        void date() {
+            Matcher m = find(ISO_DATE);
+            if (m != null) {
+                date = LocalDate.parse(m.group(1));
+                cut(m);
+                return;
+            }
+            m = find(IN_DAYS);
+            if (m != null) {
+                date = today.plusDays(Integer.parseInt(m.group(1)));
+                cut(m);
+                return;
+            }
+            m = find(MONTH_DAY);
+            if (m != null) {
+                Month month = null;
+                for (Month candidate : Month.values()) {
+                    if (candidate.getDisplayName(TextStyle.FULL, Locale.ENGLISH).toLowerCase(Locale.ROOT).startsWith(m.group(1))) {
+                        month = candidate;
+                    }
+                }
+                LocalDate d = LocalDate.of(today.getYear(), month, Integer.parseInt(m.group(2)));
+                date = d.isBefore(today) ? d.plusYears(1) : d;
+                cut(m);
+                return;
+            }
+            if ((m = find(Pattern.compile("\\btoday\\b"))) != null) {
+                date = today;
+                cut(m);
+                return;
+            }
+            if ((m = find(Pattern.compile("\\btomorrow\\b"))) != null) {
+                date = today.plusDays(1);
+                cut(m);
+                return;
+            }
+            m = find(WEEKDAY);
+            if (m != null) {
+                DayOfWeek dow = DayOfWeek.valueOf(m.group(2).toUpperCase(Locale.ROOT));
+                boolean next = m.group(1) != null && m.group(1).startsWith("next");
+                date = next ? today.with(TemporalAdjusters.next(dow)) : today.with(TemporalAdjusters.nextOrSame(dow));
+                cut(m);
+            }
+        }
+
+        void time() {
+            Matcher m = find(TIME_12);
+            if (m != null) {
+                int h = Integer.parseInt(m.group(1)) % 12 + (m.group(3).equals("p") ? 12 : 0);
+                int min = m.group(2) != null ? Integer.parseInt(m.group(2)) : 0;
+                time = LocalTime.of(h, min);
+                cut(m);
+                return;
+            }
+            m = find(TIME_24);
+            if (m != null) {
+                time = LocalTime.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+                cut(m);
+                return;
+            }
+            m = find(NOON);
+            if (m != null) {
+                time = LocalTime.NOON;
+                cut(m);
+            }
+        }
+
+        /** Remaining words as a title, or null if they are empty or contain anything uncertain. */
+        String title() {
+            StringBuilder sb = new StringBuilder();
+            for (String w : rest.trim().split(" ")) {
+                if (w.isEmpty()) continue;
+                if (UNSURE.contains(w) || w.chars().anyMatch(Character::isDigit)) return null;
+                if (sb.length() == 0 && FILLER.contains(w)) continue;
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(w);
+            }
+            // trailing connectors such as "dentist on" after the date was cut
+            String t = sb.toString().replaceAll("(\\s+(?:on|at|for))+$", "");
+            return t.isEmpty() ? null : t;
+        }
+
+        boolean leftoverEmpty() {
+            for (String w : rest.trim().split(" ")) {
+                if (!w.isEmpty() && !FILLER.contains(w)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.gemini.cli;
+
+import com.gemini.backend.service.ActionPlan;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of parsed model plans with a time-to-live. Keys combine the normalized request with the
+ * calendar version, today's date and a hash of the conversation context sent with it, so a plan is only reused
+ * while the calendar, date and conversation it was made for are unchanged; a new calendar version drops every
+ * entry. Requests that lean on the conversation ("yes", "do that", "move it") are not cacheable at all.
+ *
+ * Size and TTL come from -Dgemini.planCache.size (default 128) and -Dgemini.planCache.ttlSeconds (default 600).
+ */
+final class PlanCache {
+
+    static final class Entry {
+        final String raw;
+        final ActionPlan plan;
+        final long createdNanos;
+
+        Entry(String raw, ActionPlan plan, long createdNanos) {
+            this.raw = raw;
+            this.plan = plan;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private static final Set<String> FILLER = new HashSet<>(Arrays.asList(
+            "please", "pls", "hey", "hi", "can", "could", "would", "you", "kindly", "just", "the", "a", "an"));
+    private static final Set<String> REFERENTIAL = new HashSet<>(Arrays.asList(
+            "yes", "yeah", "yep", "yup", "ok", "okay", "sure", "it", "that", "those", "them", "these",
+            "previous", "same", "again", "confirm", "above", "instead"));
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private long calendarVersion = Long.MIN_VALUE;
+    private final Map<String, Entry> entries;
+
+    PlanCache() {
+        this(Integer.getInteger("gemini.planCache.size", 128), Long.getLong("gemini.planCache.ttlSeconds", 600L));
+    }
+
+    PlanCache(int maxEntries, long ttlSeconds) {
+        this(maxEntries, ttlSeconds, System::nanoTime);
+    }
+
+    PlanCache(int maxEntries, long ttlSeconds, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(32, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PlanCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cache key for a request sent along with {@code context} (the conversation lines in the prompt, may be
+     * empty), or null when the request refers back to the conversation.
+     */
+    String key(String request, long version, LocalDate today, CharSequence context) {
+        String normalized = normalize(request);
+        if (normalized.isEmpty()) return null;
+        for (String word : normalized.split(" ")) {
+            if (REFERENTIAL.contains(word)) return null;
+        }
+        String ctx = context == null || context.length() == 0 ? "-" : Integer.toHexString(context.toString().hashCode());
+        return version + "|" + today + "|" + ctx + "|" + normalized;
+    }
+
+    /** Lowercases, drops punctuation and filler words and collapses whitespace; keeps dates and times intact. */
+    static String normalize(String request) {
+        if (request == null) return "";
+        String[] words = request.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}:\\-]+", " ").trim().split(" ");
+        StringBuilder sb = new StringBuilder();
+        for (String w : words) {
+            if (w.isEmpty() || FILLER.contains(w)) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(w);
+        }
+        return sb.toString();
+    }
+
+    Entry get(String key, long version) {
+        if (key == null) return null;
+        invalidateIfChanged(version);
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        if (clock.getAsLong() - e.createdNanos > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return e;
+    }
+
+    void put(String key, long version, String raw, ActionPlan plan) {
+        if (key == null || plan == null || maxEntries <= 0) return;
+        invalidateIfChanged(version);
+        entries.put(key, new Entry(raw, plan, clock.getAsLong()));
+    }
+
+    private void invalidateIfChanged(long version) {
+        if (version != calendarVersion) {
+            entries.clear();
+            calendarVersion = version;
+        }
+    }
+}
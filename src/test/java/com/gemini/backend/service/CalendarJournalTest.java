@@ -0,0 +1,148 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarJournalTest {
+
+    private static final String EVENT = "BEGIN:VEVENT\r\nUID:a\r\nSUMMARY:Standup\r\n"
+            + "DTSTART:20261102T090000Z\r\nDTEND:20261102T091500Z\r\nEND:VEVENT\r\n";
+
+    @TempDir
+    File dir;
+
+    private CalendarJournal journal() {
+        return new CalendarJournal(new File(dir, "c.ics"));
+    }
+
+    private void appendRaw(CalendarJournal journal, String text) throws Exception {
+        Files.writeString(journal.file().toPath(), text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void replaysEveryEntryInOrder() throws Exception {
+        CalendarJournal journal = journal();
+        journal.append(List.of(CalendarJournal.put(EVENT), CalendarJournal.time("a", 1000, 2000)));
+        journal.append(List.of(CalendarJournal.del("a")));
+
+        List<CalendarJournal.Entry> entries = journal().read();
+        assertEquals(3, entries.size());
+        assertEquals(CalendarJournal.PUT, entries.get(0).op);
+        assertEquals("a", entries.get(0).uid);
+        assertEquals(EVENT, entries.get(0).payload);
+        assertEquals(CalendarJournal.TIME, entries.get(1).op);
+        assertEquals(1000, entries.get(1).start);
+        assertEquals(2000, entries.get(1).end);
+        assertEquals(CalendarJournal.DEL, entries.get(2).op);
+    }
+
+    @Test
+    void dropsAFrameTornInsideANumber() throws Exception {
+        CalendarJournal journal = journal();
+        journal.append(List.of(CalendarJournal.time("a", 1000, 2000)));
+        journal.append(List.of(CalendarJournal.time("a", 3000, 4567)));
+        // cut the second frame inside its end time: "...\t3000\t45"
+        try (var ch = java.nio.channels.FileChannel.open(journal.file().toPath(), StandardOpenOption.WRITE)) {
+            ch.truncate(journal.length() - 3);
+        }
+
+        List<CalendarJournal.Entry> entries = journal().read();
+        assertEquals(1, entries.size());
+        assertEquals(2000, entries.get(0).end);
+    }
+
+    @Test
+    void tornCommitIsDroppedAsAWhole() throws Exception {
+        CalendarJournal journal = journal();
+        journal.append(List.of(CalendarJournal.put(EVENT), CalendarJournal.time("a", 1000, 2000), CalendarJournal.del("a")));
+        byte[] bytes = Files.readAllBytes(journal.file().toPath());
+        Files.write(journal.file().toPath(), java.util.Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertTrue(journal().read().isEmpty());
+    }
+
+    @Test
+    void appendAfterATornTailCutsItOff() throws Exception {
+        CalendarJournal journal = journal();
+        journal.append(List.of(CalendarJournal.time("a", 1000, 2000)));
+        appendRaw(journal, "FRAME\t40\t1234\nTIME\ta\t12");
+
+        CalendarJournal reopened = journal();
+        assertEquals(1, reopened.read().size());
+        reopened.append(List.of(CalendarJournal.del("a")));
+
+        List<CalendarJournal.Entry> entries = journal().read();
+        assertEquals(2, entries.size());
+        assertEquals(CalendarJournal.DEL, entries.get(1).op);
+        assertTrue(Files.readString(journal.file().toPath()).indexOf("TIME\ta\t12") < 0);
+    }
+
+    @Test
+    void appendWithoutAPriorReadStillCutsTheTornTail() throws Exception {
+        CalendarJournal journal = journal();
+        journal.append(List.of(CalendarJournal.time("a", 1000, 2000)));
+        appendRaw(journal, "FRAME\t12");
+
+        journal().append(List.of(CalendarJournal.del("a")));
+
+        assertEquals(2, journal().read().size());
+    }
+
+    @Test
+    void stopsAtAFrameWithABadChecksum() throws Exception {
+        CalendarJournal journal = journal();
+        journal.append(List.of(CalendarJournal.time("a", 1000, 2000)));
+        journal.append(List.of(CalendarJournal.time("a", 3000, 4000)));
+        String text = Files.readString(journal.file().toPath());
+        int last = text.lastIndexOf("3000");
+        Files.writeString(journal.file().toPath(), text.substring(0, last) + "3001" + text.substring(last + 4));
+
+        List<CalendarJournal.Entry> entries = journal().read();
+        assertEquals(1, entries.size());
+        assertEquals(1000, entries.get(0).start);
+    }
+
+    @Test
+    void unframedTextIsTreatedAsCorrupt() throws Exception {
+        CalendarJournal journal = journal();
+        Files.writeString(journal.file().toPath(), CalendarJournal.put(EVENT) + CalendarJournal.time("a", 1000, 2000));
+
+        assertTrue(journal.read().isEmpty());
+        journal.append(List.of(CalendarJournal.del("a")));
+
+        List<CalendarJournal.Entry> entries = journal().read();
+        assertEquals(1, entries.size());
+        assertEquals(CalendarJournal.DEL, entries.get(0).op);
+        assertTrue(Files.readString(journal.file().toPath()).startsWith("FRAME\t"));
+    }
+
+    @Test
+    void storeReplaysCompleteFramesOnLoad() throws Exception {
+        File ics = new File(dir, "c.ics");
+        Files.writeString(ics.toPath(), "BEGIN:VCALENDAR\r\nVERSION:2.0\r\n" + EVENT + "END:VCALENDAR\r\n");
+        CalendarJournal journal = new CalendarJournal(ics);
+        long moved = 1_800_000_000_000L;
+        journal.append(List.of(CalendarJournal.time("a", moved, moved + 900_000)));
+        appendRaw(journal, "FRAME\t14\t0\nDEL\ta\n");
+
+        CalendarStore store = CalendarStore.of(ics);
+        try {
+            EventRecord rec = store.get("a");
+            assertEquals(moved, rec.start);
+            assertEquals(moved + 900_000, rec.end);
+            assertNull(store.get("b"));
+        } finally {
+            CalendarStore.close(ics);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.gemini.backend.service;
+
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Uid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarStoreTransactionTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long T0 = 1_800_000_000_000L;
+
+    @TempDir
+    File dir;
+
+    private File ics;
+    private CalendarStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ics = new File(dir, "c.ics");
+        store = CalendarStore.of(ics);
+        store.add(event("keep", "Keep", T0));
+        store.add(event("move", "Move", T0 + 2 * HOUR));
+        store.commit();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        CalendarStore.close(ics);
+    }
+
+    private static VEvent event(String uid, String title, long start) {
+        VEvent ev = new VEvent(new DateTime(start), new DateTime(start + HOUR), title);
+        ev.getProperties().add(new Uid(uid));
+        return ev;
+    }
+
+    private CalendarJournal journal() {
+        return new CalendarJournal(ics);
+    }
+
+    @Test
+    void rollbackRestoresEveryMutation() throws Exception {
+        long version = store.version();
+        long journalLength = journal().length();
+        synchronized (store) {
+            store.begin();
+            store.add(event("new", "New", T0 + 5 * HOUR));
+            store.retime(store.get("move"), T0 + 3 * HOUR, T0 + 4 * HOUR);
+            store.remove(store.get("keep"));
+            store.rollback();
+        }
+
+        assertNull(store.get("new"));
+        assertEquals(T0 + 2 * HOUR, store.get("move").start);
+        assertNotNull(store.get("keep"));
+        assertEquals(2, store.size());
+        assertTrue(store.version() > version);
+        assertEquals(journalLength, journal().length());
+        assertNull(store.view().find("New", T0 + 5 * HOUR));
+    }
+
+    private int frames() throws IOException {
+        File f = journal().file();
+        return f.exists() ? Files.readString(f.toPath()).split("(?m)^FRAME\t", -1).length - 1 : 0;
+    }
+
+    @Test
+    void commitTransactionPersistsEverythingAsOneFrame() throws Exception {
+        int before = journal().read().size();
+        int framesBefore = frames();
+        synchronized (store) {
+            store.begin();
+            store.add(event("new", "New", T0 + 5 * HOUR));
+            store.retime(store.get("move"), T0 + 3 * HOUR, T0 + 4 * HOUR);
+            store.commit(); // deferred inside the transaction
+            assertEquals(before, journal().read().size());
+            store.commitTransaction();
+        }
+
+        assertEquals(before + 2, journal().read().size());
+        assertEquals(framesBefore + 1, frames());
+        assertEquals(T0 + 3 * HOUR, store.get("move").start);
+        assertNotNull(store.view().find("New", T0 + 5 * HOUR));
+    }
+
+    @Test
+    void nestedLevelsCommitOnlyAtTheOutermost() throws Exception {
+        int before = journal().read().size();
+        synchronized (store) {
+            store.begin();
+            store.begin();
+            store.remove(store.get("keep"));
+            store.commitTransaction();
+            assertEquals(before, journal().read().size());
+            store.commitTransaction();
+        }
+        assertEquals(before + 1, journal().read().size());
+        assertNull(store.get("keep"));
+    }
+
+    @Test
+    void failedAppendRollsBack() throws Exception {
+        long journalLength = journal().length();
+        synchronized (store) {
+            store.begin();
+            store.retime(store.get("move"), T0 + 3 * HOUR, T0 + 4 * HOUR);
+            store.add(event("new", "New", T0 + 5 * HOUR));
+            // the journal cannot be written: its path is now taken by a directory
+            File moved = new File(dir, "journal.bak");
+            if (journal().file().exists()) Files.move(journal().file().toPath(), moved.toPath());
+            assertTrue(journal().file().mkdir());
+            assertThrows(IOException.class, store::commitTransaction);
+            assertTrue(journal().file().delete());
+            if (moved.exists()) Files.move(moved.toPath(), journal().file().toPath());
+        }
+
+        assertEquals(journalLength, journal().length());
+        assertEquals(T0 + 2 * HOUR, store.get("move").start);
+        assertNull(store.get("new"));
+    }
+
+    @Test
+    void failureAfterTheAppendKeepsTheCommittedChanges() throws Exception {
+        store.compact();
+        byte[] calendar = Files.readAllBytes(ics.toPath());
+        synchronized (store) {
+            store.begin();
+            store.retime(store.get("move"), T0 + 3 * HOUR, T0 + 4 * HOUR);
+            // another process replaced the file with something unreadable: the append succeeds, the reload fails
+            Files.delete(ics.toPath());
+            assertTrue(ics.mkdir());
+            store.commitTransaction();
+            assertTrue(ics.delete());
+            Files.write(ics.toPath(), calendar);
+        }
+
+        assertEquals(T0 + 3 * HOUR, store.get("move").start);
+        assertEquals(1, journal().read().size());
+    }
+}
@@ -0,0 +1,102 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DaySummaryCacheTest {
+
+    private static final Metrics.Counter RENDERED = Metrics.counter("calendar_summary_days_rendered_total");
+
+    @TempDir
+    File dir;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("calendar.file", new File(dir, "c.ics").getPath());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        CalendarTool.closeCalendar();
+        System.clearProperty("calendar.file");
+    }
+
+    /** Days rendered (not served from the cache) by one summary of the range. */
+    private static long rendered(String from, String to) {
+        long before = RENDERED.get();
+        CalendarTool.summarizeRange(from, to);
+        return RENDERED.get() - before;
+    }
+
+    @Test
+    void aOneEventChangeRendersOnlyItsDays() throws Exception {
+        CalendarTool.createCalendarEvent("2026-11-02", "09:00", "non-recurring", "Dentist");
+        CalendarTool.createCalendarEvent("2026-11-04", "10:00", "non-recurring", "Gym");
+        CalendarTool.createCalendarEvent("2026-11-06", "11:00", "non-recurring", "Review");
+
+        assertEquals(7, rendered("2026-11-02", "2026-11-08"));
+        assertEquals(0, rendered("2026-11-02", "2026-11-08"));
+
+        assertTrue(CalendarTool.updateEventDuration("Gym", "2026-11-04", "10:00", 90));
+        assertEquals(1, rendered("2026-11-02", "2026-11-08"));
+        assertTrue(CalendarTool.summarizeRange("2026-11-04", "2026-11-04").contains("10:00-11:30 Gym"));
+
+        // a move touches the day it leaves and the day it lands on
+        assertTrue(CalendarTool.updateEventByTitleAndStart("Review", "2026-11-06", "11:00", "2026-11-07", "11:00"));
+        assertEquals(2, rendered("2026-11-02", "2026-11-08"));
+        assertEquals(0, rendered("2026-11-02", "2026-11-08"));
+    }
+
+    @Test
+    void aRecurringEditRendersEveryDayAgain() throws Exception {
+        CalendarTool.createCalendarEvent("2026-11-02", "08:00", "weekly", "Standup");
+        CalendarTool.createCalendarEvent("2026-11-05", "10:00", "non-recurring", "Gym");
+        assertEquals(21, rendered("2026-11-02", "2026-11-22"));
+
+        String uid = CalendarTool.listEvents().stream().filter(e -> "Standup".equals(e.title)).findFirst()
+                .orElseThrow().uid;
+        assertTrue(CalendarTool.updateEventDurationByUid(uid, 30));
+        assertEquals(21, rendered("2026-11-02", "2026-11-22"));
+        String summary = CalendarTool.summarizeRange("2026-11-02", "2026-11-22");
+        for (String day : new String[]{"2026-11-02", "2026-11-09", "2026-11-16"}) {
+            assertTrue(summary.contains(day + "\n  08:00-08:30 Standup"), summary);
+        }
+    }
+
+    private static EventRecord on(long epochDay) {
+        long start = LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new EventRecord("e" + epochDay, "E", start + 3_600_000L, start + 7_200_000L, false, null);
+    }
+
+    @Test
+    void dayChangesOlderThanEveryCachedFragmentArePruned() {
+        DaySummaryCache cache = new DaySummaryCache();
+        DaySummaryCache.Fragment fragment = new DaySummaryCache.Fragment("x", 1);
+        long version = 0;
+        long first = LocalDate.of(2026, 1, 1).toEpochDay();
+        long cachedDay = first - 1;
+        for (long d = first; d < first + 40_000; d++) {
+            cache.touched(on(d), ++version);
+            if (d % 1000 == 0) cache.put(cachedDay, false, version, fragment);
+        }
+        assertTrue(cache.changedDays() <= 16_384, "tracked " + cache.changedDays());
+        // the newest fragment survives, and is still refused to a view older than the last change
+        assertNotNull(cache.get(cachedDay, false, version));
+        assertNull(cache.get(first + 39_999, false, version - 1));
+
+        cache.put(first + 39_999, false, version, fragment);
+        cache.touched(on(first + 39_999), ++version);
+        assertNull(cache.get(first + 39_999, false, version));
+    }
+}
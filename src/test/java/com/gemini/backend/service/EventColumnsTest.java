@@ -0,0 +1,134 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventColumnsTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private static EventRecord event(String uid, String title, long start) {
+        return new EventRecord(uid, title, start, start + HOUR, false, null);
+    }
+
+    /** Checks the rows hold exactly {@code expected}, in order, with every column matching its record. */
+    private static void assertRows(List<EventRecord> expected, EventColumns columns) {
+        assertEquals(expected.size(), columns.size());
+        for (int i = 0; i < expected.size(); i++) {
+            EventRecord rec = expected.get(i);
+            assertSame(rec, columns.record(i), "row " + i);
+            assertEquals(rec.start, columns.start(i));
+            assertEquals(rec.end, columns.end(i));
+            assertEquals(rec.allDay, columns.isAllDay(i));
+            assertEquals(rec.isRecurring(), columns.isRecurring(i));
+            assertEquals(columns.dictionary().titleId(rec.title), columns.titleIdAt(i));
+            assertEquals(columns.dictionary().rruleId(rec.rrule), columns.rruleIdAt(i));
+        }
+    }
+
+    @Test
+    void removalAndInsertionAtTheSameStart() {
+        EventRecord a = event("a", "A", 9 * HOUR);
+        EventRecord b = event("b", "B", 9 * HOUR);
+        EventRecord c = event("c", "C", 9 * HOUR);
+        EventRecord d = event("d", "D", 10 * HOUR);
+        EventColumns columns = EventColumns.of(List.of(a, b, c, d), new EventColumns.Dictionary());
+
+        EventRecord x = event("x", "X", 9 * HOUR);
+        EventRecord y = event("y", "Y", 9 * HOUR);
+        EventColumns next = columns.apply(List.of(b), List.of(x, y));
+
+        // added records go after the existing ones with the same start, in the order given
+        assertRows(List.of(a, c, x, y, d), next);
+        assertRows(List.of(a, b, c, d), columns);
+
+        // replacing a record by an equal-start copy keeps the row count and finds the copy by identity
+        EventRecord c2 = c.withTimes(c.start, c.end);
+        EventColumns replaced = next.apply(List.of(c), List.of(c2));
+        assertRows(List.of(a, x, y, c2, d), replaced);
+        assertEquals(-1, replaced.indexOf(c));
+        assertEquals(3, replaced.indexOf(c2));
+    }
+
+    @Test
+    void removalOfTheFirstAndLastRows() {
+        EventRecord a = event("a", "A", HOUR);
+        EventRecord b = event("b", "B", 2 * HOUR);
+        EventRecord c = event("c", "C", 3 * HOUR);
+        EventRecord d = event("d", "D", 4 * HOUR);
+        EventColumns columns = EventColumns.of(List.of(a, b, c, d), new EventColumns.Dictionary());
+
+        assertRows(List.of(b, c), columns.apply(List.of(a, d), List.of()));
+        EventRecord first = event("first", "First", 0);
+        EventRecord last = event("last", "Last", 5 * HOUR);
+        assertRows(List.of(first, b, c, last), columns.apply(List.of(d, a), List.of(last, first)));
+        assertRows(List.of(), columns.apply(List.of(a, b, c, d), List.of()));
+        // records that are not in the columns are ignored
+        assertRows(List.of(a, b, c, d), columns.apply(List.of(event("a", "A", HOUR)), List.of()));
+    }
+
+    @Test
+    void applyMatchesAFullRebuild() {
+        Random random = new Random(11);
+        EventColumns.Dictionary dictionary = new EventColumns.Dictionary();
+        List<EventRecord> model = new ArrayList<>();
+        EventColumns columns = EventColumns.of(model, dictionary);
+        int uid = 0;
+        for (int round = 0; round < 300; round++) {
+            List<EventRecord> removed = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(4) && !model.isEmpty(); i++) {
+                removed.add(model.remove(random.nextInt(model.size())));
+            }
+            List<EventRecord> added = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(4); i++) {
+                EventRecord rec = event("e" + uid++, "T" + random.nextInt(5), random.nextInt(8) * HOUR);
+                added.add(rec);
+            }
+            columns = columns.apply(removed, added);
+            List<EventRecord> sortedAdded = new ArrayList<>(added);
+            sortedAdded.sort(Comparator.comparingLong(r -> r.start));
+            for (EventRecord rec : sortedAdded) {
+                int at = 0;
+                while (at < model.size() && model.get(at).start <= rec.start) at++;
+                model.add(at, rec);
+            }
+            assertRows(model, columns);
+        }
+    }
+
+    @Test
+    void titleIdsAreSharedOnlyWithinOneDictionary() {
+        EventRecord lunch = event("lunch", "Lunch", 12 * HOUR);
+        EventColumns.Dictionary dictionary = new EventColumns.Dictionary();
+        EventColumns columns = EventColumns.of(List.of(lunch), dictionary);
+        int id = columns.titleIdAt(0);
+
+        // a later version built by apply() keeps the dictionary, so a re-added title reuses its id
+        EventRecord again = event("lunch-2", "LUNCH", 13 * HOUR);
+        EventColumns next = columns.apply(List.of(lunch), List.of(again));
+        assertSame(dictionary, next.dictionary());
+        assertEquals(id, next.titleIdAt(0));
+        assertEquals(0, next.find("lunch", 13 * HOUR));
+        assertEquals(-1, next.find("lunch", 12 * HOUR));
+        assertEquals(-1, next.find("dinner", 13 * HOUR));
+
+        // a rebuild over a fresh dictionary assigns its own ids; the old columns keep answering from theirs
+        EventColumns.Dictionary fresh = new EventColumns.Dictionary();
+        fresh.titleId("Standup");
+        EventColumns rebuilt = EventColumns.of(List.of(again), fresh);
+        assertNotEquals(id, rebuilt.titleIdAt(0));
+        assertEquals(0, rebuilt.find("Lunch", 13 * HOUR));
+        assertEquals(0, columns.find("LUNCH", 12 * HOUR));
+        assertEquals(-1, fresh.existingTitleId("Dinner"));
+        assertTrue(rebuilt.titleIdAt(0) > 0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FreeBusyIndexTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final long MINUTE = 60_000L;
+
+    private static long at(int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(2026, month, day, hour, minute, 0, 0, BERLIN).toInstant().toEpochMilli();
+    }
+
+    private static FreeBusyIndex index(EventRecord... events) {
+        IntervalTree tree = new IntervalTree();
+        for (EventRecord rec : events) tree.insert(rec);
+        return new FreeBusyIndex(tree, List.of(), new RecurrenceExpander(), BERLIN);
+    }
+
+    private static EventRecord event(String uid, long start, long end) {
+        return new EventRecord(uid, uid, start, end, false, null);
+    }
+
+    private static long[] bits(int from, int to) {
+        long[] bits = new long[(FreeBusyIndex.DAY_MINUTES + 63) / 64];
+        FreeBusyIndex.mark(bits, from, to);
+        return bits;
+    }
+
+    @Test
+    void markAndScanAroundWordBoundaries() {
+        long[] bits = bits(63, 65);
+        assertEquals(63, FreeBusyIndex.nextSetBit(bits, 0, 1500));
+        assertEquals(64, FreeBusyIndex.nextSetBit(bits, 64, 1500));
+        assertEquals(-1, FreeBusyIndex.nextSetBit(bits, 65, 1500));
+        assertEquals(-1, FreeBusyIndex.nextSetBit(bits, 0, 63));
+        assertEquals(65, FreeBusyIndex.nextClearBit(bits, 63));
+        assertEquals(62, FreeBusyIndex.nextClearBit(bits, 62));
+
+        bits = bits(64, 128);
+        assertEquals(64, FreeBusyIndex.nextSetBit(bits, 0, 65));
+        assertEquals(-1, FreeBusyIndex.nextSetBit(bits, 0, 64));
+        assertEquals(128, FreeBusyIndex.nextClearBit(bits, 64));
+
+        bits = bits(1439, 1440);
+        assertEquals(1439, FreeBusyIndex.nextSetBit(bits, 0, 1440));
+        assertEquals(-1, FreeBusyIndex.nextSetBit(bits, 0, 1439));
+        assertEquals(1440, FreeBusyIndex.nextClearBit(bits, 1439));
+
+        bits = bits(0, FreeBusyIndex.DAY_MINUTES);
+        assertEquals(FreeBusyIndex.DAY_MINUTES, FreeBusyIndex.nextClearBit(bits, 0));
+        assertEquals(FreeBusyIndex.DAY_MINUTES - 1,
+                FreeBusyIndex.nextSetBit(bits, FreeBusyIndex.DAY_MINUTES - 1, FreeBusyIndex.DAY_MINUTES));
+    }
+
+    @Test
+    void scansAgreeWithBitSet() {
+        Random random = new Random(5);
+        int n = FreeBusyIndex.DAY_MINUTES;
+        for (int round = 0; round < 500; round++) {
+            long[] bits = new long[(n + 63) / 64];
+            BitSet expected = new BitSet(n);
+            for (int i = 0; i < 4; i++) {
+                int from = random.nextInt(n);
+                int to = from + random.nextInt(Math.min(200, n - from) + 1);
+                FreeBusyIndex.mark(bits, from, to);
+                expected.set(from, to);
+            }
+            int from = random.nextInt(n);
+            int to = from + random.nextInt(n - from + 1);
+            int set = expected.nextSetBit(from);
+            assertEquals(set >= 0 && set < to ? set : -1, FreeBusyIndex.nextSetBit(bits, from, to));
+            assertEquals(Math.min(n, expected.nextClearBit(from)), FreeBusyIndex.nextClearBit(bits, from));
+        }
+    }
+
+    @Test
+    void eventCrossingMidnightBlocksBothDays() {
+        EventRecord late = event("late", at(11, 3, 23, 0), at(11, 4, 1, 30));
+        FreeBusyIndex index = index(late);
+
+        // a one-hour slot searched from 22:30 on the 3rd lands after the event, on the 4th
+        long found = index.firstFree(at(11, 3, 22, 30), 60 * MINUTE, 30 * MINUTE, at(11, 5, 0, 0), at(11, 5, 0, 0), null);
+        assertEquals(at(11, 4, 1, 30), found);
+        assertEquals(at(11, 3, 21, 0),
+                index.firstFree(at(11, 3, 21, 0), 60 * MINUTE, 30 * MINUTE, at(11, 5, 0, 0), at(11, 5, 0, 0), null));
+        // ignoring the event frees midnight again
+        assertEquals(at(11, 3, 23, 0), index.firstFree(at(11, 3, 23, 0), 120 * MINUTE, 30 * MINUTE,
+                at(11, 5, 0, 0), at(11, 5, 0, 0), late));
+    }
+
+    @Test
+    void shortDstDayIsPaddedBusyPastItsEnd() {
+        // 2026-03-29 in Berlin has 23 hours: 02:00 does not exist
+        FreeBusyIndex index = index(event("gap", at(3, 29, 1, 30), at(3, 29, 3, 30)));
+        FreeBusyIndex.Day day = index.day(LocalDate.of(2026, 3, 29).toEpochDay());
+        assertEquals(23 * 60, (int) ((day.endMs - day.startMs) / MINUTE));
+        assertEquals(23 * 60, FreeBusyIndex.nextSetBit(day.bits, 23 * 60 - 1, FreeBusyIndex.DAY_MINUTES));
+        assertEquals(FreeBusyIndex.DAY_MINUTES, FreeBusyIndex.nextClearBit(day.bits, 23 * 60));
+
+        // 01:30 to 03:30 local is one real hour, minutes 90-150 of the day
+        assertEquals(90, FreeBusyIndex.nextSetBit(day.bits, 0, 23 * 60));
+        assertEquals(150, FreeBusyIndex.nextClearBit(day.bits, 90));
+        assertEquals(at(3, 29, 3, 30),
+                index.firstFree(at(3, 29, 1, 30), 30 * MINUTE, 30 * MINUTE, at(3, 30, 0, 0), at(3, 30, 0, 0), null));
+        // the padding stands for time that does not exist, so a slot can still run on into the next day
+        assertEquals(at(3, 29, 23, 30), index.firstFree(at(3, 29, 23, 30), 60 * MINUTE, 30 * MINUTE,
+                at(3, 31, 0, 0), at(3, 31, 0, 0), null));
+    }
+
+    @Test
+    void longDstDayKeepsItsLastHour() {
+        // 2026-10-25 in Berlin has 25 hours; an event at 23:00 sits in minutes 1440-1500
+        FreeBusyIndex index = index(event("late", at(10, 25, 23, 0), at(10, 26, 0, 0)));
+        FreeBusyIndex.Day day = index.day(LocalDate.of(2026, 10, 25).toEpochDay());
+        assertEquals(25 * 60, (int) ((day.endMs - day.startMs) / MINUTE));
+        assertEquals(1440, FreeBusyIndex.nextSetBit(day.bits, 0, FreeBusyIndex.DAY_MINUTES));
+
+        assertEquals(at(10, 26, 0, 0), index.firstFree(at(10, 25, 22, 30), 60 * MINUTE, 30 * MINUTE,
+                at(10, 27, 0, 0), at(10, 27, 0, 0), null));
+        assertEquals(at(10, 25, 22, 0), index.firstFree(at(10, 25, 22, 0), 60 * MINUTE, 30 * MINUTE,
+                at(10, 27, 0, 0), at(10, 27, 0, 0), null));
+    }
+
+    @Test
+    void daysFarFromTheLatestQueryAreEvicted() {
+        FreeBusyIndex index = index();
+        long first = LocalDate.of(2026, 1, 1).toEpochDay();
+        for (long d = first; d < first + 400; d++) index.day(d);
+        assertTrue(index.cachedDays() <= 2 * 62 + 1, "cached " + index.cachedDays());
+        assertTrue(index.cachedDays() > 62);
+    }
+}
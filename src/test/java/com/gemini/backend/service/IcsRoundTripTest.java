@@ -0,0 +1,163 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IcsRoundTripTest {
+
+    private static final String CALENDAR = String.join("\r\n",
+            "BEGIN:VCALENDAR",
+            "VERSION:2.0",
+            "PRODID:-//Test//EN",
+            "BEGIN:VEVENT",
+            "UID:standup",
+            "SUMMARY:Standup",
+            "DTSTART:20261102T090000Z",
+            "DTEND:20261102T091500Z",
+            "RRULE:FREQ=DAILY",
+            "DESCRIPTION:A long description that was folded by the exporting client and",
+            "  must come back exactly as it was written",
+            "BEGIN:VALARM",
+            "ACTION:DISPLAY",
+            "TRIGGER:-PT10M",
+            "END:VALARM",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "UID:review",
+            "SUMMARY:Design review",
+            "DTSTART;TZID=Europe/Berlin:20261103T140000",
+            "DURATION:PT1H",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:No uid",
+            "DTSTART:20261104T100000Z",
+            "DTEND:20261104T103000Z",
+            "END:VEVENT",
+            "END:VCALENDAR",
+            "");
+
+    @TempDir
+    File dir;
+
+    private File write(String text) throws Exception {
+        File f = new File(dir, "c.ics");
+        Files.writeString(f.toPath(), text);
+        return f;
+    }
+
+    private static Map<String, EventRecord> parse(String text) throws Exception {
+        Map<String, EventRecord> out = new LinkedHashMap<>();
+        new IcsStreamParser().parse(new StringReader(text), rec -> out.put(rec.uid, rec));
+        return out;
+    }
+
+    private static String rewrite(File source, Map<String, String> added, Map<String, EventRecord> retimed,
+                                  Set<String> deleted) throws Exception {
+        StringWriter out = new StringWriter();
+        IcsRewriter.write(source, out, added, retimed, deleted);
+        return out.toString();
+    }
+
+    private static void assertSameEvents(Map<String, EventRecord> expected, Map<String, EventRecord> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (EventRecord rec : expected.values()) {
+            assertTrue(rec.sameAs(actual.get(rec.uid)), rec.uid);
+        }
+    }
+
+    @Test
+    void parsesTheDecodedProperties() throws Exception {
+        List<EventRecord> events = new ArrayList<>(parse(CALENDAR).values());
+        assertEquals(3, events.size());
+        EventRecord standup = events.get(0);
+        assertEquals("Standup", standup.title);
+        assertEquals("FREQ=DAILY", standup.rrule);
+        assertEquals(15 * 60_000L, standup.duration());
+        EventRecord review = events.get(1);
+        assertEquals(java.time.ZonedDateTime.of(2026, 11, 3, 14, 0, 0, 0, java.time.ZoneId.of("Europe/Berlin"))
+                .toInstant().toEpochMilli(), review.start);
+        assertEquals(60 * 60_000L, review.duration());
+        assertEquals(IcsStreamParser.syntheticUid(2), events.get(2).uid);
+    }
+
+    @Test
+    void unchangedCalendarIsCopiedVerbatimExceptForGeneratedUids() throws Exception {
+        File source = write(CALENDAR);
+        String out = rewrite(source, Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet());
+
+        String expected = CALENDAR.replace("BEGIN:VEVENT\r\nSUMMARY:No uid",
+                "BEGIN:VEVENT\r\nUID:" + IcsStreamParser.syntheticUid(2) + "\r\nSUMMARY:No uid");
+        assertEquals(expected, out);
+        assertSameEvents(parse(CALENDAR), parse(out));
+
+        IcsStreamParser reparsed = new IcsStreamParser();
+        reparsed.parse(new StringReader(out), rec -> { });
+        assertEquals(0, reparsed.generatedUids());
+    }
+
+    @Test
+    void appliesRetimesDeletesAndAdditions() throws Exception {
+        File source = write(CALENDAR);
+        Map<String, EventRecord> before = parse(CALENDAR);
+        EventRecord review = before.get("review");
+        EventRecord moved = review.withTimes(review.start + 86_400_000L, review.end + 86_400_000L + 1_800_000L);
+        String added = "BEGIN:VEVENT\r\nUID:lunch\r\nSUMMARY:Lunch\r\nDTSTART:20261105T120000Z\r\n"
+                + "DTEND:20261105T130000Z\r\nEND:VEVENT\r\n";
+
+        String out = rewrite(source, Map.of("lunch", added), Map.of("review", moved),
+                Set.of(IcsStreamParser.syntheticUid(2)));
+
+        Map<String, EventRecord> after = parse(out);
+        assertEquals(List.of("standup", "review", "lunch"), new ArrayList<>(after.keySet()));
+        assertTrue(after.get("standup").sameAs(before.get("standup")));
+        assertEquals(moved.start, after.get("review").start);
+        assertEquals(moved.end, after.get("review").end);
+        // the retimed event stays in its own zone
+        assertTrue(out.contains("DTSTART;TZID=Europe/Berlin:20261104T140000\r\n"));
+        assertEquals("Europe/Berlin", after.get("review").tz);
+        assertEquals("Lunch", after.get("lunch").title);
+        // the untouched event keeps its folded lines and nested alarm
+        assertTrue(out.contains("exporting client and\r\n  must come back exactly"));
+        assertTrue(out.contains("BEGIN:VALARM\r\nACTION:DISPLAY\r\nTRIGGER:-PT10M\r\nEND:VALARM\r\n"));
+        assertTrue(out.endsWith("END:VEVENT\r\nEND:VCALENDAR\r\n"));
+    }
+
+    @Test
+    void addedEventsSurviveATruncatedFile() throws Exception {
+        String truncated = CALENDAR.substring(0, CALENDAR.indexOf("BEGIN:VEVENT\r\nSUMMARY:No uid") + 30);
+        File source = write(truncated);
+        String added = "BEGIN:VEVENT\r\nUID:lunch\r\nSUMMARY:Lunch\r\nDTSTART:20261105T120000Z\r\nEND:VEVENT\r\n";
+
+        String out = rewrite(source, Map.of("lunch", added), Collections.emptyMap(), Collections.emptySet());
+
+        assertEquals(List.of("standup", "review", "lunch"), new ArrayList<>(parse(out).keySet()));
+        assertTrue(out.endsWith("END:VEVENT\r\nEND:VCALENDAR\r\n"));
+    }
+
+    @Test
+    void parserAndRewriterCountTheSameEvents() throws Exception {
+        // a BEGIN:VEVENT with trailing whitespace is still an event to both, so positional UIDs agree
+        String text = CALENDAR.replace("BEGIN:VEVENT\r\nUID:review", "BEGIN:VEVENT \r\nUID:review");
+        File source = write(text);
+        String noUid = IcsStreamParser.syntheticUid(2);
+        assertEquals("No uid", parse(text).get(noUid).title);
+
+        String out = rewrite(source, Collections.emptyMap(), Collections.emptyMap(), Set.of(noUid));
+
+        assertEquals(List.of("standup", "review"), new ArrayList<>(parse(out).keySet()));
+    }
+}
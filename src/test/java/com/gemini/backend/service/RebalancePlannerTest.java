@@ -0,0 +1,125 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RebalancePlannerTest {
+
+    private static long squaredLoad(int[] fixedLoad, int[] days) {
+        long[] load = new long[fixedLoad.length];
+        for (int d = 0; d < load.length; d++) load[d] = fixedLoad[d];
+        for (int d : days) load[d]++;
+        long sum = 0;
+        for (long l : load) sum += l * l;
+        return sum;
+    }
+
+    private static int moves(int[] currentDay, int[] days) {
+        int n = 0;
+        for (int i = 0; i < days.length; i++) if (days[i] != currentDay[i]) n++;
+        return n;
+    }
+
+    /** Best (squared load, moves) over every assignment, by enumeration. */
+    private static long[] bruteForce(int[] fixedLoad, int[] currentDay, int[][] allowedDays) {
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+        int[] days = currentDay.clone();
+        enumerate(0, fixedLoad, currentDay, allowedDays, days, best);
+        return best;
+    }
+
+    private static void enumerate(int i, int[] fixedLoad, int[] currentDay, int[][] allowedDays, int[] days, long[] best) {
+        if (i == days.length) {
+            long sq = squaredLoad(fixedLoad, days);
+            int m = moves(currentDay, days);
+            if (sq < best[0] || (sq == best[0] && m < best[1])) {
+                best[0] = sq;
+                best[1] = m;
+            }
+            return;
+        }
+        days[i] = currentDay[i];
+        enumerate(i + 1, fixedLoad, currentDay, allowedDays, days, best);
+        for (int d : allowedDays[i]) {
+            days[i] = d;
+            enumerate(i + 1, fixedLoad, currentDay, allowedDays, days, best);
+        }
+        days[i] = currentDay[i];
+    }
+
+    @Test
+    void matchesTheOptimumOnRandomSmallWeeks() {
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            int dayCount = 2 + random.nextInt(4);
+            int events = 1 + random.nextInt(7);
+            int[] fixedLoad = new int[dayCount];
+            for (int d = 0; d < dayCount; d++) fixedLoad[d] = random.nextInt(4);
+            int[] currentDay = new int[events];
+            int[][] allowed = new int[events][];
+            int[] rank = new int[events];
+            int[] perDay = new int[dayCount];
+            for (int i = 0; i < events; i++) {
+                currentDay[i] = random.nextInt(dayCount);
+                rank[i] = perDay[currentDay[i]]++;
+                List<Integer> others = new ArrayList<>();
+                for (int d = 0; d < dayCount; d++) {
+                    if (d != currentDay[i] && random.nextInt(3) > 0) others.add(d);
+                }
+                allowed[i] = others.stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            int[] target = RebalancePlanner.assign(fixedLoad, currentDay, allowed, rank);
+
+            for (int i = 0; i < events; i++) {
+                int t = target[i];
+                boolean ok = t == currentDay[i];
+                for (int d : allowed[i]) ok |= d == t;
+                assertTrue(ok, "round " + round + ": event " + i + " moved to a day it may not use");
+            }
+            long[] best = bruteForce(fixedLoad, currentDay, allowed);
+            assertEquals(best[0], squaredLoad(fixedLoad, target), "round " + round + ": squared load");
+            assertEquals(best[1], moves(currentDay, target), "round " + round + ": moves");
+        }
+    }
+
+    @Test
+    void beatsHeaviestToLightestWhenTheLightestDayIsOutOfReach() {
+        // day 0 is crowded but its events may only go to day 1; day 2 is empty but only reachable from day 1,
+        // so day 1 has to pass an event on to make room, which a single heaviest-to-lightest move never does
+        int[] fixedLoad = {0, 2, 0};
+        int[] currentDay = {0, 0, 0, 0, 1};
+        int[][] allowed = {{1}, {1}, {1}, {1}, {2}};
+        int[] rank = {3, 2, 1, 0, 0};
+
+        int[] target = RebalancePlanner.assign(fixedLoad, currentDay, allowed, rank);
+
+        // loads 3/3/1 instead of 4/3/0 or 3/4/0
+        assertEquals(9 + 9 + 1, squaredLoad(fixedLoad, target));
+        assertArrayEquals(new int[]{0, 0, 0, 1, 2}, target);
+    }
+
+    @Test
+    void minCostFlowPrefersTheCheaperPath() {
+        MinCostFlow flow = new MinCostFlow(4);
+        int direct = flow.addEdge(0, 3, 2, 10);
+        int a = flow.addEdge(0, 1, 1, 1);
+        int b = flow.addEdge(1, 3, 1, 1);
+        int c = flow.addEdge(0, 2, 5, 4);
+        int d = flow.addEdge(2, 3, 5, 4);
+
+        assertEquals(4, flow.solve(0, 3, 4));
+        assertEquals(1, flow.flow(a));
+        assertEquals(1, flow.flow(b));
+        assertEquals(3, flow.flow(c));
+        assertEquals(3, flow.flow(d));
+        assertEquals(0, flow.flow(direct));
+    }
+}
@@ -0,0 +1,222 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecurrenceExpanderTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    // weekly 09:00 Berlin from Oct 12: the 19th is EXDATE'd, the 26th moved to 11:00, Nov 2 cancelled
+    private static final String SERIES = String.join("\r\n",
+            "BEGIN:VCALENDAR",
+            "VERSION:2.0",
+            "BEGIN:VEVENT",
+            "UID:standup",
+            "SUMMARY:Standup",
+            "DTSTART;TZID=Europe/Berlin:20261012T090000",
+            "DTEND;TZID=Europe/Berlin:20261012T093000",
+            "RRULE:FREQ=WEEKLY",
+            "EXDATE;TZID=Europe/Berlin:20261019T090000",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "UID:standup",
+            "RECURRENCE-ID;TZID=Europe/Berlin:20261026T090000",
+            "SUMMARY:Standup (moved)",
+            "DTSTART;TZID=Europe/Berlin:20261026T110000",
+            "DTEND;TZID=Europe/Berlin:20261026T113000",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "UID:standup",
+            "RECURRENCE-ID:20261102T080000Z",
+            "STATUS:CANCELLED",
+            "DTSTART;TZID=Europe/Berlin:20261102T090000",
+            "END:VEVENT",
+            "END:VCALENDAR",
+            "");
+
+    @TempDir
+    File dir;
+
+    private static long at(int month, int day, int hour) {
+        return ZonedDateTime.of(2026, month, day, hour, 0, 0, 0, BERLIN).toInstant().toEpochMilli();
+    }
+
+    private static EventRecord parse(String dtstart) throws Exception {
+        String text = "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nBEGIN:VEVENT\r\nUID:weekly\r\nSUMMARY:Weekly\r\n"
+                + dtstart + "\r\nDURATION:PT1H\r\nRRULE:FREQ=WEEKLY\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+        List<EventRecord> out = new ArrayList<>();
+        new IcsStreamParser().parse(new StringReader(text), out::add);
+        return out.get(0);
+    }
+
+    private static List<LocalDateTime> wallClock(long[] starts, ZoneId zone) {
+        List<LocalDateTime> out = new ArrayList<>();
+        for (long t : starts) out.add(LocalDateTime.ofInstant(Instant.ofEpochMilli(t), zone));
+        return out;
+    }
+
+    private static long millis(int year, int month, int day, ZoneId zone) {
+        return ZonedDateTime.of(year, month, day, 0, 0, 0, 0, zone).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void tzidEventKeepsItsWallClockTimeAcrossDst() throws Exception {
+        // Berlin leaves summer time on 2026-10-25; New York a week later
+        EventRecord rec = parse("DTSTART;TZID=Europe/Berlin:20261012T090000");
+        assertEquals("Europe/Berlin", rec.tz);
+
+        long[] starts = new RecurrenceExpander().occurrences(rec,
+                millis(2026, 10, 12, BERLIN), millis(2026, 11, 10, BERLIN));
+
+        assertEquals(List.of(LocalDateTime.of(2026, 10, 12, 9, 0), LocalDateTime.of(2026, 10, 19, 9, 0),
+                LocalDateTime.of(2026, 10, 26, 9, 0), LocalDateTime.of(2026, 11, 2, 9, 0),
+                LocalDateTime.of(2026, 11, 9, 9, 0)), wallClock(starts, BERLIN));
+    }
+
+    @Test
+    void windowBoundsApplyToTheZonedInstants() throws Exception {
+        EventRecord rec = parse("DTSTART;TZID=America/New_York:20261026T230000");
+
+        long from = ZonedDateTime.of(2026, 11, 2, 23, 0, 0, 0, NEW_YORK).toInstant().toEpochMilli();
+        long[] starts = new RecurrenceExpander().occurrences(rec, from, from + 7L * 24 * 60 * 60 * 1000);
+
+        assertEquals(List.of(LocalDateTime.of(2026, 11, 2, 23, 0)), wallClock(starts, NEW_YORK));
+    }
+
+    @Test
+    void utcEventRepeatsAtAFixedUtcTime() throws Exception {
+        EventRecord rec = parse("DTSTART:20261012T070000Z");
+        assertEquals("UTC", rec.tz);
+
+        long[] starts = new RecurrenceExpander().occurrences(rec,
+                millis(2026, 10, 12, BERLIN), millis(2026, 11, 1, BERLIN));
+
+        assertEquals(List.of(LocalDateTime.of(2026, 10, 12, 7, 0), LocalDateTime.of(2026, 10, 19, 7, 0),
+                LocalDateTime.of(2026, 10, 26, 7, 0)), wallClock(starts, ZoneId.of("UTC")));
+    }
+
+    @Test
+    void floatingEventRepeatsInTheJvmZone() throws Exception {
+        EventRecord rec = parse("DTSTART:20261012T090000");
+        assertEquals(null, rec.tz);
+        ZoneId local = ZoneId.systemDefault();
+
+        long[] starts = new RecurrenceExpander().occurrences(rec,
+                millis(2026, 10, 12, local), millis(2026, 11, 1, local));
+
+        assertEquals(List.of(LocalDateTime.of(2026, 10, 12, 9, 0), LocalDateTime.of(2026, 10, 19, 9, 0),
+                LocalDateTime.of(2026, 10, 26, 9, 0)), wallClock(starts, local));
+    }
+
+    @Test
+    void excludedAndOverriddenOccurrencesAreNeitherBusyNorListed() throws Exception {
+        File ics = new File(dir, "c.ics");
+        Files.writeString(ics.toPath(), SERIES);
+        CalendarStore store = CalendarStore.of(ics);
+        try {
+            assertFalse(store.isBusy(at(10, 19, 9), at(10, 19, 10), null));
+            assertFalse(store.isBusy(at(10, 26, 9), at(10, 26, 10), null));
+            assertFalse(store.isBusy(at(11, 2, 9), at(11, 2, 10), null));
+            assertTrue(store.isBusy(at(11, 9, 9), at(11, 9, 10), null));
+            // the override is an event of its own at its new time
+            assertTrue(store.isBusy(at(10, 26, 11), at(10, 26, 12), null));
+            EventRecord moved = store.get(IcsStreamParser.overrideUid("standup", at(10, 26, 9)));
+            assertEquals("standup", moved.series);
+            assertEquals(at(10, 26, 11), moved.start);
+
+            List<Long> listed = new ArrayList<>();
+            for (EventRecord occ : store.repeatOccurrencesBetween(at(10, 13, 0), at(11, 16, 0))) listed.add(occ.start);
+            assertEquals(List.of(at(11, 9, 9)), listed);
+            assertEquals(List.of(at(11, 9, 9)), view(store.view().repeatOccurrencesBetween(at(10, 13, 0), at(11, 16, 0))));
+        } finally {
+            CalendarStore.close(ics);
+        }
+
+        // the exclusions survive the snapshot the first load wrote
+        store = CalendarStore.of(ics);
+        try {
+            assertFalse(store.isBusy(at(10, 26, 9), at(10, 26, 10), null));
+            assertTrue(store.isBusy(at(10, 26, 11), at(10, 26, 12), null));
+        } finally {
+            CalendarStore.close(ics);
+        }
+    }
+
+    private static List<Long> view(List<EventRecord> occurrences) {
+        List<Long> out = new ArrayList<>();
+        for (EventRecord occ : occurrences) out.add(occ.start);
+        return out;
+    }
+
+    @Test
+    void deletingAnOverrideKeepsItsOccurrenceCancelled() throws Exception {
+        File ics = new File(dir, "c.ics");
+        Files.writeString(ics.toPath(), SERIES);
+        CalendarStore store = CalendarStore.of(ics);
+        try {
+            store.remove(store.get(IcsStreamParser.overrideUid("standup", at(10, 26, 9))));
+            store.commit();
+            store.compact();
+        } finally {
+            CalendarStore.close(ics);
+        }
+
+        assertTrue(Files.readString(ics.toPath()).contains(
+                "STATUS:CANCELLED\r\nUID:standup\r\nRECURRENCE-ID;TZID=Europe/Berlin:20261026T090000"));
+        store = CalendarStore.of(ics);
+        try {
+            assertFalse(store.isBusy(at(10, 26, 9), at(10, 26, 12), null));
+            assertNotNull(store.get("standup"));
+        } finally {
+            CalendarStore.close(ics);
+        }
+    }
+
+    @Test
+    void deletingTheSeriesTakesItsOverridesAlong() throws Exception {
+        File ics = new File(dir, "c.ics");
+        Files.writeString(ics.toPath(), SERIES);
+        CalendarStore store = CalendarStore.of(ics);
+        try {
+            store.remove(store.get("standup"));
+            store.commit();
+            assertNull(store.get(IcsStreamParser.overrideUid("standup", at(10, 26, 9))));
+            store.compact();
+        } finally {
+            CalendarStore.close(ics);
+        }
+
+        assertFalse(Files.readString(ics.toPath()).contains("UID:standup"));
+    }
+
+    @Test
+    void allDayExdateMatchesByDate() throws Exception {
+        EventRecord rec = parse("DTSTART;VALUE=DATE:20261012\r\nEXDATE;VALUE=DATE:20261019,20261102");
+        ZoneId local = ZoneId.systemDefault();
+
+        long[] starts = new RecurrenceExpander().occurrences(rec, millis(2026, 10, 12, local), millis(2026, 11, 10, local));
+
+        List<LocalDate> days = new ArrayList<>();
+        for (long t : starts) days.add(Instant.ofEpochMilli(t).atZone(local).toLocalDate());
+        assertEquals(List.of(LocalDate.of(2026, 10, 12), LocalDate.of(2026, 10, 26), LocalDate.of(2026, 11, 9)), days);
+    }
+}
@@ -0,0 +1,118 @@
+package com.gemini.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlotFinderTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final int NINE = 9 * 60;
+    private static final int FIVE_PM = 17 * 60;
+
+    private static long at(int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(2026, month, day, hour, minute, 0, 0, BERLIN).toInstant().toEpochMilli();
+    }
+
+    private static long epochDay(int month, int day) {
+        return LocalDate.of(2026, month, day).toEpochDay();
+    }
+
+    private static FreeBusyIndex index(EventRecord... events) {
+        IntervalTree tree = new IntervalTree();
+        for (EventRecord rec : events) tree.insert(rec);
+        return new FreeBusyIndex(tree, List.of(), new RecurrenceExpander(), BERLIN);
+    }
+
+    private static EventRecord event(String uid, long start, long end) {
+        return new EventRecord(uid, uid, start, end, false, null);
+    }
+
+    private static List<LocalDateTime> starts(List<SlotFinder.Slot> slots) {
+        List<LocalDateTime> out = new ArrayList<>();
+        for (SlotFinder.Slot s : slots) out.add(LocalDateTime.ofInstant(Instant.ofEpochMilli(s.startMs), BERLIN));
+        return out;
+    }
+
+    private static LocalDateTime wall(int month, int day, int hour, int minute) {
+        return LocalDateTime.of(2026, month, day, hour, minute);
+    }
+
+    @Test
+    void lighterDaysAndLaterTimesComeFirst() {
+        FreeBusyIndex index = index(event("heavy", at(11, 2, 9, 0), at(11, 2, 12, 0)),
+                event("light", at(11, 4, 9, 0), at(11, 4, 10, 0)));
+
+        List<SlotFinder.Slot> slots = SlotFinder.find(index, epochDay(11, 2), epochDay(11, 4), 60, NINE, FIVE_PM,
+                30, 0, 5);
+
+        // the empty 3rd leads; each suggestion adds its hour to the day's load, so the 4th catches up
+        assertEquals(List.of(wall(11, 3, 16, 0), wall(11, 4, 16, 0), wall(11, 3, 15, 0), wall(11, 4, 15, 0),
+                wall(11, 3, 14, 0)), starts(slots));
+        assertEquals(0, slots.get(0).dayBusyMinutes);
+        assertEquals(60, slots.get(1).dayBusyMinutes);
+    }
+
+    @Test
+    void slotsOnTheSameDayNeverOverlap() {
+        EventRecord meeting = event("meeting", at(11, 3, 12, 0), at(11, 3, 12, 45));
+        FreeBusyIndex index = index(meeting);
+
+        List<SlotFinder.Slot> slots = SlotFinder.find(index, epochDay(11, 3), epochDay(11, 3), 90, NINE, FIVE_PM,
+                15, 0, 100);
+
+        assertTrue(slots.size() >= 4, "found " + slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            SlotFinder.Slot a = slots.get(i);
+            assertTrue(a.startMs >= at(11, 3, 9, 0) && a.endMs <= at(11, 3, 17, 0));
+            assertTrue(a.endMs <= meeting.start || a.startMs >= meeting.end);
+            for (int j = i + 1; j < slots.size(); j++) {
+                SlotFinder.Slot b = slots.get(j);
+                assertTrue(a.endMs <= b.startMs || b.endMs <= a.startMs, i + " overlaps " + j);
+            }
+        }
+    }
+
+    @Test
+    void nothingStartsBeforeTheCutoff() {
+        FreeBusyIndex index = index();
+
+        List<SlotFinder.Slot> slots = SlotFinder.find(index, epochDay(11, 2), epochDay(11, 3), 60, NINE, FIVE_PM,
+                30, at(11, 3, 14, 10), 10);
+
+        // the 2nd is over; on the 3rd the first grid start after 14:10 is 14:30
+        assertEquals(List.of(wall(11, 3, 16, 0), wall(11, 3, 15, 0)), starts(slots));
+    }
+
+    @Test
+    void windowFollowsTheWallClockOnDstDays() {
+        FreeBusyIndex index = index();
+
+        // 2026-03-29 has 23 hours; its padded last hour is neither busy time nor a place for a slot
+        List<SlotFinder.Slot> slots = SlotFinder.find(index, epochDay(3, 29), epochDay(3, 29), 60, NINE, FIVE_PM,
+                30, 0, 20);
+        assertEquals(8, slots.size());
+        assertEquals(wall(3, 29, 16, 0), starts(slots).get(0));
+        assertEquals(wall(3, 29, 9, 0), starts(slots).get(7));
+        assertEquals(0, slots.get(0).dayBusyMinutes);
+
+        slots = SlotFinder.find(index, epochDay(3, 29), epochDay(3, 29), 60, 0, 24 * 60, 60, 0, 1);
+        assertEquals(List.of(wall(3, 29, 23, 0)), starts(slots));
+
+        // 2026-10-25 has 25 hours; the window still ends at midnight, an hour past minute 1440
+        slots = SlotFinder.find(index, epochDay(10, 25), epochDay(10, 25), 60, 0, 24 * 60, 60, 0, 1);
+        assertEquals(List.of(wall(10, 25, 23, 0)), starts(slots));
+        slots = SlotFinder.find(index, epochDay(10, 25), epochDay(10, 25), 60, NINE, FIVE_PM, 30, 0, 20);
+        assertEquals(8, slots.size());
+        assertEquals(wall(10, 25, 9, 0), starts(slots).get(7));
+    }
+}
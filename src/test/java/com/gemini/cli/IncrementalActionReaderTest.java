@@ -0,0 +1,116 @@
+package com.gemini.cli;
+
+import com.gemini.backend.service.ActionPlan;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalActionReaderTest {
+
+    // strings holding braces, brackets, escaped quotes and the word "actions"; an action with nested objects;
+    // an untyped action; a later top-level array that must not be read as actions
+    private static final String PLAN = "```json\n{\n"
+            + "  \"note\": \"see \\\"actions\\\": [{ not these }]\",\n"
+            + "  \"actions\": [\n"
+            + "    {\"type\": \"create_event\", \"title\": \"Say \\\"hi\\\" {to} [all] \\\\\", \"date\": \"2026-11-02\", \"time\": \"09:00\"},\n"
+            + "    {\"type\": \"bulk_update\", \"moves\": [{\"title\": \"A\", \"date\": \"2026-11-03\"}, {\"title\": \"B}\"}]},\n"
+            + "    {\"title\": \"untyped\"},\n"
+            + "    {\"type\": \"delete_event\", \"title\": \"Lunch\\u0021\", \"date\": \"2026-11-04\", \"time\": \"12:00\"}\n"
+            + "  ],\n"
+            + "  \"suggestions\": [{\"type\": \"not an action\", \"note\": \"x\"}]\n"
+            + "}\n```";
+
+    private static final class Recorder {
+        final List<ActionPlan.Action> actions = new ArrayList<>();
+        final List<Integer> numbers = new ArrayList<>();
+
+        void accept(ActionPlan.Action a, int number) {
+            actions.add(a);
+            numbers.add(number);
+        }
+    }
+
+    private static Recorder feed(List<String> chunks) {
+        Recorder out = new Recorder();
+        IncrementalActionReader reader = new IncrementalActionReader(new Gson(), out::accept);
+        for (String c : chunks) reader.feed(c);
+        assertEquals(out.actions.size(), reader.emitted());
+        return out;
+    }
+
+    private static void assertPlan(Recorder r) {
+        assertEquals(List.of(1, 2, 3), r.numbers);
+        assertEquals("create_event", r.actions.get(0).type);
+        assertEquals("Say \"hi\" {to} [all] \\", r.actions.get(0).title);
+        assertEquals("bulk_update", r.actions.get(1).type);
+        assertEquals(2, r.actions.get(1).moves.size());
+        assertEquals("B}", r.actions.get(1).moves.get(1).title);
+        assertEquals("delete_event", r.actions.get(2).type);
+        assertEquals("Lunch!", r.actions.get(2).title);
+    }
+
+    @Test
+    void readsAWholeDocument() {
+        assertPlan(feed(List.of(PLAN)));
+    }
+
+    @Test
+    void readsOneCharacterAtATime() {
+        List<String> chunks = new ArrayList<>();
+        for (char c : PLAN.toCharArray()) chunks.add(String.valueOf(c));
+        assertPlan(feed(chunks));
+    }
+
+    @Test
+    void splitInsideStringsAndEscapes() {
+        List<String> chunks = new ArrayList<>();
+        int[] cuts = {
+                PLAN.indexOf("\\\"actions") + 1,  // between a backslash and the quote it escapes
+                PLAN.indexOf("\"actions\": [") + 4, // inside the key that opens the array
+                PLAN.indexOf("{to}") + 2,           // inside a brace within a string
+                PLAN.indexOf("\\\\\"") + 1,         // between an escaped backslash's two characters
+                PLAN.indexOf("\"B}\"") + 2,         // inside a nested object's string
+                PLAN.indexOf("\\u0021") + 3,        // inside a unicode escape
+        };
+        int from = 0;
+        for (int cut : cuts) {
+            assertTrue(cut > from);
+            chunks.add(PLAN.substring(from, cut));
+            from = cut;
+        }
+        chunks.add(PLAN.substring(from));
+        assertPlan(feed(chunks));
+    }
+
+    @Test
+    void randomChunkingGivesTheSameActions() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < PLAN.length(); ) {
+                int n = Math.min(PLAN.length() - i, 1 + random.nextInt(12));
+                chunks.add(PLAN.substring(i, i + n));
+                i += n;
+            }
+            assertPlan(feed(chunks));
+        }
+    }
+
+    @Test
+    void emitsEachActionAsSoonAsItCloses() {
+        Recorder r = new Recorder();
+        IncrementalActionReader reader = new IncrementalActionReader(new Gson(), r::accept);
+        int firstEnd = PLAN.indexOf("\"time\": \"09:00\"}") + "\"time\": \"09:00\"}".length();
+        reader.feed(PLAN.substring(0, firstEnd - 1));
+        assertEquals(0, reader.emitted());
+        reader.feed(PLAN.substring(firstEnd - 1, firstEnd));
+        assertEquals(1, reader.emitted());
+        assertEquals("create_event", r.actions.get(0).type);
+    }
+}
@@ -0,0 +1,113 @@
+package com.gemini.cli;
+
+import com.gemini.backend.service.ActionPlan;
+import com.gemini.backend.service.CalendarTool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocalIntentParserTest {
+
+    @TempDir
+    File dir;
+
+    // the calendar lookups compare against the wall clock, so relative dates are taken from the real now
+    private final LocalDateTime now = LocalDateTime.now();
+    private final LocalDate today = now.toLocalDate();
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("calendar.file", new File(dir, "c.ics").getPath());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        CalendarTool.closeCalendar();
+        System.clearProperty("calendar.file");
+    }
+
+    private ActionPlan.Action only(String request) {
+        ActionPlan plan = LocalIntentParser.parse(request, now);
+        assertNotNull(plan, request);
+        assertEquals(1, plan.actions.size());
+        return plan.actions.get(0);
+    }
+
+    @Test
+    void createsARecurringEvent() {
+        ActionPlan.Action a = only("add dentist on 2025-11-10 at 09:30 weekly");
+        assertEquals("create_event", a.type);
+        assertEquals("Dentist", a.title);
+        assertEquals("2025-11-10", a.date);
+        assertEquals("09:30", a.time);
+        assertEquals("weekly", a.recurring);
+        assertNull(a.durationMinutes);
+    }
+
+    @Test
+    void createReadsTwelveHourTimesAndDurations() {
+        ActionPlan.Action a = only("Schedule design review in 3 days at 2:30pm for 45 minutes.");
+        assertEquals("Design Review", a.title);
+        assertEquals(today.plusDays(3).toString(), a.date);
+        assertEquals("14:30", a.time);
+        assertEquals(45, a.durationMinutes);
+        assertEquals("non-recurring", a.recurring);
+    }
+
+    @Test
+    void deletesAnExistingEvent() throws Exception {
+        String tomorrow = today.plusDays(1).toString();
+        CalendarTool.createCalendarEvent(tomorrow, "10:00", "non-recurring", "Standup");
+
+        ActionPlan.Action a = only("delete standup tomorrow 10:00");
+        assertEquals("delete_event", a.type);
+        assertEquals("standup", a.title);
+        assertEquals(tomorrow, a.date);
+        assertEquals("10:00", a.time);
+    }
+
+    @Test
+    void deleteOfAnUnknownEventFallsBackToTheModel() {
+        assertNull(LocalIntentParser.parse("delete standup tomorrow 10:00", now));
+    }
+
+    @Test
+    void movesTheOnlyUpcomingEventWithThatTitle() throws Exception {
+        String start = today.plusDays(8).toString();
+        CalendarTool.createCalendarEvent(start, "09:00", "non-recurring", "Kickoff");
+
+        ActionPlan.Action a = only("move kickoff to Friday 14:00");
+        assertEquals("update_event", a.type);
+        assertEquals("kickoff", a.title);
+        assertEquals(start, a.date);
+        assertEquals("09:00", a.time);
+        assertEquals(today.with(TemporalAdjusters.nextOrSame(DayOfWeek.FRIDAY)).toString(), a.newDate);
+        assertEquals("14:00", a.newTime);
+    }
+
+    @Test
+    void moveWithoutAnUpcomingEventFallsBackToTheModel() {
+        assertNull(LocalIntentParser.parse("move kickoff to Friday 14:00", now));
+    }
+
+    @Test
+    void ambiguousRequestsFallBackToTheModel() {
+        assertNull(LocalIntentParser.parse("add lunch and dinner tomorrow at noon", now));
+        assertNull(LocalIntentParser.parse("add dentist sometime next week", now));
+        assertNull(LocalIntentParser.parse("add dentist tomorrow", now));
+        assertNull(LocalIntentParser.parse("move it to friday 14:00", now));
+        assertNull(LocalIntentParser.parse("can you add dentist tomorrow at 9am?", now));
+        assertNull(LocalIntentParser.parse(null, now));
+    }
+}
@@ -0,0 +1,87 @@
+package com.gemini.cli;
+
+import com.gemini.backend.service.ActionPlan;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PlanCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 17);
+    private static final long SECOND = 1_000_000_000L;
+
+    private long now;
+    private final PlanCache cache = new PlanCache(2, 60, () -> now);
+
+    @Test
+    void normalizeDropsCaseFillerAndPunctuationButKeepsDatesAndTimes() {
+        assertEquals("add dentist on 2025-11-10 at 09:30",
+                PlanCache.normalize("  Hey, could you please ADD the dentist on 2025-11-10 at 09:30?!"));
+        assertEquals("", PlanCache.normalize(null));
+        assertEquals("", PlanCache.normalize("please!"));
+    }
+
+    @Test
+    void keyCoversVersionDateAndConversation() {
+        String key = cache.key("Add dentist tomorrow at 9", 3, TODAY, "");
+        assertEquals(key, cache.key("please add the dentist tomorrow at 9.", 3, TODAY, null));
+        assertNotEquals(key, cache.key("Add dentist tomorrow at 9", 4, TODAY, ""));
+        assertNotEquals(key, cache.key("Add dentist tomorrow at 9", 3, TODAY.plusDays(1), ""));
+
+        String afterA = cache.key("Add dentist tomorrow at 9", 3, TODAY, "User: I work nights\n");
+        String afterB = cache.key("Add dentist tomorrow at 9", 3, TODAY, "User: I start at 8\n");
+        assertNotEquals(key, afterA);
+        assertNotEquals(afterA, afterB);
+    }
+
+    @Test
+    void referentialRequestsAreNotCacheable() {
+        assertNull(cache.key("yes", 1, TODAY, ""));
+        assertNull(cache.key("Move it to Friday", 1, TODAY, ""));
+        assertNull(cache.key("do the same again", 1, TODAY, ""));
+        assertNull(cache.key("?!", 1, TODAY, ""));
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() {
+        String key = cache.key("summarize my week", 1, TODAY, "");
+        ActionPlan plan = new ActionPlan();
+        cache.put(key, 1, "{}", plan);
+
+        now += 60 * SECOND;
+        assertSame(plan, cache.get(key, 1).plan);
+        now += 1;
+        assertNull(cache.get(key, 1));
+    }
+
+    @Test
+    void aNewCalendarVersionDropsEveryEntry() {
+        String key = cache.key("summarize my week", 1, TODAY, "");
+        cache.put(key, 1, "{}", new ActionPlan());
+
+        assertNull(cache.get(cache.key("summarize my week", 2, TODAY, ""), 2));
+        // going back to the old version does not bring the entry back
+        assertNull(cache.get(key, 1));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        String a = cache.key("summarize monday", 1, TODAY, "");
+        String b = cache.key("summarize tuesday", 1, TODAY, "");
+        String c = cache.key("summarize wednesday", 1, TODAY, "");
+        cache.put(a, 1, "a", new ActionPlan());
+        cache.put(b, 1, "b", new ActionPlan());
+        assertNotNull(cache.get(a, 1));
+        cache.put(c, 1, "c", new ActionPlan());
+
+        assertNotNull(cache.get(a, 1));
+        assertNull(cache.get(b, 1));
+        assertNotNull(cache.get(c, 1));
+    }
+}